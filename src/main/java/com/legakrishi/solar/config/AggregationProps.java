@@ -0,0 +1,29 @@
+package com.legakrishi.solar.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "lkf.aggregation")
+public class AggregationProps {
+
+    // reading_day / reading_day_meter kept current from the ingest path (DayRollupAccumulator);
+    // the full rescan then only runs as the nightly repair of yesterday
+    private boolean incremental = true;
+
+    // dirty accumulators are upserted at this interval
+    private long flushMs = 30_000;
+
+    // AutoAggregateTodayJob: sites aggregated in parallel, and the time a whole fleet pass may take
+    private int parallelism = 4;
+    private int deadlineSeconds = 240;         // below the 5-minute cycle; unfinished sites are cancelled
+
+    // energy_sample_rollup at 5 / 15 / 60 minutes and per day kept current from the ingest path
+    // (IntervalRollupRefresher), rebuilt nightly for yesterday and for closed days within
+    // interval-backfill-days still missing them (IntervalRollupJob)
+    private boolean intervalRollups = true;
+    private int intervalBackfillDays = 400;     // covers the 365-day daily chart
+    private int intervalBackfillMaxDaysPerRun = 2000;
+}
@@ -0,0 +1,33 @@
+package com.legakrishi.solar.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "lkf.charts")
+public class ChartProps {
+
+    private Cache cache = new Cache();
+
+    private Range range = new Range();
+
+    // Built chart series kept in memory (CachedChartSeriesService). Closed days never expire; an entry is
+    // dropped when a sample inside its span is stored, or when the bounds below evict it (least recently used first).
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private int maxEntries = 2_000;
+        private int maxMb = 64;                 // estimated retained size of all entries
+        private long openTtlMs = 30_000;        // entries reaching into today: the rollups they read lag by lkf.aggregation.flush-ms
+    }
+
+    // /admin and /partners charts/range: longest range asked for, and longest span read from raw samples
+    // for meters that have no rollups in the range (the end of the range is kept)
+    @Data
+    public static class Range {
+        private int maxDays = 366;
+        private int maxRawDays = 7;
+    }
+}
@@ -0,0 +1,115 @@
+package com.legakrishi.solar.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.legakrishi.solar.controller.CompactSeries;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link CompactSeries} straight to the response with a streaming generator:
+ * <pre>
+ * {"start": epochMillis, "stepMin": 15, "metric": ..., "agg": ..., "unit": ..., "count": 96,
+ *  "encoding": "f32", "series": {"MAIN": "&lt;base64 Float32LE x count&gt;", ...}}
+ * </pre>
+ * Point i is at start + i * stepMin minutes, so no labels are sent. With "encoding": "delta" each meter
+ * is an integer array of value * scale (1000): the first value, then differences to the previous one,
+ * which stay small and compress well under gzip.
+ */
+@Component
+public class CompactSeriesConverter extends AbstractHttpMessageConverter<CompactSeries> {
+
+    private static final JsonFactory JSON = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final int DELTA_SCALE = 1000;
+
+    public CompactSeriesConverter() {
+        super(CompactSeries.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CompactSeries.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CompactSeries readInternal(Class<? extends CompactSeries> clazz, HttpInputMessage input) {
+        throw new HttpMessageNotReadableException("compact series are write-only", input);
+    }
+
+    @Override
+    protected void writeInternal(CompactSeries s, HttpOutputMessage output) throws IOException {
+        Map<String, Object> m = s.series();
+        Object series = m.get("series");
+        Map<?, ?> perMeter = series instanceof Map<?, ?> sm ? sm : Map.of();
+        boolean delta = s.encoding() == CompactSeries.Encoding.DELTA;
+
+        try (JsonGenerator g = JSON.createGenerator(output.getBody())) {
+            g.writeStartObject();
+            // scalar fields as they are (start, stepMin, metric, agg, unit); labels and series below
+            for (Map.Entry<String, Object> e : m.entrySet()) {
+                Object v = e.getValue();
+                if (v instanceof Integer || v instanceof Long) g.writeNumberField(e.getKey(), ((Number) v).longValue());
+                else if (v instanceof Number n) g.writeNumberField(e.getKey(), n.doubleValue());
+                else if (v instanceof String str) g.writeStringField(e.getKey(), str);
+            }
+            int count = 0;
+            for (Object v : perMeter.values()) count = Math.max(count, length(v));
+            g.writeNumberField("count", count);
+            g.writeStringField("encoding", delta ? "delta" : "f32");
+            if (delta) g.writeNumberField("scale", DELTA_SCALE);
+
+            g.writeObjectFieldStart("series");
+            byte[] buf = delta ? null : new byte[count * 4];
+            for (Map.Entry<?, ?> e : perMeter.entrySet()) {
+                Object v = e.getValue();
+                int n = length(v);
+                g.writeFieldName(String.valueOf(e.getKey()));
+                if (delta) {
+                    g.writeStartArray();
+                    long prev = 0;
+                    for (int i = 0; i < n; i++) {
+                        long q = Math.round(value(v, i) * DELTA_SCALE);
+                        g.writeNumber(q - prev);
+                        prev = q;
+                    }
+                    g.writeEndArray();
+                } else {
+                    ByteBuffer bb = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+                    for (int i = 0; i < n; i++) bb.putFloat((float) value(v, i));
+                    g.writeBinary(buf, 0, n * 4);
+                }
+            }
+            g.writeEndObject();
+            g.writeEndObject();
+        }
+    }
+
+    // series values are double[] from ChartSeriesServiceImpl; lists of numbers are accepted too
+    private static int length(Object v) {
+        if (v instanceof double[] a) return a.length;
+        if (v instanceof List<?> l) return l.size();
+        return 0;
+    }
+
+    private static double value(Object v, int i) {
+        if (v instanceof double[] a) return a[i];
+        Object x = ((List<?>) v).get(i);
+        return x instanceof Number n ? n.doubleValue() : 0d;
+    }
+}
@@ -0,0 +1,79 @@
+package com.legakrishi.solar.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "lkf.ingest")
+public class IngestProps {
+
+    // Rows per JDBC batch / transaction on the telemetry write path (TelemetryIngestCore).
+    // Pair with reWriteBatchedInserts=true (Postgres) or rewriteBatchedStatements=true (MySQL)
+    // in the JDBC URL so the driver sends one multi-row INSERT per chunk.
+    private int chunkSize = 500;
+
+    // Cached device credentials are refreshed after this even without an admin save (DB edits etc.)
+    private int deviceCacheTtlSeconds = 300;
+
+    // lastSeen heartbeats are coalesced in memory and written in one batched UPDATE at this interval
+    private long lastSeenFlushMs = 5_000;
+
+    // Recent (meter, sampleTime) keys remembered per site to answer duplicate retries without a query
+    private int recentKeysPerSite = 4_096;
+
+    private Async async = new Async();
+
+    private Backfill backfill = new Backfill();
+
+    private Limits limits = new Limits();
+
+    private Wal wal = new Wal();
+
+    // Opt-in write-behind for /iot/ingest/ingest: validate, queue, answer 202, write in batches.
+    @Data
+    public static class Async {
+        private boolean enabled = false;
+        private int queueCapacity = 10_000;
+        private int batchSize = 200;
+        private long flushIntervalMs = 1_000;
+        private int retryAfterSeconds = 5;     // sent with 429 when the queue is full
+        private long retryBackoffMs = 1_000;   // first pause after a failed flush, doubled up to a minute
+        private int maxAttempts = 20;          // then the batch's failed readings are dropped and counted
+    }
+
+    // Replays after an outage: no live ticks, bulk writes, per-meter day re-aggregation deferred.
+    @Data
+    public static class Backfill {
+        private int thresholdMinutes = 60;     // samples older than this never produce live ticks
+        private int quietSeconds = 120;        // re-aggregate once no backfill data has arrived for this long
+    }
+
+    // Token buckets on every ingest endpoint; a request costs 1, a bulk request 1 per chunk of rows.
+    @Data
+    public static class Limits {
+        private boolean enabled = true;
+        private double devicePerSecond = 0.5;  // /iot/ingest/ingest, keyed by deviceId
+        private int deviceBurst = 30;
+        private double sitePerSecond = 2.0;    // /api/rms/ingest/**, keyed by siteId
+        private int siteBurst = 60;
+        private double clientPerSecond = 2.0;  // /ingest/ingest, keyed by a digest of X-API-Key (or remote address)
+        private int clientBurst = 20;
+        private int maxKeys = 10_000;          // tracked buckets; unknown keys beyond share one per scope
+        private int metricKeys = 200;          // keys with their own ingest.throttled counter, the rest are "other"
+    }
+
+    // Opt-in local write-ahead log: ingest is acknowledged once the rows are fsynced here,
+    // a background applier writes them to the database and resumes from its checkpoint after a crash.
+    @Data
+    public static class Wal {
+        private boolean enabled = false;
+        private String dir = "/data/wal";
+        private int segmentMb = 64;
+        private long syncIntervalMs = 5;       // group-commit window: appends arriving within it share one fsync
+        private long syncTimeoutMs = 5_000;    // append gives up (429) if the disk cannot sync in time
+        private long retryBackoffMs = 2_000;   // applier pause after a failed database write
+        private int maxAttempts = 50;          // then the entry goes to dead-letter/ (rejected rows: at once)
+    }
+}
@@ -81,6 +81,8 @@ public class SecurityConfig {
                                 antMatcher("/ws/**"),
                                 antMatcher("/api/iot/**")
                         ).permitAll()
+                        // other actuator endpoints (ingestlimits, metrics) are for admins only
+                        .requestMatchers(antMatcher("/actuator/**")).hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
 
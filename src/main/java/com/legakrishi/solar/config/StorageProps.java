@@ -0,0 +1,54 @@
+package com.legakrishi.solar.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "lkf.storage")
+public class StorageProps {
+
+    private Compaction compaction = new Compaction();
+
+    private Retention retention = new Retention();
+
+    // Closed days of energy_sample are packed into energy_sample_block and their raw rows deleted.
+    @Data
+    public static class Compaction {
+        private boolean enabled = false;       // on per profile (fly); blocks are read by EnergySampleStore
+        private int afterDays = 7;             // IST days younger than this stay raw (late data, re-aggregation)
+        private int maxDaysPerRun = 500;       // (site, meter, day) blocks written per nightly run
+    }
+
+    // Tiered retention, applied nightly by RetentionJob: raw telemetry (reading, energy_sample and its
+    // day blocks) is rolled up into rollup-step-minutes buckets, then deleted after raw-days; the rollups
+    // go after rollup-days. reading_day / reading_day_meter are never touched. 0 days = keep forever.
+    @Data
+    public static class Retention {
+        private boolean enabled = false;
+        private int rawDays = 90;
+        private int rollupStepMinutes = 15;
+        private int rollupDays = 3 * 365;
+        private int chunkSize = 1_000;         // rows per delete transaction
+        private long pauseMs = 200;            // between delete transactions, so ingest always gets the lock
+        private Map<Long, Policy> sites = new LinkedHashMap<>();   // per-site overrides, e.g. sites.3.raw-days=30
+
+        public Policy policyFor(Long siteId) {
+            Policy p = sites.get(siteId);
+            Policy out = new Policy();
+            out.setRawDays(p != null && p.getRawDays() != null ? p.getRawDays() : rawDays);
+            out.setRollupDays(p != null && p.getRollupDays() != null ? p.getRollupDays() : rollupDays);
+            return out;
+        }
+    }
+
+    @Data
+    public static class Policy {
+        private Integer rawDays;               // null = global value
+        private Integer rollupDays;
+    }
+}
@@ -1,11 +1,19 @@
 package com.legakrishi.solar.controller;
 
+import com.legakrishi.solar.iot.BackfillTracker;
 import com.legakrishi.solar.model.ReadingDay;
+import com.legakrishi.solar.model.ReaggregationJob;
 import com.legakrishi.solar.service.AggregationService;
+import com.legakrishi.solar.service.ReaggregationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import com.legakrishi.solar.model.MeterKind;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/admin/agg")
@@ -13,9 +21,14 @@ import java.time.LocalDate;
 public class AdminAggregationController {
 
     private final AggregationService service;
+    private final BackfillTracker backfill;
+    private final ReaggregationService reaggregation;
 
-    public AdminAggregationController(AggregationService service) {
+    public AdminAggregationController(AggregationService service, BackfillTracker backfill,
+                                      ReaggregationService reaggregation) {
         this.service = service;
+        this.backfill = backfill;
+        this.reaggregation = reaggregation;
     }
 
     // Simple GET for testing (no CSRF issues). Use while logged in as ADMIN.
@@ -41,4 +54,63 @@ public class AdminAggregationController {
                 + " kWh, DC=" + r.getDcEnergyKwh()
                 + " kWh, MaxP=" + r.getMaxAcPowerKw() + " kW";
     }
+
+    // Example: /admin/agg/days-meter?siteId=1&from=2025-01-01&to=2025-12-31&meter=MAIN (one query, one batched upsert)
+    @GetMapping("/days-meter")
+    public String aggregateDaysMeter(@RequestParam Long siteId,
+                                     @RequestParam String from,
+                                     @RequestParam String to,
+                                     @RequestParam(defaultValue = "MAIN") MeterKind meter) {
+        int n = service.aggregateDaysPerMeter(siteId, meter, LocalDate.parse(from), LocalDate.parse(to));
+        return "OK: site=" + siteId + ", meter=" + meter + ", days=" + n + " (" + from + " .. " + to + ")";
+    }
+
+    // Re-aggregate the days touched by a backfill now, instead of waiting for the quiet period
+    @PostMapping("/backfill-flush")
+    public String flushBackfill() {
+        int pending = backfill.pending();
+        int done = backfill.flush();
+        return "OK: re-aggregated " + done + " of " + pending + " (site, meter, day) rows";
+    }
+
+    // Rebuild reading_day_meter for a past range in the background; resumes after a restart.
+    // Example: /admin/agg/reaggregate?from=2025-01-01&to=2025-06-30&sites=1,2&meters=MAIN (sites / meters optional)
+    @GetMapping("/reaggregate")
+    public ResponseEntity<?> startReaggregation(@RequestParam String from,
+                                                @RequestParam String to,
+                                                @RequestParam(required = false) List<Long> sites,
+                                                @RequestParam(required = false) List<MeterKind> meters) {
+        final ReaggregationJob job;
+        try {
+            job = reaggregation.start(sites, meters, LocalDate.parse(from), LocalDate.parse(to));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
+        return ResponseEntity.ok("OK: job=" + job.getId() + ", items=" + job.getTotalItems()
+                + " | progress: /admin/agg/reaggregate/" + job.getId());
+    }
+
+    @GetMapping("/reaggregate/{id}")
+    public Map<String, Object> reaggregationProgress(@PathVariable Long id) {
+        return reaggregation.progress(id);
+    }
+
+    @GetMapping("/reaggregate/{id}/cancel")
+    public ResponseEntity<?> cancelReaggregation(@PathVariable Long id) {
+        try {
+            if (!reaggregation.cancel(id)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("job " + id + " is not running");
+            }
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+        }
+        return ResponseEntity.ok("OK: cancel requested for job=" + id);
+    }
+
+    @GetMapping("/reaggregate/jobs")
+    public List<ReaggregationJob> reaggregationJobs() {
+        return reaggregation.recent();
+    }
 }
@@ -1,5 +1,6 @@
 package com.legakrishi.solar.controller;
 
+import com.legakrishi.solar.iot.DeviceRegistry;
 import com.legakrishi.solar.model.Device;
 import com.legakrishi.solar.model.MeterKind;
 import com.legakrishi.solar.model.Site;
@@ -24,10 +25,12 @@ public class AdminDeviceController {
 
     private final DeviceRepository deviceRepo;
     private final SiteRepository siteRepo;
+    private final DeviceRegistry deviceRegistry;
 
-    public AdminDeviceController(DeviceRepository deviceRepo, SiteRepository siteRepo) {
+    public AdminDeviceController(DeviceRepository deviceRepo, SiteRepository siteRepo, DeviceRegistry deviceRegistry) {
         this.deviceRepo = deviceRepo;
         this.siteRepo = siteRepo;
+        this.deviceRegistry = deviceRegistry;
     }
 
     @GetMapping("")
@@ -98,6 +101,7 @@ public class AdminDeviceController {
         }
 
         deviceRepo.save(d);
+        deviceRegistry.evict(d.getId()); // ingest picks up token/active/meter changes immediately
         return "redirect:/admin/devices";
     }
 
@@ -107,6 +111,7 @@ public class AdminDeviceController {
         Device d = deviceRepo.findById(id).orElseThrow();
         d.setApiToken(generateToken());
         deviceRepo.save(d);
+        deviceRegistry.evict(id);
         return "redirect:/admin/devices/" + id + "/edit";
     }
 
@@ -116,6 +121,7 @@ public class AdminDeviceController {
         Device d = deviceRepo.findById(id).orElseThrow();
         d.setActive(!Boolean.TRUE.equals(d.getActive()));
         deviceRepo.save(d);
+        deviceRegistry.evict(id);
         return "redirect:/admin/devices";
     }
 
@@ -123,6 +129,7 @@ public class AdminDeviceController {
     @Transactional
     public String delete(@PathVariable Long id) {
         deviceRepo.deleteById(id);
+        deviceRegistry.evict(id);
         return "redirect:/admin/devices";
     }
 
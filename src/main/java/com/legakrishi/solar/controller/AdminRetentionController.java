@@ -0,0 +1,29 @@
+package com.legakrishi.solar.controller;
+
+import com.legakrishi.solar.service.RetentionService;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/admin/retention")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminRetentionController {
+
+    private final RetentionService service;
+
+    public AdminRetentionController(RetentionService service) {
+        this.service = service;
+    }
+
+    // Dry run: rows and estimated bytes each table / site scope would lose right now
+    @GetMapping("/plan")
+    public RetentionService.Report plan() {
+        return service.plan();
+    }
+
+    // Apply the policy now instead of waiting for the nightly RetentionJob (runs even when the job is disabled)
+    @PostMapping("/run")
+    public RetentionService.Report run() {
+        return service.apply();
+    }
+}
@@ -3,10 +3,13 @@ package com.legakrishi.solar.controller;
 import com.legakrishi.solar.model.MeterKind;
 import com.legakrishi.solar.repository.DeviceRepository;
 import com.legakrishi.solar.service.ChartSeriesService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -36,13 +39,19 @@ public class ChartDataController {
         return out;
     }
 
+    // format=compact (or Accept: application/vnd.lkf.series+json) answers in the compact wire format
     @GetMapping("/intraday")
-    public Map<String,Object> intraday(@RequestParam Long siteId,
-                                       @RequestParam(required = false) String day,
-                                       @RequestParam(defaultValue = "TOTAL_AC_POWER") String metric,
-                                       @RequestParam(defaultValue = "1") Integer stepMin) {
+    public ResponseEntity<?> intraday(@RequestParam Long siteId,
+                                      @RequestParam(required = false) String day,
+                                      @RequestParam(defaultValue = "TOTAL_AC_POWER") String metric,
+                                      @RequestParam(defaultValue = "1") Integer stepMin,
+                                      @RequestParam(required = false) String agg,
+                                      @RequestParam(required = false) String format,
+                                      @RequestParam(required = false) String encoding,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         LocalDate d = (day != null && !day.isBlank()) ? LocalDate.parse(day) : null;
-        return charts.buildIntradayMeterSeries(siteId, d, metric, stepMin == null ? 1 : stepMin);
+        return CompactSeries.respond(charts.buildIntradayMeterSeries(siteId, d, metric, stepMin == null ? 1 : stepMin, agg),
+                format, encoding, accept);
     }
 
     @GetMapping("/day-meter-series")
@@ -50,4 +59,19 @@ public class ChartDataController {
                                               @RequestParam(defaultValue = "30") int days) {
         return charts.buildDailyMeterSeries(siteId, days);
     }
+
+    @GetMapping("/range")
+    public ResponseEntity<?> range(@RequestParam Long siteId,
+                                   @RequestParam String from,
+                                   @RequestParam String to,
+                                   @RequestParam(defaultValue = "TOTAL_AC_POWER") String metric,
+                                   @RequestParam(defaultValue = "1000") int maxPoints,
+                                   @RequestParam(defaultValue = "lttb") String method) {
+        try {
+            return ResponseEntity.ok(charts.buildRangeSeries(siteId, LocalDate.parse(from), LocalDate.parse(to),
+                    metric, maxPoints, method));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());   // reversed or too long a range
+        }
+    }
 }
@@ -2,6 +2,8 @@ package com.legakrishi.solar.controller;
 
 import com.legakrishi.solar.service.ChartSeriesService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -27,14 +29,35 @@ public class ChartDataPartnerController {
         return charts.buildDailyMeterSeries(siteId, days);
     }
 
-    // e.g. GET /partners/charts/intraday?siteId=1&date=2025-08-15&metric=TOTAL_AC_POWER&stepMin=15
+    // e.g. GET /partners/charts/intraday?siteId=1&date=2025-08-15&metric=TOTAL_AC_POWER&stepMin=15&agg=max
+    // add format=compact (&encoding=delta) or Accept: application/vnd.lkf.series+json for the compact wire format
     @GetMapping("/intraday")
-    public Map<String, Object> intraday(@RequestParam Long siteId,
-                                        @RequestParam(required = false)
-                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
-                                        LocalDate date,
-                                        @RequestParam(defaultValue = "TOTAL_AC_POWER") String metric,
-                                        @RequestParam(defaultValue = "15") Integer stepMin) {
-        return charts.buildIntradayMeterSeries(siteId, date, metric, stepMin);
+    public ResponseEntity<?> intraday(@RequestParam Long siteId,
+                                      @RequestParam(required = false)
+                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                      LocalDate date,
+                                      @RequestParam(defaultValue = "TOTAL_AC_POWER") String metric,
+                                      @RequestParam(defaultValue = "15") Integer stepMin,
+                                      @RequestParam(required = false) String agg,
+                                      @RequestParam(required = false) String format,
+                                      @RequestParam(required = false) String encoding,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return CompactSeries.respond(charts.buildIntradayMeterSeries(siteId, date, metric, stepMin == null ? 1 : stepMin, agg),
+                format, encoding, accept);
+    }
+
+    // e.g. GET /partners/charts/range?siteId=1&from=2025-05-01&to=2025-07-29&maxPoints=1000&method=minmax
+    @GetMapping("/range")
+    public ResponseEntity<?> range(@RequestParam Long siteId,
+                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                   @RequestParam(defaultValue = "TOTAL_AC_POWER") String metric,
+                                   @RequestParam(defaultValue = "1000") int maxPoints,
+                                   @RequestParam(defaultValue = "lttb") String method) {
+        try {
+            return ResponseEntity.ok(charts.buildRangeSeries(siteId, from, to, metric, maxPoints, method));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());   // reversed or too long a range
+        }
     }
 }
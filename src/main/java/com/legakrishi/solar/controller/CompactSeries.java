@@ -0,0 +1,38 @@
+package com.legakrishi.solar.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An intraday chart series to be written in the compact wire format (CompactSeriesConverter)
+ * instead of label / value JSON. Asked for with {@code format=compact} or
+ * {@code Accept: application/vnd.lkf.series+json}; the values are base64 little-endian Float32
+ * per meter by default, or delta-encoded integers with {@code encoding=delta} (query or media type parameter).
+ */
+public record CompactSeries(Map<String, Object> series, Encoding encoding) {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType("application/vnd.lkf.series+json");
+
+    public enum Encoding { F32, DELTA }
+
+    /** The compact form when the request asks for it, else the series as plain JSON. */
+    public static ResponseEntity<?> respond(Map<String, Object> series, String format, String encoding, String accept) {
+        MediaType wanted = null;
+        if (accept != null && accept.contains(MEDIA_TYPE.getSubtype())) {
+            for (MediaType t : MediaType.parseMediaTypes(accept)) {
+                if (MEDIA_TYPE.equalsTypeAndSubtype(t)) {
+                    wanted = t;
+                    break;
+                }
+            }
+        }
+        if (wanted == null && !"compact".equalsIgnoreCase(format)) return ResponseEntity.ok(series);
+
+        String enc = encoding != null ? encoding : wanted != null ? wanted.getParameter("encoding") : null;
+        Encoding e = enc != null && enc.toLowerCase(Locale.ROOT).startsWith("delta") ? Encoding.DELTA : Encoding.F32;
+        return ResponseEntity.ok().contentType(MEDIA_TYPE).body(new CompactSeries(series, e));
+    }
+}
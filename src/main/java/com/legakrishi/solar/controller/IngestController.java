@@ -1,64 +1,64 @@
 package com.legakrishi.solar.controller;
 
-import com.legakrishi.solar.model.EnergySample;
-import com.legakrishi.solar.model.MeterKind;
-import com.legakrishi.solar.repository.EnergySampleRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.legakrishi.solar.iot.EnergySampleStreamIngestor;
+import com.legakrishi.solar.iot.IngestRateLimiter;
+import com.legakrishi.solar.iot.IngestThrottledException;
+import com.legakrishi.solar.iot.EnergySampleStreamIngestor.StreamResult;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.Instant;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipException;
 
 @RestController // (defaults to "ingestController")
 @RequestMapping("/ingest")
 public class IngestController {
 
-    private final EnergySampleRepository repo;
+    private final EnergySampleStreamIngestor ingestor;
+    private final IngestRateLimiter limiter;
 
-    public IngestController(EnergySampleRepository repo) {
-        this.repo = repo;
+    public IngestController(EnergySampleStreamIngestor ingestor, IngestRateLimiter limiter) {
+        this.ingestor = ingestor;
+        this.limiter = limiter;
     }
 
+    // Body is a JSON array of SampleIn, optionally Content-Encoding: gzip | zstd.
+    // Parsed incrementally and committed in chunks, so memory stays flat for any backfill size.
     @PostMapping("/ingest")
-    public ResponseEntity<?> ingest(@RequestBody List<SampleIn> payload,
-                                    @RequestHeader(value = "X-API-Key", required = false) String apiKey) {
-        if (payload == null || payload.isEmpty()) return ResponseEntity.badRequest().body("empty payload");
-
-        for (SampleIn p : payload) {
-            EnergySample s = new EnergySample();
-            s.setSiteId(p.siteId);
-            s.setMeterKind(p.meterKind);
-            s.setSampleTime(p.sampleTimeUtc != null ? p.sampleTimeUtc : Instant.now());
-
-            s.setTotalAcPowerKw(n(p.totalAcPowerKw));
-            s.setDailyAcEnergyKwh(n(p.dailyAcEnergyKwh));
-            s.setDailyAcExportKwh(n(p.dailyAcExportKwh));
-            s.setDailyAcImportKwh(n(p.dailyAcImportKwh));
-            s.setDailyDcEnergyKwh(n(p.dailyDcEnergyKwh));
-
-            s.setDeviceId(p.deviceId);
-            s.setFirmware(p.firmware);
-
-            repo.save(s);
+    public ResponseEntity<?> ingest(HttpServletRequest request,
+                                    @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+                                    @RequestHeader(value = "X-Backfill", defaultValue = "false") boolean backfill) throws IOException {
+        final StreamResult result;
+        try {
+            // bulk client = digest of the API key, else the caller's address; checked before the body is read
+            limiter.acquire(IngestRateLimiter.Scope.CLIENT, IngestRateLimiter.clientId(apiKey, request.getRemoteAddr()), 1);
+            InputStream body = EnergySampleStreamIngestor.decode(request.getInputStream(),
+                    request.getHeader(HttpHeaders.CONTENT_ENCODING));
+            result = ingestor.ingest(body, backfill);
+        } catch (IllegalArgumentException | JsonProcessingException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (ZipException ex) {
+            return ResponseEntity.badRequest().body("corrupt compressed body: " + ex.getMessage());
+        } catch (IOException ex) {
+            // body shorter than its gzip/zstd header; a break further in comes back as result.error()
+            return ResponseEntity.badRequest().body("truncated body: " + ex);
+        } catch (IngestThrottledException te) {
+            // over the rate limit, or the WAL could not sync in time (chunks before it are kept)
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(te.getRetryAfterSeconds()))
+                    .body(te.getMessage());
         }
-        return ResponseEntity.ok().build();
-    }
-
-    private static Double n(Double v){ return v == null ? 0d : v; }
-
-    // DTO for ingest
-    public static class SampleIn {
-        public Long siteId;
-        public MeterKind meterKind;     // MAIN/STANDBY/CHECK
-        public Instant sampleTimeUtc;   // ISO timestamp
-
-        public Double totalAcPowerKw;
-        public Double dailyAcEnergyKwh;
-        public Double dailyAcExportKwh;
-        public Double dailyAcImportKwh;
-        public Double dailyDcEnergyKwh;
 
-        public String deviceId;
-        public String firmware;
+        if (result.received() == 0) return ResponseEntity.badRequest().body("empty payload");
+        // truncated/malformed tail: rows before it are committed, tell the gateway to resend
+        if (result.error() != null) return ResponseEntity.badRequest().body(result);
+        // a chunk the database refused: rows in other chunks are stored, resending the body is safe (duplicates skipped)
+        if (result.failedChunks() > 0) return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(result);
+        return ResponseEntity.ok(result);
     }
 }
@@ -2,6 +2,7 @@ package com.legakrishi.solar.controller;
 
 import com.legakrishi.solar.config.MonitoringProps;
 import com.legakrishi.solar.model.AlertEvent;
+import com.legakrishi.solar.model.MeterKind;
 import com.legakrishi.solar.model.Reading;
 import com.legakrishi.solar.repository.*;
 import lombok.RequiredArgsConstructor;
@@ -33,6 +34,7 @@ public class PartnerReportController {
     private final AlertEventRepository alertRepo;
     private final DeviceRepository deviceRepo;
     private final SiteRepository siteRepo;
+    private final ReadingMonthMeterRepository monthRollupRepo;
 
     @GetMapping("/daily")
     public String daily(Model model,
@@ -63,14 +65,18 @@ public class PartnerReportController {
                 .max().orElse(0.0);
 
         // --- Month-to-date CUF (uses site capacity) ---
-        LocalDateTime mStart = today.withDayOfMonth(1).atStartOfDay();
-        LocalDateTime now = LocalDateTime.now(tz);
-        var monthReadings = readingRepo.findRange(siteId, mStart, now);
-
-        double energyMonth = 0.0;
-        if (!monthReadings.isEmpty()) {
-            Double f = monthReadings.get(0).getEnergyKwh();
-            Double l = monthReadings.get(monthReadings.size()-1).getEnergyKwh();
+        // MAIN month rollup when present, else first / last reading of the month
+        double energyMonth = monthRollupRepo
+                .findBySiteIdAndMeterKindAndPeriodStart(siteId, MeterKind.MAIN, today.withDayOfMonth(1))
+                .map(m -> m.getAcActiveEnergyKwh() != null ? m.getAcActiveEnergyKwh().doubleValue() : 0.0)
+                .orElse(0.0);
+        if (energyMonth <= 0) {
+            LocalDateTime mStart = today.withDayOfMonth(1).atStartOfDay();
+            LocalDateTime now = LocalDateTime.now(tz);
+            Double f = readingRepo.findFirstBySiteIdAndTsBetweenOrderByTsAsc(siteId, mStart, now)
+                    .map(Reading::getEnergyKwh).orElse(null);
+            Double l = readingRepo.findFirstBySiteIdAndTsBetweenOrderByTsDesc(siteId, mStart, now)
+                    .map(Reading::getEnergyKwh).orElse(null);
             if (f != null && l != null) energyMonth = Math.max(0.0, l - f);
         }
 
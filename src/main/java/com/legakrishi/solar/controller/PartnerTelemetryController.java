@@ -4,11 +4,13 @@ import com.legakrishi.solar.config.MonitoringProps;
 import com.legakrishi.solar.model.EnergySample;
 import com.legakrishi.solar.model.MeterKind;
 import com.legakrishi.solar.model.Reading;
-import com.legakrishi.solar.repository.EnergySampleRepository;
 import com.legakrishi.solar.repository.PartnerSiteRepository;
+import com.legakrishi.solar.repository.ReadingMonthMeterRepository;
 import com.legakrishi.solar.repository.ReadingRepository;
+import com.legakrishi.solar.repository.ReadingYearMeterRepository;
 import com.legakrishi.solar.repository.SiteRepository;
 import com.legakrishi.solar.repository.UserRepository;
+import com.legakrishi.solar.service.EnergySampleStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -36,7 +38,9 @@ public class PartnerTelemetryController {
     private final PartnerSiteRepository partnerSiteRepo;
     private final UserRepository userRepo;
     private final SiteRepository siteRepo;
-    private final EnergySampleRepository energySampleRepo;
+    private final EnergySampleStore energySampleStore;   // raw rows + compacted day blocks
+    private final ReadingMonthMeterRepository monthRollupRepo;
+    private final ReadingYearMeterRepository yearRollupRepo;
 
     private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
     private static final DateTimeFormatter HHMM = DateTimeFormatter.ofPattern("HH:mm");
@@ -112,9 +116,7 @@ public class PartnerTelemetryController {
         Instant start = startZdt.toInstant();
         Instant end   = startZdt.plusDays(1).toInstant();
 
-        var samples = energySampleRepo
-                .findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTime(
-                        siteId, MeterKind.MAIN, start, end);
+        var samples = energySampleStore.find(siteId, MeterKind.MAIN, start, end);
 
         if (samples == null || samples.isEmpty()) {
             Map<String, Object> resp = new LinkedHashMap<>();
@@ -179,9 +181,7 @@ public class PartnerTelemetryController {
             Instant start = today.atStartOfDay(IST).toInstant();
             Instant end   = start.plus(1, java.time.temporal.ChronoUnit.DAYS);
 
-            List<EnergySample> samples = energySampleRepo
-                    .findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTime(
-                            siteId, MeterKind.MAIN, start, end);
+            List<EnergySample> samples = energySampleStore.find(siteId, MeterKind.MAIN, start, end);
 
             if (samples != null) {
                 for (EnergySample s : samples) {
@@ -226,9 +226,7 @@ public class PartnerTelemetryController {
             // Fallback rows from energy_sample (MAIN)
             Instant from = start.atZone(IST).toInstant();
             Instant to   = now.atZone(IST).toInstant();
-            List<EnergySample> samples = energySampleRepo
-                    .findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTime(
-                            siteId, MeterKind.MAIN, from, to);
+            List<EnergySample> samples = energySampleStore.find(siteId, MeterKind.MAIN, from, to);
 
             if (samples != null) {
                 for (EnergySample s : samples) {
@@ -257,82 +255,9 @@ public class PartnerTelemetryController {
         Long siteId = resolveSiteId(principal, siteIdParam);
 
         var today = LocalDate.now(IST);
-        var start = today.withDayOfMonth(1).atStartOfDay();
-        var now   = LocalDateTime.now(IST);
-
-        List<Reading> list = Optional.ofNullable(
-                readingRepo.findRange(siteId, start, now)
-        ).orElseGet(Collections::emptyList);
-
-        double energyMonth = 0.0;
-        double peakKw      = 0.0;
-        boolean computedFromReading = false;
-
-        if (!list.isEmpty()) {
-            // compute delta only if both ends are non-null
-            Double first = null, last = null;
-            for (Reading r : list) {
-                Double e = r.getEnergyKwh();
-                if (e != null) { first = e; break; }
-            }
-            for (int i = list.size() - 1; i >= 0; i--) {
-                Double e = list.get(i).getEnergyKwh();
-                if (e != null) { last = e; break; }
-            }
-            if (first != null && last != null && last >= first) {
-                energyMonth = last - first;
-                computedFromReading = true;
-            }
-            peakKw = list.stream()
-                    .map(Reading::getPowerKw)
-                    .filter(Objects::nonNull)
-                    .mapToDouble(Double::doubleValue)
-                    .max().orElse(0.0);
-        }
-
-        if (!computedFromReading) {
-            // Fallback: ENERGY_SAMPLE (MAIN)
-            Instant from = start.atZone(IST).toInstant();
-            Instant to   = now.atZone(IST).toInstant();
-            List<EnergySample> samples = Optional.ofNullable(
-                    energySampleRepo.findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTime(
-                            siteId, MeterKind.MAIN, from, to)
-            ).orElseGet(Collections::emptyList);
-
-            // Peak from samples
-            double samplePeak = samples.stream()
-                    .map(EnergySample::getTotalAcPowerKw)
-                    .filter(Objects::nonNull)
-                    .mapToDouble(Double::doubleValue)
-                    .max().orElse(0.0);
-
-            // Try last - first over the whole range (what your test expects)
-            Double firstDaily = null, lastDaily = null;
-            for (EnergySample s : samples) {
-                Double d = s.getDailyAcEnergyKwh();
-                if (d != null) { firstDaily = d; break; }
-            }
-            for (int i = samples.size() - 1; i >= 0; i--) {
-                Double d = samples.get(i).getDailyAcEnergyKwh();
-                if (d != null) { lastDaily = d; break; }
-            }
-
-            if (firstDaily != null && lastDaily != null && lastDaily >= firstDaily) {
-                energyMonth = lastDaily - firstDaily;
-            } else {
-                // If last-first is unusable (e.g., daily resets), fall back to sum of per-day maxima.
-                Map<LocalDate, Double> maxDailyByDate = new HashMap<>();
-                for (EnergySample s : samples) {
-                    Double d = s.getDailyAcEnergyKwh();
-                    if (d == null) continue;
-                    LocalDate day = s.getSampleTime().atZone(IST).toLocalDate();
-                    maxDailyByDate.merge(day, d, Math::max);
-                }
-                energyMonth = maxDailyByDate.values().stream().mapToDouble(Double::doubleValue).sum();
-            }
-
-            if (peakKw <= 0.0) peakKw = samplePeak; // use sample peak if reading had none
-        }
+        MonthTotals totals = monthTotals(siteId, today);
+        double energyMonth = totals.energyKwh();
+        double peakKw      = totals.peakKw();
 
         int daysElapsed = today.getDayOfMonth();
         double avgPerDay = daysElapsed > 0 ? energyMonth / daysElapsed : 0.0;
@@ -355,20 +280,29 @@ public class PartnerTelemetryController {
         resp.put("peakPowerKw",    round1(peakKw));
         resp.put("pr", null);
         resp.put("cufPct", cufPct);
+        // year-to-date only exists as a rollup; null until the first day of the year is aggregated
+        resp.put("energyYearKwh", yearRollupRepo
+                .findBySiteIdAndMeterKindAndPeriodStart(siteId, MeterKind.MAIN, today.withDayOfYear(1))
+                .map(y -> y.getAcActiveEnergyKwh() != null ? round1(y.getAcActiveEnergyKwh().doubleValue()) : null)
+                .orElse(null));
         return resp;
     }
 
-    // ----------------- MONTH SUMMARY CSV -----------------
-
-    @GetMapping(value = "/export/month-summary.csv", produces = "text/csv; charset=UTF-8")
-    public ResponseEntity<String> exportMonthSummaryCsv(
-            Principal principal,
-            @RequestParam(value = "siteId", required = false) Long siteIdParam) {
-
-        Long siteId = resolveSiteId(principal, siteIdParam);
+    private record MonthTotals(double energyKwh, double peakKw) {}
+
+    /** Month-to-date energy and peak: the MAIN reading_month_meter row, else a scan of the month's telemetry. */
+    private MonthTotals monthTotals(Long siteId, LocalDate today) {
+        var monthStart = today.withDayOfMonth(1);
+        var rollup = monthRollupRepo.findBySiteIdAndMeterKindAndPeriodStart(siteId, MeterKind.MAIN, monthStart)
+                .filter(m -> m.getAcActiveEnergyKwh() != null && m.getAcActiveEnergyKwh().signum() > 0);
+        if (rollup.isPresent()) {
+            var m = rollup.get();
+            return new MonthTotals(m.getAcActiveEnergyKwh().doubleValue(),
+                    m.getMaxAcPowerKw() != null ? m.getMaxAcPowerKw().doubleValue() : 0.0);
+        }
 
-        var today = LocalDate.now(IST);
-        var start = today.withDayOfMonth(1).atStartOfDay();
+        // No rollup yet (aggregation off, brand-new site): scan the month
+        var start = monthStart.atStartOfDay();
         var now   = LocalDateTime.now(IST);
 
         List<Reading> list = Optional.ofNullable(
@@ -380,6 +314,7 @@ public class PartnerTelemetryController {
         boolean computedFromReading = false;
 
         if (!list.isEmpty()) {
+            // compute delta only if both ends are non-null
             Double first = null, last = null;
             for (Reading r : list) {
                 Double e = r.getEnergyKwh();
@@ -401,19 +336,21 @@ public class PartnerTelemetryController {
         }
 
         if (!computedFromReading) {
+            // Fallback: ENERGY_SAMPLE (MAIN)
             Instant from = start.atZone(IST).toInstant();
             Instant to   = now.atZone(IST).toInstant();
             List<EnergySample> samples = Optional.ofNullable(
-                    energySampleRepo.findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTime(
-                            siteId, MeterKind.MAIN, from, to)
+                    energySampleStore.find(siteId, MeterKind.MAIN, from, to)
             ).orElseGet(Collections::emptyList);
 
+            // Peak from samples
             double samplePeak = samples.stream()
                     .map(EnergySample::getTotalAcPowerKw)
                     .filter(Objects::nonNull)
                     .mapToDouble(Double::doubleValue)
                     .max().orElse(0.0);
 
+            // Try last - first over the whole range (what your test expects)
             Double firstDaily = null, lastDaily = null;
             for (EnergySample s : samples) {
                 Double d = s.getDailyAcEnergyKwh();
@@ -427,6 +364,7 @@ public class PartnerTelemetryController {
             if (firstDaily != null && lastDaily != null && lastDaily >= firstDaily) {
                 energyMonth = lastDaily - firstDaily;
             } else {
+                // If last-first is unusable (e.g., daily resets), fall back to sum of per-day maxima.
                 Map<LocalDate, Double> maxDailyByDate = new HashMap<>();
                 for (EnergySample s : samples) {
                     Double d = s.getDailyAcEnergyKwh();
@@ -437,8 +375,24 @@ public class PartnerTelemetryController {
                 energyMonth = maxDailyByDate.values().stream().mapToDouble(Double::doubleValue).sum();
             }
 
-            if (peakKw <= 0.0) peakKw = samplePeak;
+            if (peakKw <= 0.0) peakKw = samplePeak; // use sample peak if reading had none
         }
+        return new MonthTotals(energyMonth, peakKw);
+    }
+
+    // ----------------- MONTH SUMMARY CSV -----------------
+
+    @GetMapping(value = "/export/month-summary.csv", produces = "text/csv; charset=UTF-8")
+    public ResponseEntity<String> exportMonthSummaryCsv(
+            Principal principal,
+            @RequestParam(value = "siteId", required = false) Long siteIdParam) {
+
+        Long siteId = resolveSiteId(principal, siteIdParam);
+
+        var today = LocalDate.now(IST);
+        MonthTotals totals = monthTotals(siteId, today);
+        double energyMonth = totals.energyKwh();
+        double peakKw      = totals.peakKw();
 
         int daysElapsed = today.getDayOfMonth();
         double avgPerDay = daysElapsed > 0 ? energyMonth / daysElapsed : 0.0;
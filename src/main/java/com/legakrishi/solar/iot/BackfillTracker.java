@@ -0,0 +1,87 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.service.AggregationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which (site, meter, day) a reading backfill touched, and re-runs
+ * {@link AggregationService#aggregateDayPerMeter} (which reads the reading table) for each of them
+ * exactly once, after the backfill has gone quiet for lkf.ingest.backfill.quiet-seconds (or when
+ * flushed by hand). Replayed energy_sample rows are not tracked here: their rollups are rebuilt
+ * through IntervalRollupService by IntervalRollupRefresher, like live ones.
+ */
+@Slf4j
+@Component
+public class BackfillTracker implements TelemetryListener {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private final AggregationService aggregationService;
+    private final IngestProps.Backfill props;
+
+    private final Set<DayKey> touched = ConcurrentHashMap.newKeySet();
+    private volatile long lastActivityMs;
+
+    public BackfillTracker(AggregationService aggregationService, IngestProps props) {
+        this.aggregationService = aggregationService;
+        this.props = props.getBackfill();
+    }
+
+    @Override
+    public void onCommitted(List<TelemetryPoint> points) {
+        for (TelemetryPoint p : points) {
+            if (p.replay() && p.source() == TelemetryPoint.Source.READING) touch(p.siteId(), p.meter(), p.time());
+        }
+    }
+
+    public void touch(Long siteId, MeterKind meter, Instant sampleTime) {
+        if (siteId == null || meter == null || sampleTime == null) return;
+        touched.add(new DayKey(siteId, meter, LocalDate.ofInstant(sampleTime, IST)));
+        lastActivityMs = System.currentTimeMillis();
+    }
+
+    public int pending() {
+        return touched.size();
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelay = 30_000)
+    public void reaggregateWhenQuiet() {
+        if (touched.isEmpty()) return;
+        if (System.currentTimeMillis() - lastActivityMs < props.getQuietSeconds() * 1000L) return;
+        flush();
+    }
+
+    /** Re-aggregate every touched day once; returns how many (site, meter, day) rows were rebuilt. */
+    public synchronized int flush() {
+        List<DayKey> batch = new ArrayList<>(touched);
+        batch.sort(Comparator.comparing(DayKey::day).thenComparing(DayKey::siteId).thenComparing(DayKey::meter));
+        int done = 0;
+        for (DayKey k : batch) {
+            touched.remove(k);
+            try {
+                aggregationService.aggregateDayPerMeter(k.siteId(), k.day(), k.meter());
+                done++;
+            } catch (Exception ex) {
+                log.warn("Backfill re-aggregation failed for site={} meter={} day={}: {}",
+                        k.siteId(), k.meter(), k.day(), ex.getMessage());
+            }
+        }
+        log.info("Backfill re-aggregation: {} of {} (site, meter, day) rows rebuilt", done, batch.size());
+        return done;
+    }
+
+    public record DayKey(Long siteId, MeterKind meter, LocalDate day) {}
+}
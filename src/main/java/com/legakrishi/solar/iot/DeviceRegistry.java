@@ -0,0 +1,140 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.model.Device;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.DbDialect;
+import com.legakrishi.solar.repository.DeviceRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory view of devices for the ingest hot path.
+ * - credentials: one SELECT per device per TTL instead of per reading; AdminDeviceController evicts on change
+ * - lastSeen: heartbeats are kept in a map and written in one batched UPDATE every few seconds
+ */
+@Slf4j
+@Component
+public class DeviceRegistry implements TelemetryListener {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private final DeviceRepository deviceRepo;
+    private final JdbcTemplate jdbc;
+    private final DbDialect dialect;
+    private final IngestProps props;
+
+    private final Map<Long, CachedDevice> devices = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDateTime> pendingLastSeen = new ConcurrentHashMap<>();
+
+    public DeviceRegistry(DeviceRepository deviceRepo, JdbcTemplate jdbc, DbDialect dialect, IngestProps props) {
+        this.deviceRepo = deviceRepo;
+        this.jdbc = jdbc;
+        this.dialect = dialect;
+        this.props = props;
+    }
+
+    /** Active device with a matching token, or SecurityException (same contract as the old findById check). */
+    public CachedDevice authenticate(Long deviceId, String token) {
+        CachedDevice d = get(deviceId);
+        if (d == null || !d.active() || !tokenMatches(d.apiToken(), token)) {
+            throw new SecurityException("Invalid device or token");
+        }
+        return d;
+    }
+
+    public CachedDevice get(Long deviceId) {
+        if (deviceId == null) return null;
+        long now = System.currentTimeMillis();
+        CachedDevice d = devices.get(deviceId);
+        if (d != null && now - d.loadedAtMs() < props.getDeviceCacheTtlSeconds() * 1000L) {
+            return d;
+        }
+        CachedDevice loaded = deviceRepo.findById(deviceId).map(dev -> CachedDevice.of(dev, now)).orElse(null);
+        if (loaded == null) {
+            devices.remove(deviceId);
+        } else {
+            devices.put(deviceId, loaded);
+        }
+        return loaded;
+    }
+
+    public void evict(Long deviceId) {
+        if (deviceId != null) devices.remove(deviceId);
+    }
+
+    public void evictAll() {
+        devices.clear();
+    }
+
+    // ---- lastSeen coalescing ----
+
+    public void heartbeat(Long deviceId) {
+        if (deviceId != null) pendingLastSeen.put(deviceId, LocalDateTime.now(IST));
+    }
+
+    // committed device readings count as a sign of life (what OfflineAlertJob looks at)
+    @Override
+    public void onCommitted(List<TelemetryPoint> points) {
+        for (TelemetryPoint p : points) {
+            if (p.source() == TelemetryPoint.Source.READING) heartbeat(p.deviceId());
+        }
+    }
+
+    @Scheduled(initialDelay = 5_000, fixedDelayString = "${lkf.ingest.last-seen-flush-ms:5000}")
+    public void flushLastSeen() {
+        if (pendingLastSeen.isEmpty()) return;
+
+        List<Map.Entry<Long, LocalDateTime>> taken = new ArrayList<>();
+        for (Map.Entry<Long, LocalDateTime> e : pendingLastSeen.entrySet()) {
+            taken.add(Map.entry(e.getKey(), e.getValue()));
+        }
+        try {
+            // bound like the JPA-written last_seen (UTC JDBC calendar), not in the JVM zone
+            jdbc.batchUpdate("update device set last_seen = ? where id = ?", taken, taken.size(), (ps, e) -> {
+                dialect.setLocalDateTime(ps, 1, e.getValue());
+                ps.setLong(2, e.getKey());
+            });
+            // keep entries that got a newer heartbeat while we were writing
+            taken.forEach(e -> pendingLastSeen.remove(e.getKey(), e.getValue()));
+        } catch (Exception ex) {
+            log.warn("lastSeen flush for {} devices failed: {}", taken.size(), ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flushLastSeen();
+    }
+
+    private static boolean tokenMatches(String expected, String given) {
+        if (expected == null || given == null) return false;
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Just what ingest needs; no lazy Site proxy hanging off it. */
+    public record CachedDevice(Long id, Long siteId, String apiToken, boolean active,
+                               MeterKind defaultMeterKind, long loadedAtMs) {
+
+        static CachedDevice of(Device d, long now) {
+            return new CachedDevice(d.getId(),
+                    d.getSite() != null ? d.getSite().getId() : null,
+                    d.getApiToken(),
+                    Boolean.TRUE.equals(d.getActive()),
+                    d.getDefaultMeterKind(),
+                    now);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.legakrishi.solar.iot;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import com.legakrishi.solar.iot.dto.SampleIn;
+import com.legakrishi.solar.model.EnergySample;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a JSON array of {@link SampleIn} one element at a time and hands every chunkSize valid rows to
+ * {@link TelemetryIngestCore}, so a multi-day backfill never sits in heap as a whole
+ * (gzip or zstd bodies are decoded on the fly).
+ */
+@Slf4j
+@Component
+public class EnergySampleStreamIngestor {
+
+    private final ObjectMapper mapper;
+    private final TelemetryIngestCore core;
+
+    public EnergySampleStreamIngestor(ObjectMapper mapper, TelemetryIngestCore core) {
+        this.mapper = mapper;
+        this.core = core;
+    }
+
+    /** Wrap the raw body for its Content-Encoding; IllegalArgumentException for encodings we do not speak. */
+    public static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        if (contentEncoding == null || contentEncoding.isBlank()) return body;
+        return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "identity" -> body;
+            case "gzip", "x-gzip" -> new GZIPInputStream(body, 64 * 1024);
+            case "zstd" -> new BufferedInputStream(new ZstdInputStream(body), 64 * 1024);
+            default -> throw new IllegalArgumentException("unsupported Content-Encoding: " + contentEncoding);
+        };
+    }
+
+    public StreamResult ingest(InputStream json) throws IOException {
+        return ingest(json, false);
+    }
+
+    /**
+     * Backfill mode: no live ticks, touched days are re-aggregated once the backfill has gone quiet.
+     * A malformed or truncated body ends the stream early: the rows before it are kept, the result carries the error.
+     */
+    public StreamResult ingest(InputStream json, boolean backfillMode) throws IOException {
+        long t0 = System.nanoTime();
+        int size = core.chunkSize();
+        List<EnergySample> buffer = new ArrayList<>(size);
+        List<TelemetryBatchWriter.ChunkResult> chunks = new ArrayList<>();
+        int[] counts = new int[2];                  // duplicates answered by the core, rows queued in the WAL
+        int received = 0, invalid = 0;
+        String error = null;
+
+        try (JsonParser p = mapper.getFactory().createParser(json)) {
+            if (p.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("expected a JSON array of samples");
+            }
+            try {
+                JsonToken t;
+                while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                    if (t == null) throw new IllegalArgumentException("unexpected end of input");
+                    received++;
+                    // one element as a tree: a bad field rejects this row only and keeps the parser in step
+                    JsonNode node = mapper.readTree(p);
+                    EnergySample s = toSample(node);
+                    if (s == null) {
+                        invalid++;
+                        continue;
+                    }
+                    buffer.add(s);
+                    if (buffer.size() >= size) {
+                        write(chunks, counts, buffer, backfillMode);
+                        buffer.clear();
+                    }
+                }
+            } catch (JsonProcessingException | IllegalArgumentException ex) {
+                // keep what was parsed cleanly; the gateway can resend, inserts are idempotent
+                error = ex.getMessage();
+            } catch (IOException ex) {
+                // the body itself broke off: EOF inside a gzip/zstd frame, or the client went away
+                error = "truncated body: " + ex;
+            }
+        }
+        if (!buffer.isEmpty()) {
+            write(chunks, counts, buffer, backfillMode);
+        }
+
+        StreamResult r = StreamResult.of(received, invalid, counts[0], counts[1], chunks, System.nanoTime() - t0, error);
+        log.info("Stream ingest: received={} accepted={} duplicates={} rejected={} chunks={} in {} ms ({} rows/s){}",
+                r.received(), r.accepted(), r.duplicates(), r.rejected(), chunks.size(), r.millis(),
+                Math.round(r.rowsPerSecond()), error != null ? " error=" + error : "");
+        return r;
+    }
+
+    // one core call per chunk; adds the rows the core answered from its recent-key cache to counts[0] and,
+    // with the WAL on (no chunk results, the rows are applied later), the rows it queued to counts[1]
+    private void write(List<TelemetryBatchWriter.ChunkResult> chunks, int[] counts, List<EnergySample> buffer,
+                       boolean backfillMode) {
+        var result = core.submitSamples(buffer, backfillMode);
+        int written = 0, fromChunks = 0;
+        for (var c : result.chunks()) {
+            chunks.add(new TelemetryBatchWriter.ChunkResult(chunks.size(), c.rows(), c.written(), c.millis(), c.error()));
+            written += c.written();
+            fromChunks += c.duplicates();
+        }
+        counts[0] += result.duplicates() - fromChunks;
+        counts[1] += result.accepted() - written;
+    }
+
+    private EnergySample toSample(JsonNode node) {
+        SampleIn p;
+        try {
+            p = mapper.treeToValue(node, SampleIn.class);
+        } catch (JsonProcessingException | IllegalArgumentException ex) {
+            return null;
+        }
+        if (p == null || p.siteId == null || p.meterKind == null) return null;
+
+        EnergySample s = new EnergySample();
+        s.setSiteId(p.siteId);
+        s.setMeterKind(p.meterKind);
+        s.setSampleTime(p.sampleTimeUtc != null ? p.sampleTimeUtc : Instant.now());
+
+        s.setTotalAcPowerKw(n(p.totalAcPowerKw));
+        s.setDailyAcEnergyKwh(n(p.dailyAcEnergyKwh));
+        s.setDailyAcExportKwh(n(p.dailyAcExportKwh));
+        s.setDailyAcImportKwh(n(p.dailyAcImportKwh));
+        s.setDailyDcEnergyKwh(n(p.dailyDcEnergyKwh));
+
+        s.setDeviceId(p.deviceId);
+        s.setFirmware(p.firmware);
+        return s;
+    }
+
+    private static Double n(Double v){ return v == null ? 0d : v; }
+
+    /** accepted = rows written + rows queued in the WAL; rejected = invalid rows + rows of chunks that failed to commit. */
+    public record StreamResult(int received, int accepted, int duplicates, int rejected, int failedChunks,
+                               long millis, double rowsPerSecond, String error,
+                               List<TelemetryBatchWriter.ChunkResult> chunks) {
+
+        static StreamResult of(int received, int invalid, int recentDuplicates, int queued,
+                               List<TelemetryBatchWriter.ChunkResult> chunks, long nanos, String error) {
+            int accepted = queued, duplicates = recentDuplicates, failedRows = 0, failedChunks = 0;
+            for (var c : chunks) {
+                accepted += c.written();
+                duplicates += c.duplicates();
+                if (!c.ok()) { failedRows += c.rows(); failedChunks++; }
+            }
+            double rps = nanos > 0 ? accepted / (nanos / 1e9) : 0d;
+            return new StreamResult(received, accepted, duplicates, invalid + failedRows, failedChunks,
+                    nanos / 1_000_000, rps, error, chunks);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.legakrishi.solar.iot;
 
 import com.legakrishi.solar.iot.dto.IngestPayload;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,8 +21,17 @@ public class IngestController {
     @PostMapping("/ingest")
     public ResponseEntity<?> ingest(@RequestBody IngestPayload payload) {
         try {
+            // the device's rate limit is charged by the service once its token checks out
+            if (service.isAsync()) {
+                service.enqueue(payload);
+                return ResponseEntity.accepted().body("Accepted");
+            }
             service.ingest(payload);
             return ResponseEntity.ok().body("OK");
+        } catch (IngestThrottledException te) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(te.getRetryAfterSeconds()))
+                    .body(te.getMessage());
         } catch (SecurityException se) {
             return ResponseEntity.status(401).body("Unauthorized");
         } catch (IllegalArgumentException iae) {
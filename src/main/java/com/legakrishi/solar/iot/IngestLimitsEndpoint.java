@@ -0,0 +1,29 @@
+package com.legakrishi.solar.iot;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** /actuator/ingestlimits: configured rates and 429s per device / site / client since startup. */
+@Component
+@Endpoint(id = "ingestlimits")
+public class IngestLimitsEndpoint {
+
+    private final IngestRateLimiter limiter;
+
+    public IngestLimitsEndpoint(IngestRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> limits() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("limits", limiter.limits());
+        out.put("activeBuckets", limiter.activeBuckets());
+        out.put("rejected", limiter.rejectionCounts());
+        return out;
+    }
+}
@@ -0,0 +1,157 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets per device, site and bulk client, so one chatty gateway cannot take the single
+ * shared CPU away from the dashboards. Each bucket is one AtomicLong (the time at which it is
+ * full again, GCRA-style) updated by CAS; no locks on the request path.
+ * Rejections are counted per key (ingest.throttled) and listed at /actuator/ingestlimits.
+ * Keys are bounded: past lkf.ingest.limits.max-keys new keys share one overflow bucket per scope
+ * ("device:*"), past metric-keys new keys are counted under the tag key=other; idle buckets expire.
+ */
+@Component
+public class IngestRateLimiter {
+
+    public enum Scope { DEVICE, SITE, CLIENT }
+
+    private final IngestProps.Limits props;
+    private final MeterRegistry meters;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, Rejections> rejections = new ConcurrentHashMap<>();
+
+    public IngestRateLimiter(IngestProps props, MeterRegistry meters) {
+        this.props = props.getLimits();
+        this.meters = meters;
+    }
+
+    /** Take {@code cost} tokens for the key or throw {@link IngestThrottledException} (429 + Retry-After). */
+    public void acquire(Scope scope, Object id, int cost) {
+        if (!props.isEnabled() || id == null) return;
+        String prefix = scope.name().toLowerCase();
+        String key = prefix + ":" + id;
+        Bucket b = buckets.get(key);
+        if (b == null) {
+            // a flood of made-up ids must not grow the map without end: they share the overflow bucket
+            if (buckets.size() >= props.getMaxKeys()) key = prefix + ":*";
+            b = buckets.computeIfAbsent(key, k -> newBucket(scope));
+        }
+        long waitNanos = b.tryTake(Math.max(1, cost), System.nanoTime());
+        if (waitNanos > 0) {
+            String tagged = rejections.containsKey(key) || rejections.size() < props.getMetricKeys() ? key : prefix + ":*";
+            rejections.computeIfAbsent(tagged, k -> new Rejections(
+                    Counter.builder("ingest.throttled")
+                            .description("Ingest requests rejected by the rate limiter")
+                            .tag("scope", prefix)
+                            .tag("key", k.endsWith(":*") ? "other" : k.substring(prefix.length() + 1))
+                            .register(meters)))
+                    .hit();
+            int retryAfter = (int) Math.max(1, Math.ceil(waitNanos / 1e9));
+            throw new IngestThrottledException("rate limit exceeded for " + key, retryAfter);
+        }
+    }
+
+    /**
+     * Bulk client id for {@link Scope#CLIENT}: a short SHA-256 digest of the X-API-Key (the key itself
+     * is a credential and must not end up in metric tags or the actuator), else the caller's address.
+     */
+    public static String clientId(String apiKey, String remoteAddr) {
+        if (apiKey == null || apiKey.isBlank()) return "addr-" + remoteAddr;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return "key-" + HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);          // every JRE has SHA-256
+        }
+    }
+
+    /** Per-key rejection totals since startup, for the actuator endpoint. */
+    public Map<String, Long> rejectionCounts() {
+        Map<String, Long> out = new TreeMap<>();
+        rejections.forEach((k, r) -> out.put(k, r.total.sum()));
+        return out;
+    }
+
+    public int activeBuckets() {
+        return buckets.size();
+    }
+
+    public IngestProps.Limits limits() {
+        return props;
+    }
+
+    // a bucket that has refilled completely carries no state worth keeping
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(b -> b.isFull(now));
+    }
+
+    private Bucket newBucket(Scope scope) {
+        return switch (scope) {
+            case DEVICE -> new Bucket(props.getDevicePerSecond(), props.getDeviceBurst());
+            case SITE -> new Bucket(props.getSitePerSecond(), props.getSiteBurst());
+            case CLIENT -> new Bucket(props.getClientPerSecond(), props.getClientBurst());
+        };
+    }
+
+    static final class Bucket {
+        private final long nanosPerToken;
+        private final int burst;
+        private final long tolerance;                 // burst expressed as time
+        private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+        Bucket(double perSecond, int burst) {
+            this.nanosPerToken = (long) (1_000_000_000L / Math.max(perSecond, 0.001));
+            this.burst = Math.max(1, burst);
+            this.tolerance = nanosPerToken * this.burst;
+        }
+
+        /** 0 when the tokens were taken, otherwise nanos until they would be available. */
+        long tryTake(int cost, long now) {
+            cost = Math.min(cost, burst);             // an oversized bulk request needs a full bucket, not more
+            while (true) {
+                long cur = fullAt.get();
+                long base = cur == Long.MIN_VALUE || cur - now < 0 ? now : cur;
+                long next = base + cost * nanosPerToken;
+                long over = next - now - tolerance;
+                if (over > 0) return over;
+                if (fullAt.compareAndSet(cur, next)) return 0;
+            }
+        }
+
+        boolean isFull(long now) {
+            long cur = fullAt.get();
+            return cur == Long.MIN_VALUE || cur - now <= 0;
+        }
+    }
+
+    private static final class Rejections {
+        final Counter counter;
+        final LongAdder total = new LongAdder();
+
+        Rejections(Counter counter) {
+            this.counter = counter;
+        }
+
+        void hit() {
+            counter.increment();
+            total.increment();
+        }
+    }
+}
@@ -3,9 +3,7 @@ package com.legakrishi.solar.iot;
 import com.legakrishi.solar.iot.dto.IngestPayload;
 import com.legakrishi.solar.model.Device;
 import com.legakrishi.solar.model.Reading;
-import com.legakrishi.solar.repository.DeviceRepository;
-import com.legakrishi.solar.repository.ReadingRepository;
-import jakarta.transaction.Transactional;
+import com.legakrishi.solar.model.Site;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -13,28 +11,52 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import com.legakrishi.solar.model.MeterKind;
 import java.math.BigDecimal;
+import java.util.List;
 
 @Service
 public class IngestService {
 
-    private final DeviceRepository deviceRepo;
-    private final ReadingRepository readingRepo;
+    private final DeviceRegistry devices;
+    private final TelemetryIngestCore core;
+    private final ReadingWriteBehind writeBehind;
+    private final IngestRateLimiter limiter;
 
-    public IngestService(DeviceRepository deviceRepo, ReadingRepository readingRepo) {
-        this.deviceRepo = deviceRepo;
-        this.readingRepo = readingRepo;
+    public IngestService(DeviceRegistry devices, TelemetryIngestCore core, ReadingWriteBehind writeBehind,
+                         IngestRateLimiter limiter) {
+        this.devices = devices;
+        this.core = core;
+        this.writeBehind = writeBehind;
+        this.limiter = limiter;
     }
 
-    @Transactional
+    /** True when lkf.ingest.async.enabled: callers should use {@link #enqueue} and answer 202. */
+    public boolean isAsync() {
+        // the WAL is already asynchronous and durable; never put the in-memory queue in front of it
+        return writeBehind.isEnabled() && !core.isDurableQueue();
+    }
+
+    /** Write now (or into the WAL); a resent reading (same site, meter and time) gets no second row. */
     public void ingest(IngestPayload p) {
+        var result = core.submitReadings(List.of(toReading(p)), false);
+        if (result.failedChunks() > 0) {
+            throw new IllegalStateException(result.error());
+        }
+    }
+
+    /** Validate in the request thread, write later in a batch through the same core. */
+    public void enqueue(IngestPayload p) {
+        writeBehind.enqueue(toReading(p));
+    }
+
+    private Reading toReading(IngestPayload p) {
         if (p.getDeviceId() == null || p.getDeviceToken() == null) {
             throw new IllegalArgumentException("deviceId and deviceToken are required");
         }
 
-        Device d = deviceRepo.findById(p.getDeviceId())
-                .filter(Device::getActive)
-                .filter(dev -> dev.getApiToken().equals(p.getDeviceToken()))
-                .orElseThrow(() -> new SecurityException("Invalid device or token"));
+        // cached credentials; no SELECT per reading
+        DeviceRegistry.CachedDevice d = devices.authenticate(p.getDeviceId(), p.getDeviceToken());
+        // only after authentication: unknown ids and bad tokens get a 401 and never a bucket of their own
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, d.id(), 1);
 
         // Timestamp in Asia/Kolkata (matches your project)
         LocalDateTime ts = (p.getTsEpoch() != null)
@@ -42,16 +64,20 @@ public class IngestService {
                 : LocalDateTime.now(ZoneId.of("Asia/Kolkata"));
         // Default to MAIN when not provided
         MeterKind kind = p.getMeter();
-        if (kind == null && d.getDefaultMeterKind() != null) {
-            kind = d.getDefaultMeterKind();
+        if (kind == null && d.defaultMeterKind() != null) {
+            kind = d.defaultMeterKind();
         }
         if (kind == null) {
             kind = MeterKind.MAIN; // final fallback
         }
 
-        Reading r = Reading.builder()
-                .site(d.getSite())
-                .device(d)
+        // attach site/device by id only (no entity load)
+        Site site = new Site(); site.setId(d.siteId());
+        Device device = new Device(); device.setId(d.id());
+
+        return Reading.builder()
+                .site(site)
+                .device(device)
                 .ts(ts)
                 // NEW: which meter
                 .meterKind(kind)
@@ -77,8 +103,5 @@ public class IngestService {
                 .totalDcEnergyKwh(p.getTotalDcEnergyKwh())
 
                 .build();
-
-        readingRepo.save(r);
-        deviceRepo.touchLastSeen(d.getId());
     }
 }
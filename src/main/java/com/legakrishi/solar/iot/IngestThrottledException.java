@@ -0,0 +1,16 @@
+package com.legakrishi.solar.iot;
+
+/** Ingest cannot take more data right now; controllers answer 429 with Retry-After. */
+public class IngestThrottledException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public IngestThrottledException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,179 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.model.Reading;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory queue of validated readings plus one writer thread that drains it in batches,
+ * flushing when a batch is full or flushIntervalMs has passed since its first reading.
+ * Stops after the web server, so everything accepted before shutdown is written (Fly stops the VM often).
+ * Batches go through {@link TelemetryIngestCore}, so dedupe and post-commit listeners (lastSeen etc.) apply.
+ * The readings were acknowledged with 202, so a batch that fails on the database is retried with backoff
+ * (its committed rows come back as duplicates) while the full queue answers 429; only rows the database
+ * rejects, or a batch still failing after lkf.ingest.async.max-attempts, are dropped (ingest.async.dropped).
+ */
+@Slf4j
+@Component
+public class ReadingWriteBehind implements SmartLifecycle {
+
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final TelemetryIngestCore core;
+    private final IngestProps.Async props;
+    private final BlockingQueue<Reading> queue;
+    private final Counter retried;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private volatile int inFlight;             // readings of the batch being written or retried
+    private Thread writer;
+
+    public ReadingWriteBehind(TelemetryIngestCore core, IngestProps props, MeterRegistry meters) {
+        this.core = core;
+        this.props = props.getAsync();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, this.props.getQueueCapacity()));
+        this.retried = Counter.builder("ingest.async.retries")
+                .description("Write-behind batches written again after a failed flush")
+                .register(meters);
+        this.dropped = Counter.builder("ingest.async.dropped")
+                .description("Acknowledged readings the write-behind could not write")
+                .register(meters);
+        Gauge.builder("ingest.async.depth", queue, BlockingQueue::size).register(meters);
+    }
+
+    public boolean isEnabled() {
+        return props.isEnabled();
+    }
+
+    /** Queue one reading; throws {@link IngestThrottledException} when the queue is full or shutting down. */
+    public void enqueue(Reading r) {
+        if (!running || !queue.offer(r)) {
+            throw new IngestThrottledException("Ingest queue full", props.getRetryAfterSeconds());
+        }
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public void start() {
+        if (!props.isEnabled() || running) return;
+        running = true;
+        writer = new Thread(this::drainLoop, "reading-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Reading write-behind started: capacity={} batch={} flush={}ms",
+                props.getQueueCapacity(), props.getBatchSize(), props.getFlushIntervalMs());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        running = false;           // new enqueues now get 429; the loop drains what is left
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(25));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty() || inFlight > 0) {
+            log.warn("Reading write-behind stopped with {} readings unwritten", queue.size() + inFlight);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Lower phase stops later: the web server stops first, then we drain.
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    // ---- writer ----
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, props.getBatchSize());
+        List<Reading> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Reading first = queue.poll(props.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.currentTimeMillis() + props.getFlushIntervalMs();
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0 || !running) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        break;
+                    }
+                    Reading next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception ex) {
+                log.warn("Write-behind flush of {} readings failed: {}", batch.size(), ex.getMessage());
+            } finally {
+                batch.clear();
+                inFlight = 0;
+            }
+        }
+    }
+
+    // Rewriting the whole batch is safe: rows of chunks that did commit are in the recent keys
+    // (or hit the unique key) and come back as duplicates. The writer blocks meanwhile, so the
+    // queue fills and clients are pushed back with 429 rather than being acknowledged into a hole.
+    private void flush(List<Reading> batch) throws InterruptedException {
+        inFlight = batch.size();
+        long backoff = Math.max(1, props.getRetryBackoffMs());
+        for (int attempt = 1; ; attempt++) {
+            int failed;
+            boolean permanent;
+            String error;
+            try {
+                var result = core.writeReadings(batch, false);
+                if (result.failedChunks() == 0) return;
+                failed = result.rejected();
+                permanent = result.permanentFailure();
+                error = result.error();
+            } catch (RuntimeException ex) {
+                failed = batch.size();
+                permanent = false;
+                error = ex.getMessage();
+            }
+            if (permanent || attempt >= Math.max(1, props.getMaxAttempts())) {
+                dropped.increment(failed);
+                log.error("Write-behind dropped {} of {} readings after {} attempt(s): {}",
+                        failed, batch.size(), attempt, error);
+                return;
+            }
+            log.warn("Write-behind flush of {} readings failed (attempt {}), retrying in {} ms: {}",
+                    batch.size(), attempt, backoff, error);
+            retried.increment();
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.model.MeterKind;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-site LRU of recently stored (meter, sampleTime) keys, so most gateway retries are answered
+ * as duplicates without touching the DB. A miss is not authoritative; the unique key on
+ * energy_sample (site_id, meter_kind, sample_time) is. TelemetryIngestCore keeps a second instance
+ * for readings, partitioned by device id instead of site id.
+ */
+@Component
+public class RecentSampleKeys {
+
+    private final Map<Long, SiteKeys> sites = new ConcurrentHashMap<>();
+    private final IngestProps props;
+
+    public RecentSampleKeys(IngestProps props) {
+        this.props = props;
+    }
+
+    public boolean seen(Long siteId, MeterKind meter, Instant sampleTime) {
+        if (siteId == null || meter == null || sampleTime == null) return false;
+        SiteKeys keys = sites.get(siteId);
+        return keys != null && keys.contains(key(meter, sampleTime));
+    }
+
+    public void remember(Long siteId, MeterKind meter, Instant sampleTime) {
+        if (siteId == null || meter == null || sampleTime == null) return;
+        sites.computeIfAbsent(siteId, id -> new SiteKeys(Math.max(16, props.getRecentKeysPerSite())))
+                .add(key(meter, sampleTime));
+    }
+
+    // millis since epoch in the high bits, meter ordinal (3 kinds) in the low two
+    private static long key(MeterKind meter, Instant t) {
+        return (t.toEpochMilli() << 2) | meter.ordinal();
+    }
+
+    private static final class SiteKeys {
+        private final Map<Long, Boolean> lru;
+
+        SiteKeys(int capacity) {
+            this.lru = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized boolean contains(long key) {
+            return lru.get(key) != null;
+        }
+
+        synchronized void add(long key) {
+            lru.put(key, Boolean.TRUE);
+        }
+    }
+}
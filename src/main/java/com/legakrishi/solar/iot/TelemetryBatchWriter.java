@@ -0,0 +1,233 @@
+package com.legakrishi.solar.iot;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.Reading;
+import com.legakrishi.solar.repository.DbDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TypeMismatchDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Bulk write path for telemetry rows (energy_sample and reading), used through {@link TelemetryIngestCore}.
+ * Both tables use IDENTITY ids, so Hibernate cannot batch their inserts; this goes through plain JDBC
+ * batches instead, one transaction per chunk, so a failed chunk does not roll back the ones before it.
+ * EnergySample inserts skip rows that already exist under uk_es_site_kind_time, so gateway retries are harmless.
+ */
+@Slf4j
+@Component
+public class TelemetryBatchWriter {
+
+    private static final String COLUMNS = """
+            site_id, meter_kind, sample_time, total_ac_power_kw,
+            daily_ac_energy_kwh, daily_ac_export_kwh, daily_ac_import_kwh, daily_dc_energy_kwh,
+            device_id, firmware""";
+
+    private static final String READING_COLUMNS = """
+            site_id, device_id, meter_kind, ts,
+            total_ac_active_power_kw, total_ac_active_energy_kwh, daily_ac_active_energy_kwh,
+            daily_ac_active_export_energy_kwh, total_ac_active_export_energy_kwh,
+            daily_ac_active_import_energy_kwh, total_ac_active_import_energy_kwh,
+            daily_dc_energy_kwh, total_dc_energy_kwh,
+            power_kw, energy_kwh, dc_voltage, dc_current, ac_voltage, ac_current, temperature, status""";
+
+    private static final String READING_INSERT = "insert into reading (" + READING_COLUMNS + ")"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final IngestProps props;
+    private final DbDialect dialect;
+    private volatile String insertSql;
+
+    public TelemetryBatchWriter(JdbcTemplate jdbc, PlatformTransactionManager txManager,
+                                   IngestProps props, DbDialect dialect) {
+        this.jdbc = jdbc;
+        this.props = props;
+        this.dialect = dialect;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public int chunkSize() {
+        return Math.max(1, props.getChunkSize());
+    }
+
+    /** Write one chunk in one transaction. Never throws; failures are reported in the result. */
+    public ChunkResult writeSampleChunk(int index, List<EnergySample> chunk) {
+        return writeSampleChunk(index, chunk, null);
+    }
+
+    /**
+     * As above for the rows of one WAL entry: the entry is marked applied in the same transaction,
+     * and an entry already marked is reported as all duplicates without writing anything.
+     */
+    public ChunkResult writeSampleChunk(int index, List<EnergySample> chunk, WalEntryKey entry) {
+        long t0 = System.nanoTime();
+        try {
+            int[][] counts = tx.execute(status -> {
+                if (entry != null && !markApplied(entry)) return new int[0][];
+                return jdbc.batchUpdate(insertSql(), chunk, chunk.size(), this::bind);
+            });
+            return new ChunkResult(index, chunk.size(), written(counts, chunk.size()), millis(t0), null);
+        } catch (Exception ex) {
+            log.warn("Bulk ingest chunk {} ({} rows) failed: {}", index, chunk.size(), ex.getMessage());
+            return new ChunkResult(index, chunk.size(), 0, millis(t0), ex.getMessage(), isPermanent(ex));
+        }
+    }
+
+    /** Write one chunk of device readings in one transaction (no unique key on reading: plain insert). */
+    public ChunkResult writeReadingChunk(int index, List<Reading> chunk) {
+        return writeReadingChunk(index, chunk, null);
+    }
+
+    /** As above for the rows of one WAL entry, written at most once (see writeSampleChunk). */
+    public ChunkResult writeReadingChunk(int index, List<Reading> chunk, WalEntryKey entry) {
+        long t0 = System.nanoTime();
+        try {
+            int[][] counts = tx.execute(status -> {
+                if (entry != null && !markApplied(entry)) return new int[0][];
+                return jdbc.batchUpdate(READING_INSERT, chunk, chunk.size(), this::bindReading);
+            });
+            return new ChunkResult(index, chunk.size(), written(counts, chunk.size()), millis(t0), null);
+        } catch (Exception ex) {
+            log.warn("Reading chunk {} ({} rows) failed: {}", index, chunk.size(), ex.getMessage());
+            return new ChunkResult(index, chunk.size(), 0, millis(t0), ex.getMessage(), isPermanent(ex));
+        }
+    }
+
+    // false when the entry was applied before; called inside the chunk's transaction
+    private boolean markApplied(WalEntryKey entry) {
+        Integer seen = jdbc.queryForObject("select count(*) from wal_applied where log_id = ? and entry_offset = ?",
+                Integer.class, entry.logId(), entry.offset());
+        if (seen != null && seen > 0) return false;
+        jdbc.update("insert into wal_applied (log_id, entry_offset, applied_at) values (?, ?, ?)", ps -> {
+            ps.setString(1, entry.logId());
+            ps.setLong(2, entry.offset());
+            dialect.setInstant(ps, 3, Instant.now());
+        });
+        return true;
+    }
+
+    /** Forget applied marks below the applier's checkpoint; those entries are never read again. */
+    public void pruneApplied(String logId, long belowOffset) {
+        jdbc.update("delete from wal_applied where log_id = ? and entry_offset < ?", logId, belowOffset);
+    }
+
+    /** Insert-or-skip on the unique key, in each database's own syntax. */
+    private String insertSql() {
+        String sql = insertSql;
+        if (sql == null) {
+            sql = switch (dialect.vendor()) {
+                case POSTGRES -> "insert into energy_sample (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                        + " on conflict (site_id, meter_kind, sample_time) do nothing";
+                // not INSERT IGNORE: that also downgrades bad values, FK and other errors to warnings.
+                // A no-op update reports 0 affected rows, so a duplicate still counts as not written.
+                case MYSQL -> "insert into energy_sample (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                        + " on duplicate key update id = id";
+                // H2 only has ON CONFLICT in PostgreSQL mode; MERGE ... WHEN NOT MATCHED works in every mode
+                case H2 -> """
+                        merge into energy_sample t
+                        using (select cast(? as bigint) site_id, cast(? as varchar(16)) meter_kind,
+                                      cast(? as timestamp(6) with time zone) sample_time,
+                                      cast(? as double precision) total_ac_power_kw,
+                                      cast(? as double precision) daily_ac_energy_kwh,
+                                      cast(? as double precision) daily_ac_export_kwh,
+                                      cast(? as double precision) daily_ac_import_kwh,
+                                      cast(? as double precision) daily_dc_energy_kwh,
+                                      cast(? as varchar(255)) device_id, cast(? as varchar(255)) firmware) s
+                           on t.site_id = s.site_id and t.meter_kind = s.meter_kind and t.sample_time = s.sample_time
+                        when not matched then insert (%s)
+                        values (s.site_id, s.meter_kind, s.sample_time, s.total_ac_power_kw,
+                                s.daily_ac_energy_kwh, s.daily_ac_export_kwh, s.daily_ac_import_kwh,
+                                s.daily_dc_energy_kwh, s.device_id, s.firmware)
+                        """.formatted(COLUMNS);
+                case OTHER -> "insert into energy_sample (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            };
+            insertSql = sql;
+        }
+        return sql;
+    }
+
+    private void bind(PreparedStatement ps, EnergySample s) throws SQLException {
+        ps.setObject(1, s.getSiteId(), Types.BIGINT);
+        ps.setString(2, s.getMeterKind() != null ? s.getMeterKind().name() : null);
+        dialect.setInstant(ps, 3, s.getSampleTime());
+        ps.setObject(4, s.getTotalAcPowerKw(), Types.DOUBLE);
+        ps.setObject(5, s.getDailyAcEnergyKwh(), Types.DOUBLE);
+        ps.setObject(6, s.getDailyAcExportKwh(), Types.DOUBLE);
+        ps.setObject(7, s.getDailyAcImportKwh(), Types.DOUBLE);
+        ps.setObject(8, s.getDailyDcEnergyKwh(), Types.DOUBLE);
+        ps.setString(9, s.getDeviceId());
+        ps.setString(10, s.getFirmware());
+    }
+
+    private void bindReading(PreparedStatement ps, Reading r) throws SQLException {
+        ps.setObject(1, r.getSite() != null ? r.getSite().getId() : null, Types.BIGINT);
+        ps.setObject(2, r.getDevice() != null ? r.getDevice().getId() : null, Types.BIGINT);
+        ps.setString(3, r.getMeterKind() != null ? r.getMeterKind().name() : null);
+        dialect.setLocalDateTime(ps, 4, r.getTs());
+        ps.setBigDecimal(5, r.getTotalAcActivePowerKw());
+        ps.setBigDecimal(6, r.getTotalAcActiveEnergyKwh());
+        ps.setBigDecimal(7, r.getDailyAcActiveEnergyKwh());
+        ps.setBigDecimal(8, r.getDailyAcActiveExportEnergyKwh());
+        ps.setBigDecimal(9, r.getTotalAcActiveExportEnergyKwh());
+        ps.setBigDecimal(10, r.getDailyAcActiveImportEnergyKwh());
+        ps.setBigDecimal(11, r.getTotalAcActiveImportEnergyKwh());
+        ps.setBigDecimal(12, r.getDailyDcEnergyKwh());
+        ps.setBigDecimal(13, r.getTotalDcEnergyKwh());
+        ps.setObject(14, r.getPowerKw(), Types.DOUBLE);
+        ps.setObject(15, r.getEnergyKwh(), Types.DOUBLE);
+        ps.setObject(16, r.getDcVoltage(), Types.DOUBLE);
+        ps.setObject(17, r.getDcCurrent(), Types.DOUBLE);
+        ps.setObject(18, r.getAcVoltage(), Types.DOUBLE);
+        ps.setObject(19, r.getAcCurrent(), Types.DOUBLE);
+        ps.setObject(20, r.getTemperature(), Types.DOUBLE);
+        ps.setString(21, r.getStatus());
+    }
+
+    // Drivers that rewrite batches report SUCCESS_NO_INFO (-2) per row; count those as written.
+    private static int written(int[][] counts, int rows) {
+        if (counts == null) return rows;
+        int n = 0;
+        for (int[] batch : counts) {
+            for (int c : batch) n += (c == PreparedStatement.SUCCESS_NO_INFO) ? 1 : Math.max(0, c);
+        }
+        return n;
+    }
+
+    // the rows themselves are refused (constraint, FK, value out of range): writing them again cannot succeed
+    private static boolean isPermanent(Exception ex) {
+        return ex instanceof DataIntegrityViolationException || ex instanceof TypeMismatchDataAccessException;
+    }
+
+    private static long millis(long t0) {
+        return (System.nanoTime() - t0) / 1_000_000;
+    }
+
+    /** A WAL entry: the log's id and the entry's offset in it. */
+    public record WalEntryKey(String logId, long offset) {}
+
+    /** {@code permanent}: the chunk failed on its data, not on the database being unavailable. */
+    public record ChunkResult(int chunk, int rows, int written, long millis, String error,
+                              @JsonIgnore boolean permanent) {
+        public ChunkResult(int chunk, int rows, int written, long millis, String error) {
+            this(chunk, rows, written, millis, error, false);
+        }
+
+        public boolean ok() { return error == null; }
+        public int duplicates() { return ok() ? rows - written : 0; }
+    }
+}
@@ -0,0 +1,245 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.iot.wal.WalLog;
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.Reading;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The one write path behind /iot/ingest/ingest, /ingest/ingest and /api/rms/ingest/**.
+ * Adapters parse their own payloads into Reading or EnergySample; from here on it is the same for all:
+ * required-field check, recent-key dedupe, chunked JDBC batch via {@link TelemetryBatchWriter}
+ * (one transaction per chunk), then every {@link TelemetryListener} with the committed rows.
+ * With lkf.ingest.wal.enabled the submit* methods stop at the fsynced WAL; WalApplier calls write* later.
+ */
+@Slf4j
+@Component
+public class TelemetryIngestCore {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private final TelemetryBatchWriter writer;
+    private final RecentSampleKeys sampleKeys;
+    private final RecentSampleKeys readingKeys;   // separate table, separate key space, partitioned by device
+    private final IngestProps props;
+    private final List<TelemetryListener> listeners;
+    private final WalLog wal;
+
+    public TelemetryIngestCore(TelemetryBatchWriter writer, RecentSampleKeys sampleKeys, IngestProps props,
+                               List<TelemetryListener> listeners, WalLog wal) {
+        this.writer = writer;
+        this.wal = wal;
+        this.sampleKeys = sampleKeys;
+        this.readingKeys = new RecentSampleKeys(props);
+        this.props = props;
+        this.listeners = listeners;
+    }
+
+    public int chunkSize() {
+        return writer.chunkSize();
+    }
+
+    /** Older than lkf.ingest.backfill.threshold-minutes: stored, but not live. */
+    public boolean isReplay(Instant time) {
+        return time != null
+                && time.isBefore(Instant.now().minusSeconds(props.getBackfill().getThresholdMinutes() * 60L));
+    }
+
+    /** True when submits are acknowledged from the WAL (not yet in the database; deduplicated against recent keys only). */
+    public boolean isDurableQueue() {
+        return wal.isEnabled();
+    }
+
+    /** Adapter entry point: WAL when enabled, otherwise straight to the database. */
+    public Result submitSamples(List<EnergySample> samples, boolean backfill) {
+        if (!wal.isEnabled()) return writeSamples(samples, backfill);
+        return toWal(samples, s -> s.getSiteId() != null && s.getMeterKind() != null && s.getSampleTime() != null,
+                sampleKeys, sampleShape(), chunk -> wal.appendSamples(chunk, backfill));
+    }
+
+    /** Adapter entry point: WAL when enabled, otherwise straight to the database. */
+    public Result submitReadings(List<Reading> readings, boolean backfill) {
+        if (!wal.isEnabled()) return writeReadings(readings, backfill);
+        return toWal(readings, r -> r.getSite() != null && r.getSite().getId() != null
+                        && r.getDevice() != null && r.getDevice().getId() != null
+                        && r.getMeterKind() != null && r.getTs() != null,
+                readingKeys, readingShape(), chunk -> wal.appendReadings(chunk, backfill));
+    }
+
+    public Result writeSamples(List<EnergySample> samples, boolean backfill) {
+        return applySamples(samples, backfill, null);
+    }
+
+    public Result writeReadings(List<Reading> readings, boolean backfill) {
+        return applyReadings(readings, backfill, null);
+    }
+
+    /** WalApplier: the rows of one WAL entry in one transaction, skipped if that entry was applied before. */
+    public Result applySamples(List<EnergySample> samples, boolean backfill, TelemetryBatchWriter.WalEntryKey entry) {
+        return write(samples, backfill, sampleKeys, sampleShape(),
+                (index, chunk) -> writer.writeSampleChunk(index, chunk, entry), entry != null);
+    }
+
+    /** WalApplier: as {@link #applySamples} for readings. */
+    public Result applyReadings(List<Reading> readings, boolean backfill, TelemetryBatchWriter.WalEntryKey entry) {
+        return write(readings, backfill, readingKeys, readingShape(),
+                (index, chunk) -> writer.writeReadingChunk(index, chunk, entry), entry != null);
+    }
+
+    private static Shape<EnergySample> sampleShape() {
+        return new Shape<>(TelemetryPoint.Source.ENERGY_SAMPLE,
+                EnergySample::getSiteId, EnergySample::getMeterKind, EnergySample::getSampleTime,
+                s -> null, EnergySample::getTotalAcPowerKw, EnergySample::getSiteId);
+    }
+
+    private static Shape<Reading> readingShape() {
+        return new Shape<>(TelemetryPoint.Source.READING,
+                r -> r.getSite() != null ? r.getSite().getId() : null,
+                Reading::getMeterKind,
+                r -> r.getTs() != null ? r.getTs().atZone(IST).toInstant() : null,
+                r -> r.getDevice() != null ? r.getDevice().getId() : null,
+                TelemetryIngestCore::readingPower,
+                // reading has no unique key: two devices may report the same meter at the same second
+                r -> r.getDevice() != null ? r.getDevice().getId() : null);
+    }
+
+    // fromWal: the rows were checked against (and entered into) the recent keys when appended
+    private <T> Result write(List<T> rows, boolean backfill, RecentSampleKeys keys, Shape<T> shape,
+                             ChunkWriter<T> chunkWriter, boolean fromWal) {
+        long t0 = System.nanoTime();
+        List<T> fresh = new ArrayList<>(rows.size());
+        int invalid = 0, duplicates = 0;
+        for (T row : rows) {
+            Long siteId = shape.siteId.apply(row);
+            MeterKind meter = shape.meter.apply(row);
+            Instant time = shape.time.apply(row);
+            if (siteId == null || meter == null || time == null) {
+                invalid++;
+            } else if (!fromWal && keys.seen(shape.keyScope.apply(row), meter, time)) {
+                duplicates++;
+            } else {
+                fresh.add(row);
+            }
+        }
+
+        // a WAL entry was one chunk when appended; kept whole so it commits (and is marked) atomically
+        int size = fromWal ? Math.max(1, fresh.size()) : chunkSize();
+        List<TelemetryBatchWriter.ChunkResult> chunks = new ArrayList<>();
+        for (int from = 0; from < fresh.size(); from += size) {
+            List<T> chunk = fresh.subList(from, Math.min(fresh.size(), from + size));
+            var r = chunkWriter.write(chunks.size(), chunk);
+            chunks.add(r);
+            if (r.ok()) committed(chunk, backfill, keys, shape);
+        }
+
+        Result result = Result.of(rows.size(), invalid, duplicates, chunks, System.nanoTime() - t0);
+        if (log.isDebugEnabled() && rows.size() > 1) {
+            log.debug("Ingest {}: received={} accepted={} duplicates={} rejected={} chunks={} in {} ms ({} rows/s)",
+                    shape.source, result.received(), result.accepted(), result.duplicates(), result.rejected(),
+                    chunks.size(), result.millis(), Math.round(result.rowsPerSecond()));
+        }
+        return result;
+    }
+
+    // One WAL entry per chunk, so the applier replays exactly the transactions writeX would have run.
+    // Recent keys are checked and remembered here, at acknowledgement, so a retry of a queued row is
+    // answered as a duplicate (RMS 409) as on the direct path; a retry the cache no longer holds is
+    // queued and then skipped by the unique key / wal_applied when applied.
+    private <T> Result toWal(List<T> rows, Predicate<T> valid, RecentSampleKeys keys, Shape<T> shape,
+                             Consumer<List<T>> append) {
+        long t0 = System.nanoTime();
+        List<T> ok = new ArrayList<>(rows.size());
+        int invalid = 0, duplicates = 0;
+        for (T row : rows) {
+            if (!valid.test(row)) invalid++;
+            else if (keys.seen(shape.keyScope.apply(row), shape.meter.apply(row), shape.time.apply(row))) duplicates++;
+            else ok.add(row);
+        }
+        int size = chunkSize();
+        for (int from = 0; from < ok.size(); from += size) {
+            List<T> chunk = ok.subList(from, Math.min(ok.size(), from + size));
+            append.accept(chunk);
+            for (T row : chunk) keys.remember(shape.keyScope.apply(row), shape.meter.apply(row), shape.time.apply(row));
+        }
+        return Result.queued(rows.size(), invalid, duplicates, ok.size(), System.nanoTime() - t0);
+    }
+
+    private <T> void committed(List<T> chunk, boolean backfill, RecentSampleKeys keys, Shape<T> shape) {
+        List<TelemetryPoint> points = new ArrayList<>(chunk.size());
+        for (T row : chunk) {
+            Long siteId = shape.siteId.apply(row);
+            MeterKind meter = shape.meter.apply(row);
+            Instant time = shape.time.apply(row);
+            keys.remember(shape.keyScope.apply(row), meter, time);
+            points.add(new TelemetryPoint(shape.source, siteId, shape.deviceId.apply(row), meter, time,
+                    shape.power.apply(row), backfill || isReplay(time), row));
+        }
+        for (TelemetryListener l : listeners) {
+            try {
+                l.onCommitted(points);
+            } catch (Exception ex) {
+                log.warn("Telemetry listener {} failed: {}", l.getClass().getSimpleName(), ex.getMessage());
+            }
+        }
+    }
+
+    private static Double readingPower(Reading r) {
+        if (r.getTotalAcActivePowerKw() != null) return r.getTotalAcActivePowerKw().doubleValue();
+        return r.getPowerKw();
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter<T> {
+        TelemetryBatchWriter.ChunkResult write(int index, List<T> chunk);
+    }
+
+    // how to read the common fields off one row type; keyScope partitions the recent keys (with meter + time)
+    private record Shape<T>(TelemetryPoint.Source source,
+                            Function<T, Long> siteId, Function<T, MeterKind> meter, Function<T, Instant> time,
+                            Function<T, Long> deviceId, Function<T, Double> power, Function<T, Long> keyScope) {}
+
+    /** rejected = rows missing site/meter/time + rows of chunks that failed to commit. */
+    public record Result(int received, int accepted, int duplicates, int rejected, int failedChunks,
+                         long millis, double rowsPerSecond, List<TelemetryBatchWriter.ChunkResult> chunks) {
+
+        static Result of(int received, int invalid, int recentDuplicates,
+                         List<TelemetryBatchWriter.ChunkResult> chunks, long nanos) {
+            int accepted = 0, duplicates = recentDuplicates, failedRows = 0, failedChunks = 0;
+            for (var c : chunks) {
+                accepted += c.written();
+                duplicates += c.duplicates();
+                if (!c.ok()) { failedRows += c.rows(); failedChunks++; }
+            }
+            double rps = nanos > 0 ? accepted / (nanos / 1e9) : 0d;
+            return new Result(received, accepted, duplicates, invalid + failedRows, failedChunks,
+                    nanos / 1_000_000, rps, chunks);
+        }
+
+        static Result queued(int received, int invalid, int duplicates, int queued, long nanos) {
+            double rps = nanos > 0 ? queued / (nanos / 1e9) : 0d;
+            return new Result(received, queued, duplicates, invalid, 0, nanos / 1_000_000, rps, List.of());
+        }
+
+        /** True when a chunk failed on its rows rather than on the database (see ChunkResult.permanent). */
+        public boolean permanentFailure() {
+            return chunks.stream().anyMatch(c -> !c.ok() && c.permanent());
+        }
+
+        /** First chunk error, if any. */
+        public String error() {
+            return chunks.stream().filter(c -> !c.ok()).map(TelemetryBatchWriter.ChunkResult::error)
+                    .findFirst().orElse(null);
+        }
+    }
+}
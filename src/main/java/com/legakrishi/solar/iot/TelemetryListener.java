@@ -0,0 +1,12 @@
+package com.legakrishi.solar.iot;
+
+import java.util.List;
+
+/**
+ * Called by {@link TelemetryIngestCore} after each chunk has committed (live ticks, device heartbeats,
+ * backfill tracking). Runs on the ingest thread; keep it cheap. Exceptions are logged, never propagated.
+ */
+public interface TelemetryListener {
+
+    void onCommitted(List<TelemetryPoint> points);
+}
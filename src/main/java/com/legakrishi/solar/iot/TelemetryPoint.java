@@ -0,0 +1,16 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.model.MeterKind;
+
+import java.time.Instant;
+
+/**
+ * What post-commit listeners get to see of a stored row, whichever endpoint and table it came through.
+ * {@code replay} is true for backfill requests and for samples older than lkf.ingest.backfill.threshold-minutes.
+ * {@code row} is the stored Reading / EnergySample itself, for listeners that need more than power; read only.
+ */
+public record TelemetryPoint(Source source, Long siteId, Long deviceId, MeterKind meter,
+                             Instant time, Double powerKw, boolean replay, Object row) {
+
+    public enum Source { READING, ENERGY_SAMPLE }
+}
@@ -0,0 +1,21 @@
+package com.legakrishi.solar.iot.dto;
+
+import com.legakrishi.solar.model.MeterKind;
+
+import java.time.Instant;
+
+/** One element of the JSON array posted to /ingest/ingest. */
+public class SampleIn {
+    public Long siteId;
+    public MeterKind meterKind;     // MAIN/STANDBY/CHECK
+    public Instant sampleTimeUtc;   // ISO timestamp
+
+    public Double totalAcPowerKw;
+    public Double dailyAcEnergyKwh;
+    public Double dailyAcExportKwh;
+    public Double dailyAcImportKwh;
+    public Double dailyDcEnergyKwh;
+
+    public String deviceId;
+    public String firmware;
+}
@@ -0,0 +1,200 @@
+package com.legakrishi.solar.iot.wal;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.iot.TelemetryBatchWriter;
+import com.legakrishi.solar.iot.TelemetryIngestCore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays WAL entries into reading / energy_sample through {@link TelemetryIngestCore}, in log order,
+ * one entry (one chunk, one transaction) at a time, each marked in wal_applied within its transaction. A failed database write is retried with a backoff
+ * growing from retry-backoff-ms to a minute, so a locked table or a database restart only delays rows.
+ * An entry the database refuses on its data (constraint, FK, value out of range), or one still failing
+ * after max-attempts, is moved to dead-letter/ and the applier goes on: one bad entry never holds up
+ * the rest of the log; neither does an entry failing its checksum (the rest of its segment is set aside).
+ * The checkpoint is written after each applied entry; an entry replayed after a crash
+ * finds its mark and is skipped, so neither table gets its rows twice.
+ */
+@Slf4j
+@Component
+public class WalApplier implements SmartLifecycle {
+
+    private final WalLog wal;
+    private final TelemetryIngestCore core;
+    private final IngestProps.Wal props;
+
+    private final TelemetryBatchWriter writer;
+    private final Counter deadLettered;
+    private long prunedAt;                  // last wal_applied prune, millis (applier thread only)
+
+    private volatile boolean running;
+    private volatile long applied;
+    private Thread worker;
+    private int attempts;                   // failed attempts at the entry at 'applied' (applier thread only)
+
+    public WalApplier(WalLog wal, TelemetryIngestCore core, TelemetryBatchWriter writer, IngestProps props,
+                      MeterRegistry meters) {
+        this.wal = wal;
+        this.core = core;
+        this.writer = writer;
+        this.props = props.getWal();
+        this.deadLettered = Counter.builder("ingest.wal.dead.lettered")
+                .description("WAL entries given up on and moved to dead-letter/")
+                .register(meters);
+    }
+
+    /** Bytes fsynced to the WAL but not yet in the database. */
+    public long lagBytes() {
+        return Math.max(0, wal.syncedOffset() - applied);
+    }
+
+    @Override
+    public void start() {
+        if (!wal.isEnabled() || running) return;
+        applied = wal.readCheckpoint();
+        running = true;
+        worker = new Thread(this::applyLoop, "wal-applier");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("WAL applier resuming at offset {} ({} bytes behind)", applied, lagBytes());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        running = false;           // the loop finishes what is already durable, then exits
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(25));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (lagBytes() > 0) log.warn("WAL applier stopped {} bytes behind; they are applied on next start", lagBytes());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stops after the web server (no more appends) and before the WAL itself is closed.
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void applyLoop() {
+        while (true) {
+            WalLog.Read entry;
+            try {
+                entry = wal.read(applied);
+            } catch (IllegalStateException corrupt) {
+                // unreadable entry: the rest of its segment goes to dead-letter/, the applier never stops here
+                long next;
+                try {
+                    next = wal.skipCorrupt(applied, corrupt.getMessage());
+                } catch (RuntimeException ex) {
+                    log.error("{}; could not set the rest of its segment aside, retrying: {}",
+                            corrupt.getMessage(), ex.getMessage());
+                    if (!running) return;
+                    pause(1_000);
+                    continue;
+                }
+                deadLettered.increment();
+                log.error("{}; rest of its segment moved to dead-letter/, continuing at WAL offset {}",
+                        corrupt.getMessage(), next);
+                advance(next);
+                continue;
+            }
+            if (entry == null) {
+                if (!running) return;
+                pause(20);
+                continue;
+            }
+            if (apply(entry)) {
+                attempts = 0;
+                advance(entry.next());
+            } else if (!running) {
+                return;                // database still failing at shutdown: replay on next start
+            } else {
+                pause(backoff());
+            }
+        }
+    }
+
+    // true when the applier may move past the entry: applied, undecodable, or dead-lettered
+    private boolean apply(WalLog.Read entry) {
+        final WalCodec.Entry e;
+        try {
+            e = WalCodec.decode(entry.payload());
+        } catch (IOException | RuntimeException ex) {
+            return giveUp(entry, "cannot be decoded: " + ex.getMessage());
+        }
+        var key = new TelemetryBatchWriter.WalEntryKey(wal.logId(), entry.offset());
+        var result = e.samples() != null
+                ? core.applySamples(e.samples(), e.backfill(), key)
+                : core.applyReadings(e.readings(), e.backfill(), key);
+        if (result.failedChunks() == 0) return true;
+
+        attempts++;
+        if (result.permanentFailure()) return giveUp(entry, "rows refused by the database: " + result.error());
+        if (attempts >= Math.max(1, props.getMaxAttempts())) {
+            return giveUp(entry, "still failing after " + attempts + " attempts: " + result.error());
+        }
+        log.warn("WAL apply at offset {} failed (attempt {}), retrying in {} ms: {}",
+                entry.offset(), attempts, backoff(), result.error());
+        return false;
+    }
+
+    private boolean giveUp(WalLog.Read entry, String reason) {
+        try {
+            wal.deadLetter(entry, reason);
+        } catch (RuntimeException ex) {
+            log.error("WAL entry at offset {} {}; dead-letter copy failed, retrying: {}", entry.offset(), reason, ex.getMessage());
+            return false;
+        }
+        deadLettered.increment();
+        attempts = 0;
+        log.error("WAL entry at offset {} {}; moved to dead-letter/ and skipped", entry.offset(), reason);
+        return true;
+    }
+
+    // retry-backoff-ms, doubling per failed attempt, at most a minute
+    private long backoff() {
+        long base = Math.max(1, props.getRetryBackoffMs());
+        return Math.min(60_000L, base << Math.min(16, Math.max(0, attempts - 1)));
+    }
+
+    private void advance(long offset) {
+        applied = offset;
+        try {
+            wal.writeCheckpoint(offset);
+            wal.truncateBefore(offset);
+        } catch (RuntimeException ex) {
+            log.warn("WAL checkpoint at {} not written: {}", offset, ex.getMessage());
+            return;                    // keep the marks: the entries below may still be replayed
+        }
+        long now = System.currentTimeMillis();
+        if (now - prunedAt < 60_000) return;
+        prunedAt = now;
+        try {
+            writer.pruneApplied(wal.logId(), offset);
+        } catch (RuntimeException ex) {
+            log.debug("wal_applied prune failed: {}", ex.getMessage());
+        }
+    }
+
+    private static void pause(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
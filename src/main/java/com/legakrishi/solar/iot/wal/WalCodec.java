@@ -0,0 +1,200 @@
+package com.legakrishi.solar.iot.wal;
+
+import com.legakrishi.solar.model.Device;
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.Reading;
+import com.legakrishi.solar.model.Site;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary form of one WAL entry: a chunk of EnergySample or Reading rows plus the backfill flag.
+ * Field order is the format; append new fields at the end of a row and bump VERSION.
+ */
+final class WalCodec {
+
+    static final byte VERSION = 1;
+    static final byte SAMPLES = 1;
+    static final byte READINGS = 2;
+
+    private WalCodec() {}
+
+    /** Decoded entry; exactly one of the lists is non-null. */
+    record Entry(boolean backfill, List<EnergySample> samples, List<Reading> readings) {}
+
+    static byte[] encodeSamples(List<EnergySample> rows, boolean backfill) {
+        return encode(SAMPLES, backfill, out -> {
+            for (EnergySample s : rows) {
+                out.writeLong(s.getSiteId());
+                out.writeByte(s.getMeterKind().ordinal());
+                writeInstant(out, s.getSampleTime());
+                writeDouble(out, s.getTotalAcPowerKw());
+                writeDouble(out, s.getDailyAcEnergyKwh());
+                writeDouble(out, s.getDailyAcExportKwh());
+                writeDouble(out, s.getDailyAcImportKwh());
+                writeDouble(out, s.getDailyDcEnergyKwh());
+                writeString(out, s.getDeviceId());
+                writeString(out, s.getFirmware());
+            }
+        }, rows.size());
+    }
+
+    static byte[] encodeReadings(List<Reading> rows, boolean backfill) {
+        return encode(READINGS, backfill, out -> {
+            for (Reading r : rows) {
+                out.writeLong(r.getSite().getId());
+                out.writeLong(r.getDevice().getId());
+                out.writeByte(r.getMeterKind().ordinal());
+                writeInstant(out, r.getTs().toInstant(ZoneOffset.UTC));    // wall clock as-is, no zone
+                writeDecimal(out, r.getTotalAcActivePowerKw());
+                writeDecimal(out, r.getTotalAcActiveEnergyKwh());
+                writeDecimal(out, r.getDailyAcActiveEnergyKwh());
+                writeDecimal(out, r.getDailyAcActiveExportEnergyKwh());
+                writeDecimal(out, r.getTotalAcActiveExportEnergyKwh());
+                writeDecimal(out, r.getDailyAcActiveImportEnergyKwh());
+                writeDecimal(out, r.getTotalAcActiveImportEnergyKwh());
+                writeDecimal(out, r.getDailyDcEnergyKwh());
+                writeDecimal(out, r.getTotalDcEnergyKwh());
+                writeDouble(out, r.getPowerKw());
+                writeDouble(out, r.getEnergyKwh());
+                writeDouble(out, r.getDcVoltage());
+                writeDouble(out, r.getDcCurrent());
+                writeDouble(out, r.getAcVoltage());
+                writeDouble(out, r.getAcCurrent());
+                writeDouble(out, r.getTemperature());
+                writeString(out, r.getStatus());
+            }
+        }, rows.size());
+    }
+
+    static Entry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte version = in.readByte();
+        if (version != VERSION) throw new IOException("unsupported WAL entry version " + version);
+        byte type = in.readByte();
+        boolean backfill = in.readBoolean();
+        int count = in.readInt();
+        MeterKind[] kinds = MeterKind.values();
+
+        if (type == SAMPLES) {
+            List<EnergySample> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                EnergySample s = new EnergySample();
+                s.setSiteId(in.readLong());
+                s.setMeterKind(kinds[in.readByte()]);
+                s.setSampleTime(readInstant(in));
+                s.setTotalAcPowerKw(readDouble(in));
+                s.setDailyAcEnergyKwh(readDouble(in));
+                s.setDailyAcExportKwh(readDouble(in));
+                s.setDailyAcImportKwh(readDouble(in));
+                s.setDailyDcEnergyKwh(readDouble(in));
+                s.setDeviceId(readString(in));
+                s.setFirmware(readString(in));
+                rows.add(s);
+            }
+            return new Entry(backfill, rows, null);
+        }
+        if (type == READINGS) {
+            List<Reading> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Site site = new Site(); site.setId(in.readLong());
+                Device device = new Device(); device.setId(in.readLong());
+                rows.add(Reading.builder()
+                        .site(site)
+                        .device(device)
+                        .meterKind(kinds[in.readByte()])
+                        .ts(LocalDateTime.ofInstant(readInstant(in), ZoneOffset.UTC))
+                        .totalAcActivePowerKw(readDecimal(in))
+                        .totalAcActiveEnergyKwh(readDecimal(in))
+                        .dailyAcActiveEnergyKwh(readDecimal(in))
+                        .dailyAcActiveExportEnergyKwh(readDecimal(in))
+                        .totalAcActiveExportEnergyKwh(readDecimal(in))
+                        .dailyAcActiveImportEnergyKwh(readDecimal(in))
+                        .totalAcActiveImportEnergyKwh(readDecimal(in))
+                        .dailyDcEnergyKwh(readDecimal(in))
+                        .totalDcEnergyKwh(readDecimal(in))
+                        .powerKw(readDouble(in))
+                        .energyKwh(readDouble(in))
+                        .dcVoltage(readDouble(in))
+                        .dcCurrent(readDouble(in))
+                        .acVoltage(readDouble(in))
+                        .acCurrent(readDouble(in))
+                        .temperature(readDouble(in))
+                        .status(readString(in))
+                        .build());
+            }
+            return new Entry(backfill, null, rows);
+        }
+        throw new IOException("unknown WAL entry type " + type);
+    }
+
+    // ---- helpers ----
+
+    private interface RowWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(byte type, boolean backfill, RowWriter rows, int count) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeByte(type);
+            out.writeBoolean(backfill);
+            out.writeInt(count);
+            rows.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // in-memory stream, cannot happen
+        }
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant t) throws IOException {
+        out.writeLong(t.getEpochSecond());
+        out.writeInt(t.getNano());
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    private static void writeDouble(DataOutputStream out, Double v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) out.writeDouble(v);
+    }
+
+    private static Double readDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal v) throws IOException {
+        writeString(out, v == null ? null : v.toPlainString());
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        String s = readString(in);
+        return s == null ? null : new BigDecimal(s);
+    }
+
+    private static void writeString(DataOutputStream out, String v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) out.writeUTF(v);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,468 @@
+package com.legakrishi.solar.iot.wal;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.iot.IngestThrottledException;
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.Reading;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of ingest chunks in memory-mapped segment files under lkf.ingest.wal.dir.
+ * <p>
+ * Entry = [int length][int crc32c][payload]; a zero length is unwritten space, -1 closes a segment.
+ * Segments are named by the log offset of their first byte, so an offset is global and monotonic.
+ * Appends return once a sync thread has forced the mapped pages to disk; appends arriving within
+ * sync-interval-ms share one fsync. The applier's position is kept in a separate checkpoint file.
+ */
+@Slf4j
+@Component
+public class WalLog {
+
+    private static final int HEADER = 8;
+    private static final int SEGMENT_END = -1;
+    private static final String SUFFIX = ".wal";
+
+    private final IngestProps.Wal props;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dirty = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+
+    private Path dir;
+    private String logId;                   // random per WAL directory; keys wal_applied marks
+    private long unsyncedSince;             // nanoTime of the oldest append not yet synced, 0 if none (guarded by lock)
+    private Segment head;                   // segment being appended to (guarded by lock)
+    private long writeOffset;               // next free global offset (guarded by lock)
+    private volatile long syncedOffset;     // everything below is on disk
+    private volatile boolean open;
+    private Thread syncer;
+
+    public WalLog(IngestProps props) {
+        this.props = props.getWal();
+    }
+
+    public boolean isEnabled() {
+        return props.isEnabled();
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!props.isEnabled()) return;
+        dir = Path.of(props.getDir());
+        Files.createDirectories(dir);
+        Path idFile = dir.resolve("log-id");
+        if (!Files.exists(idFile)) Files.writeString(idFile, UUID.randomUUID().toString());
+        logId = Files.readString(idFile).trim();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(p -> {
+                String name = p.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                segments.put(base, Segment.open(p, base, segmentBytes()));
+            });
+        }
+        if (segments.isEmpty()) {
+            head = newSegment(0);
+            writeOffset = 0;
+        } else {
+            head = segments.lastEntry().getValue();
+            writeOffset = head.base + recover(head);
+        }
+        syncedOffset = writeOffset;
+        open = true;
+
+        syncer = new Thread(this::syncLoop, "wal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+        log.info("WAL open at {}: {} segment(s), end offset {}", dir, segments.size(), writeOffset);
+    }
+
+    /** One chunk of samples as one entry; returns once it is on disk. */
+    public long appendSamples(List<EnergySample> chunk, boolean backfill) {
+        return append(WalCodec.encodeSamples(chunk, backfill));
+    }
+
+    /** One chunk of readings as one entry; returns once it is on disk. */
+    public long appendReadings(List<Reading> chunk, boolean backfill) {
+        return append(WalCodec.encodeReadings(chunk, backfill));
+    }
+
+    /** Identifies this log across restarts; a recreated WAL directory gets a new one. */
+    public String logId() {
+        return logId;
+    }
+
+    /**
+     * Durably append one entry; blocks until it is fsynced. Returns the offset just past it.
+     * Throws 429 only before anything is written (the disk has not synced for sync-timeout-ms): once
+     * appended the entry will be applied, so failing the request would only invite a duplicate retry.
+     */
+    long append(byte[] payload) {
+        if (!open) throw new IllegalStateException("WAL is not open");
+        int size = HEADER + payload.length;
+        if (size > segmentBytes() - Integer.BYTES) {
+            throw new IllegalArgumentException("WAL entry of " + size + " bytes exceeds the segment size");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+
+        long end;
+        lock.lock();
+        try {
+            if (unsyncedSince != 0
+                    && System.nanoTime() - unsyncedSince > TimeUnit.MILLISECONDS.toNanos(props.getSyncTimeoutMs())) {
+                throw new IngestThrottledException("WAL sync is behind", 1);
+            }
+            int pos = (int) (writeOffset - head.base);
+            if (pos + size > head.capacity() - Integer.BYTES) {
+                roll(pos);
+                pos = 0;
+            }
+            MappedByteBuffer buf = head.buffer;
+            buf.putInt(pos + 4, (int) crc.getValue());
+            buf.put(pos + HEADER, payload);
+            buf.putInt(pos, payload.length);          // length last: a torn entry reads as unwritten
+            writeOffset += size;
+            end = writeOffset;
+            if (unsyncedSince == 0) unsyncedSince = System.nanoTime();
+            dirty.signal();
+
+            // no deadline from here on; at shutdown close() forces the pages this entry is in
+            boolean interrupted = false;
+            while (syncedOffset < end && open) {
+                try {
+                    synced.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        return end;
+    }
+
+    /** Offset past the last durable entry; the applier never reads beyond it. */
+    public long syncedOffset() {
+        return syncedOffset;
+    }
+
+    /**
+     * Entry at {@code offset}, or null when nothing durable is there yet. A closed segment is skipped
+     * transparently: {@link Read#next()} then points into the following one.
+     */
+    public Read read(long offset) {
+        while (offset < syncedOffset) {
+            Map.Entry<Long, Segment> e = segments.floorEntry(offset);
+            if (e == null) {
+                // the checkpoint is older than the oldest segment (deleted by hand): start at the oldest
+                offset = segments.firstKey();
+                continue;
+            }
+            Segment seg = e.getValue();
+            int pos = (int) (offset - seg.base);
+            int len = pos + HEADER <= seg.capacity() ? seg.buffer.getInt(pos) : SEGMENT_END;
+            if (len == SEGMENT_END || len == 0) {
+                Long next = segments.higherKey(seg.base);
+                if (next == null) return null;
+                offset = next;
+                continue;
+            }
+            byte[] payload = new byte[len];
+            seg.buffer.get(pos + HEADER, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != seg.buffer.getInt(pos + 4)) {
+                throw new IllegalStateException("WAL entry at offset " + offset + " fails its checksum");
+            }
+            return new Read(offset, offset + HEADER + len, payload);
+        }
+        return null;
+    }
+
+    /** Start of the segment after the one holding {@code offset}, or -1 if it is the last. */
+    public long nextSegment(long offset) {
+        Long next = segments.higherKey(offset);
+        return next == null ? -1 : next;
+    }
+
+    /** Remove segments the applier has completely passed. */
+    public void truncateBefore(long appliedOffset) {
+        for (Map.Entry<Long, Segment> e : segments.entrySet()) {
+            Long next = segments.higherKey(e.getKey());
+            if (next == null || next > appliedOffset) break;
+            Segment seg = segments.remove(e.getKey());
+            seg.close();
+            try {
+                Files.deleteIfExists(seg.path);
+            } catch (IOException ex) {
+                log.warn("Could not delete applied WAL segment {}: {}", seg.path, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Keep an entry the applier has given up on under dead-letter/ (payload as written, plus the reason),
+     * so it can be inspected and re-submitted by hand once whatever refused it is fixed.
+     */
+    public void deadLetter(Read entry, String reason) {
+        Path dead = dir.resolve("dead-letter");
+        String name = String.format("%020d", entry.offset());
+        try {
+            Files.createDirectories(dead);
+            Files.write(dead.resolve(name + SUFFIX), entry.payload());
+            Files.writeString(dead.resolve(name + ".txt"), String.valueOf(reason));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot dead-letter WAL entry at " + entry.offset(), e);
+        }
+    }
+
+    /**
+     * The entry at {@code offset} fails its checksum, so nothing behind it in its segment can be located.
+     * Copies the rest of that segment to dead-letter/ (later entries in it may well be intact) and returns
+     * the offset to go on from: the next segment, or, when the damage is in the head segment, a fresh head
+     * started at the write position, so later appends are readable again instead of piling up behind it.
+     */
+    public long skipCorrupt(long offset, String reason) {
+        Segment seg;
+        long end;
+        lock.lock();
+        try {
+            Map.Entry<Long, Segment> e = segments.floorEntry(offset);
+            if (e == null) return segments.isEmpty() ? writeOffset : segments.firstKey();
+            seg = e.getValue();
+            if (seg == head) {
+                end = writeOffset;
+                roll((int) (writeOffset - head.base));
+                syncedOffset = writeOffset;          // roll forced everything below it
+                unsyncedSince = 0;
+                synced.signalAll();
+            } else {
+                end = segments.higherKey(seg.base);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        int from = (int) (offset - seg.base);
+        int to = (int) Math.min(seg.capacity(), end - seg.base);
+        Path dead = dir.resolve("dead-letter");
+        String name = String.format("%020d", offset);
+        try {
+            Files.createDirectories(dead);
+            try (FileChannel ch = FileChannel.open(dead.resolve(name + ".corrupt"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ch.write(seg.buffer.slice(from, Math.max(0, to - from)));
+            }
+            Files.writeString(dead.resolve(name + ".txt"), String.valueOf(reason));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot dead-letter corrupt WAL range at " + offset, e);
+        }
+        return end;
+    }
+
+    // ---- checkpoint ----
+
+    public long readCheckpoint() {
+        Path p = dir.resolve("checkpoint");
+        try {
+            if (!Files.exists(p)) return 0L;
+            return ByteBuffer.wrap(Files.readAllBytes(p)).getLong();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unreadable WAL checkpoint, replaying from the oldest segment: {}", e.getMessage());
+            return 0L;
+        }
+    }
+
+    /** Write-then-rename, so a crash leaves either the old or the new checkpoint. */
+    public void writeCheckpoint(long appliedOffset) {
+        Path tmp = dir.resolve("checkpoint.tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.allocate(Long.BYTES).putLong(0, appliedOffset));
+            ch.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(tmp, dir.resolve("checkpoint"), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---- internals ----
+
+    private void syncLoop() {
+        while (open) {
+            Segment seg;
+            long target;
+            lock.lock();
+            try {
+                while (open && syncedOffset == writeOffset) dirty.await();
+                if (!open) break;
+                seg = head;
+                target = writeOffset;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                lock.unlock();
+            }
+
+            // group commit: let concurrent appenders pile in behind the first one
+            sleepQuietly(props.getSyncIntervalMs());
+            lock.lock();
+            try {
+                if (head == seg) target = writeOffset;
+            } finally {
+                lock.unlock();
+            }
+
+            seg.buffer.force();
+
+            lock.lock();
+            try {
+                if (target > syncedOffset) syncedOffset = target;
+                unsyncedSince = syncedOffset < writeOffset ? System.nanoTime() : 0;
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // called with the lock held: close the head segment (fsynced) and start the next one at writeOffset
+    private void roll(int pos) {
+        if (pos + Integer.BYTES <= head.capacity()) head.buffer.putInt(pos, SEGMENT_END);
+        head.buffer.force();
+        head = newSegment(writeOffset);
+    }
+
+    private Segment newSegment(long base) {
+        Path p = dir.resolve(String.format("%020d%s", base, SUFFIX));
+        Segment seg = Segment.open(p, base, segmentBytes());
+        segments.put(base, seg);
+        return seg;
+    }
+
+    // walk entries from the start; the first zero length or bad checksum is the end of the log
+    private static int recover(Segment seg) {
+        int pos = 0;
+        while (pos + HEADER <= seg.capacity()) {
+            int len = seg.buffer.getInt(pos);
+            if (len <= 0 || pos + HEADER + len > seg.capacity()) break;
+            byte[] payload = new byte[len];
+            seg.buffer.get(pos + HEADER, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != seg.buffer.getInt(pos + 4)) {
+                log.warn("WAL segment {}: torn entry at {}, truncating", seg.path.getFileName(), pos);
+                break;
+            }
+            pos += HEADER + len;
+        }
+        // clear whatever a torn write left behind, so the next append starts from clean space
+        for (int i = pos; i < Math.min(seg.capacity(), pos + HEADER); i++) seg.buffer.put(i, (byte) 0);
+        return pos;
+    }
+
+    private int segmentBytes() {
+        return Math.max(1, props.getSegmentMb()) * 1024 * 1024;
+    }
+
+    private static void sleepQuietly(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (!open) return;
+        lock.lock();
+        try {
+            open = false;
+            dirty.signalAll();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join(1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segments.values().forEach(seg -> {
+            seg.buffer.force();
+            seg.close();
+        });
+    }
+
+    /** One durable entry and the offset of the next one. */
+    public record Read(long offset, long next, byte[] payload) {}
+
+    private static final class Segment {
+        final Path path;
+        final long base;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        private Segment(Path path, long base, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.base = base;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, long base, int size) {
+            try {
+                FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                long length = Math.max(ch.size(), size);   // an existing segment keeps its own size
+                return new Segment(path, base, ch, ch.map(FileChannel.MapMode.READ_WRITE, 0, length));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map WAL segment " + path, e);
+            }
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // mapping stays valid until collected
+            }
+        }
+    }
+}
@@ -1,32 +1,145 @@
 package com.legakrishi.solar.jobs;
 
-import com.legakrishi.solar.config.MonitoringProps;
+import com.legakrishi.solar.config.AggregationProps;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.SiteRepository;
 import com.legakrishi.solar.service.AggregationService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Re-aggregates every ACTIVE site × meter: today every 5 minutes (only when lkf.aggregation.incremental
+ * is off; otherwise DayRollupAccumulator keeps today current) and yesterday nightly as the repair pass.
+ * Sites run on a bounded pool of lkf.aggregation.parallelism threads; one failing site does not stop
+ * the others, and sites still running at deadline-seconds are cancelled. The per-site
+ * aggregation.site.duration timer shows when the fleet is outgrowing the cycle.
+ */
 @Component
-@RequiredArgsConstructor
 public class AutoAggregateTodayJob {
 
     private static final Logger log = LoggerFactory.getLogger(AutoAggregateTodayJob.class);
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
 
     private final AggregationService aggregationService;
-    private final MonitoringProps props; // ← read siteId from application.properties
+    private final SiteRepository siteRepo;
+    private final AggregationProps props;
+    private final MeterRegistry meters;
+    private final ExecutorService pool;
+
+    public AutoAggregateTodayJob(AggregationService aggregationService, SiteRepository siteRepo,
+                                 AggregationProps props, MeterRegistry meters) {
+        this.aggregationService = aggregationService;
+        this.siteRepo = siteRepo;
+        this.props = props;
+        this.meters = meters;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, props.getParallelism()), r -> {
+            Thread t = new Thread(r, "aggregate-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
 
-    // runs every 5 minutes
+    // runs every 5 minutes, unless today is maintained incrementally (DayRollupAccumulator)
     @Scheduled(initialDelay = 10_000, fixedDelay = 300_000)
     public void run() {
+        if (props.isIncremental()) return;
+        LocalDate today = LocalDate.now(IST);
+        runFleet("today", siteId -> {
+            aggregationService.aggregateDayForSite(siteId, today);
+            for (MeterKind mk : MeterKind.values()) {
+                aggregationService.aggregateDayPerMeter(siteId, today, mk);
+            }
+        });
+    }
+
+    // nightly repair: full rescan of yesterday, whatever the incremental rollup wrote
+    @Scheduled(cron = "0 20 0 * * *", zone = "Asia/Kolkata")
+    public void repairYesterday() {
+        LocalDate yesterday = LocalDate.now(IST).minusDays(1);
+        runFleet("repair", siteId -> {
+            aggregationService.aggregateDayForSite(siteId, yesterday);
+            for (MeterKind mk : MeterKind.values()) {
+                aggregationService.aggregateDaysPerMeter(siteId, mk, yesterday, yesterday);
+            }
+        });
+    }
+
+    private interface SiteTask {
+        void run(Long siteId) throws Exception;
+    }
+
+    private void runFleet(String pass, SiteTask task) {
+        List<Long> siteIds;
         try {
-            Long siteId = props.getSiteId();
-            var rd = aggregationService.aggregateTodayForSite(siteId);
-            log.info("Aggregated today: site={} day={} energyTodayKwh={} maxPowerKw={}",
-                    siteId, rd.getDay(), rd.getEnergyTodayKwh(), rd.getMaxPowerKw());
+            siteIds = siteRepo.findActiveIds();
         } catch (Exception e) {
-            log.warn("Auto aggregate failed: {}", e.getMessage());
+            log.warn("Auto aggregate ({}) could not list sites: {}", pass, e.getMessage());
+            return;
+        }
+        if (siteIds.isEmpty()) return;
+
+        List<Callable<Void>> calls = new ArrayList<>(siteIds.size());
+        for (Long siteId : siteIds) {
+            Timer timer = Timer.builder("aggregation.site.duration")
+                    .description("Time to re-aggregate one site (all meters)")
+                    .tag("site", String.valueOf(siteId))
+                    .tag("pass", pass)
+                    .register(meters);
+            calls.add(() -> {
+                timer.recordCallable(() -> { task.run(siteId); return null; });
+                return null;
+            });
+        }
+
+        long t0 = System.nanoTime();
+        int ok = 0, failed = 0, cancelled = 0;
+        try {
+            List<Future<Void>> futures = pool.invokeAll(calls, props.getDeadlineSeconds(), TimeUnit.SECONDS);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                    ok++;
+                } catch (CancellationException e) {
+                    cancelled++;
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.warn("Auto aggregate ({}) failed for site={}: {}", pass, siteIds.get(i), e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        if (cancelled > 0) {
+            log.warn("Auto aggregate ({}): deadline of {} s hit, {} of {} sites cancelled; raise parallelism or the deadline",
+                    pass, props.getDeadlineSeconds(), cancelled, siteIds.size());
         }
+        log.info("Auto aggregate ({}): {} sites ok, {} failed in {} ms", pass, ok, failed, ms);
     }
 }
@@ -0,0 +1,64 @@
+package com.legakrishi.solar.jobs;
+
+import com.legakrishi.solar.config.StorageProps;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.EnergySampleRepository;
+import com.legakrishi.solar.service.EnergySampleStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Packs closed IST days of energy_sample into energy_sample_block (one per site, meter and day)
+ * and deletes the raw rows; reads go through {@link EnergySampleStore}. One transaction per day,
+ * oldest first, at most max-days-per-run blocks a night so a first run over years of history
+ * spreads over several nights.
+ */
+@Component
+public class EnergySampleCompactionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(EnergySampleCompactionJob.class);
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private final EnergySampleRepository sampleRepo;
+    private final EnergySampleStore store;
+    private final StorageProps.Compaction props;
+
+    public EnergySampleCompactionJob(EnergySampleRepository sampleRepo, EnergySampleStore store, StorageProps props) {
+        this.sampleRepo = sampleRepo;
+        this.store = store;
+        this.props = props.getCompaction();
+    }
+
+    // daily at 02:15, after PartitionMaintenanceJob
+    @Scheduled(cron = "0 15 2 * * *")
+    public void run() {
+        if (!props.isEnabled()) return;
+        LocalDate cutoffDay = LocalDate.now(IST).minusDays(Math.max(1, props.getAfterDays()));
+        Instant cutoff = cutoffDay.atStartOfDay(IST).toInstant();
+
+        int blocks = 0, rows = 0;
+        for (Object[] oldest : sampleRepo.findOldestBefore(cutoff)) {
+            Long siteId = (Long) oldest[0];
+            MeterKind meter = (MeterKind) oldest[1];
+            LocalDate day = ((Instant) oldest[2]).atZone(IST).toLocalDate();
+            for (; day.isBefore(cutoffDay) && blocks < props.getMaxDaysPerRun(); day = day.plusDays(1)) {
+                try {
+                    int moved = store.compactDay(siteId, meter, day);
+                    if (moved > 0) {
+                        blocks++;
+                        rows += moved;
+                    }
+                } catch (Exception e) {
+                    log.warn("Compaction of site={} meter={} day={} failed: {}", siteId, meter, day, e.getMessage());
+                }
+            }
+        }
+        if (blocks > 0) log.info("Compacted {} energy_sample rows into {} day blocks (before {})", rows, blocks, cutoffDay);
+    }
+}
@@ -0,0 +1,93 @@
+package com.legakrishi.solar.jobs;
+
+import com.legakrishi.solar.config.AggregationProps;
+import com.legakrishi.solar.model.EnergySampleRollup;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.EnergySampleBlockRepository;
+import com.legakrishi.solar.repository.EnergySampleRepository;
+import com.legakrishi.solar.repository.SiteRepository;
+import com.legakrishi.solar.service.IntervalRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nightly rebuild of the 5 / 15 / 60-minute and daily rollups of closed days: yesterday always (late
+ * samples since the last incremental flush), and earlier days within interval-backfill-days only while
+ * they have no daily bucket yet, starting at each meter's oldest stored sample. At most
+ * interval-backfill-max-days-per-run site-meter days a night, so a first run over long history
+ * spreads over several nights.
+ */
+@Component
+public class IntervalRollupJob {
+
+    private static final Logger log = LoggerFactory.getLogger(IntervalRollupJob.class);
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private final IntervalRollupService rollups;
+    private final SiteRepository siteRepo;
+    private final EnergySampleRepository sampleRepo;
+    private final EnergySampleBlockRepository blockRepo;
+    private final AggregationProps props;
+
+    public IntervalRollupJob(IntervalRollupService rollups, SiteRepository siteRepo, EnergySampleRepository sampleRepo,
+                             EnergySampleBlockRepository blockRepo, AggregationProps props) {
+        this.rollups = rollups;
+        this.siteRepo = siteRepo;
+        this.sampleRepo = sampleRepo;
+        this.blockRepo = blockRepo;
+        this.props = props;
+    }
+
+    // daily at 00:40 IST, after the reading_day_meter repair
+    @Scheduled(cron = "0 40 0 * * *", zone = "Asia/Kolkata")
+    public void run() {
+        if (!props.isIntervalRollups()) return;
+        LocalDate today = LocalDate.now(IST);
+        LocalDate yesterday = today.minusDays(1);
+        LocalDate horizon = yesterday.minusDays(Math.max(0, props.getIntervalBackfillDays() - 1));
+        Instant todayStart = today.atStartOfDay(IST).toInstant();
+
+        // "site:meter" -> oldest stored day, raw rows and day blocks alike
+        Map<String, LocalDate> oldest = new HashMap<>();
+        for (Object[] r : sampleRepo.findOldestBefore(todayStart)) {
+            oldest.merge(r[0] + ":" + r[1], ((Instant) r[2]).atZone(IST).toLocalDate(), (a, b) -> a.isBefore(b) ? a : b);
+        }
+        for (Object[] r : blockRepo.findOldestBefore(todayStart)) {
+            oldest.merge(r[0] + ":" + r[1], (LocalDate) r[2], (a, b) -> a.isBefore(b) ? a : b);
+        }
+
+        int days = 0, budget = Math.max(1, props.getIntervalBackfillMaxDaysPerRun());
+        for (Long siteId : siteRepo.findActiveIds()) {
+            Set<String> done = new HashSet<>();                 // "meter:day" with a daily bucket already
+            for (EnergySampleRollup b : rollups.readDays(siteId, horizon.atStartOfDay(IST).toInstant(), todayStart)) {
+                done.add(b.getMeterKind() + ":" + b.getBucketStart().atZone(IST).toLocalDate());
+            }
+            for (MeterKind meter : MeterKind.values()) {
+                LocalDate first = oldest.get(siteId + ":" + meter);
+                if (first == null) continue;
+                if (first.isBefore(horizon)) first = horizon;
+                for (LocalDate d = first; !d.isAfter(yesterday); d = d.plusDays(1)) {
+                    if (d.isBefore(yesterday) && (done.contains(meter + ":" + d) || budget <= 0)) continue;
+                    try {
+                        if (rollups.rollupRange(siteId, meter, d.atStartOfDay(IST).toInstant(),
+                                d.plusDays(1).atStartOfDay(IST).toInstant(), IntervalRollupService.STEPS) > 0) days++;
+                    } catch (Exception e) {
+                        log.warn("Interval rollup of site={} meter={} day={} failed: {}", siteId, meter, d, e.getMessage());
+                    }
+                    if (d.isBefore(yesterday)) budget--;
+                }
+            }
+        }
+        if (days > 0) log.info("Rebuilt interval rollups for {} site-meter days", days);
+    }
+}
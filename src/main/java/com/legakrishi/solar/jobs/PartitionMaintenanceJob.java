@@ -0,0 +1,67 @@
+package com.legakrishi.solar.jobs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Keeps the monthly partitions of reading / energy_sample ahead of the clock and, when a retention
+ * is set, drops whole months that fell out of it (see V1__partition_functions.sql). Postgres only.
+ */
+@Component
+@Profile("postgres")
+public class PartitionMaintenanceJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceJob.class);
+
+    // parent table -> partition column
+    private static final String[][] TABLES = { {"energy_sample", "sample_time"}, {"reading", "ts"} };
+
+    private final JdbcTemplate jdbc;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public PartitionMaintenanceJob(JdbcTemplate jdbc,
+                                   @Value("${lkf.partitions.months-ahead:3}") int monthsAhead,
+                                   @Value("${lkf.partitions.retention-months:0}") int retentionMonths) {
+        this.jdbc = jdbc;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        run();
+    }
+
+    // daily at 01:30
+    @Scheduled(cron = "0 30 1 * * *")
+    public void run() {
+        LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+        for (String[] t : TABLES) {
+            try {
+                Integer created = jdbc.queryForObject("select lkf_ensure_month_partitions(?, ?, ?, ?)",
+                        Integer.class, t[0], t[1], thisMonth, thisMonth.plusMonths(monthsAhead));
+                int dropped = 0;
+                if (retentionMonths > 0) {
+                    Integer n = jdbc.queryForObject("select lkf_drop_month_partitions_before(?, ?, ?)",
+                            Integer.class, t[0], t[1], thisMonth.minusMonths(retentionMonths));
+                    dropped = n == null ? 0 : n;
+                }
+                if ((created != null && created > 0) || dropped > 0) {
+                    log.info("Partitions of {}: created={} dropped={}", t[0], created, dropped);
+                }
+            } catch (Exception e) {
+                log.warn("Partition maintenance for {} failed: {}", t[0], e.getMessage());
+            }
+        }
+    }
+}
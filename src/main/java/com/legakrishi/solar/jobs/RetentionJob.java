@@ -0,0 +1,33 @@
+package com.legakrishi.solar.jobs;
+
+import com.legakrishi.solar.config.StorageProps;
+import com.legakrishi.solar.service.RetentionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RetentionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionJob.class);
+
+    private final RetentionService retention;
+    private final StorageProps props;
+
+    public RetentionJob(RetentionService retention, StorageProps props) {
+        this.retention = retention;
+        this.props = props;
+    }
+
+    // daily at 02:45, after compaction
+    @Scheduled(cron = "0 45 2 * * *")
+    public void run() {
+        if (!props.getRetention().isEnabled()) return;
+        try {
+            retention.apply();
+        } catch (Exception e) {
+            log.warn("Retention run failed: {}", e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.legakrishi.solar.kpi;
 
+import com.legakrishi.solar.model.MeterKind;
 import com.legakrishi.solar.model.Reading;
 import com.legakrishi.solar.model.ReadingDay;
 import com.legakrishi.solar.repository.ReadingDayRepository;
+import com.legakrishi.solar.repository.ReadingMonthMeterRepository;
 import com.legakrishi.solar.repository.ReadingRepository;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,10 +18,13 @@ public class PartnerKpiService {
 
     private final ReadingRepository readingRepo;
     private final ReadingDayRepository readingDayRepo;
+    private final ReadingMonthMeterRepository monthRollupRepo;
 
-    public PartnerKpiService(ReadingRepository readingRepo, ReadingDayRepository readingDayRepo) {
+    public PartnerKpiService(ReadingRepository readingRepo, ReadingDayRepository readingDayRepo,
+                             ReadingMonthMeterRepository monthRollupRepo) {
         this.readingRepo = readingRepo;
         this.readingDayRepo = readingDayRepo;
+        this.monthRollupRepo = monthRollupRepo;
     }
 
     public Kpis compute(Long siteId) {
@@ -43,14 +48,6 @@ public class PartnerKpiService {
                 .findFirstBySiteIdAndTsBetweenOrderByTsDesc(siteId, startOfDay, endOfDay)
                 .orElse(null);
 
-        // month window (for fallback)
-        Reading firstMonth = readingRepo
-                .findFirstBySiteIdAndTsBetweenOrderByTsAsc(siteId, startOfMonth, now)
-                .orElse(null);
-        Reading lastMonth = readingRepo
-                .findFirstBySiteIdAndTsBetweenOrderByTsDesc(siteId, startOfMonth, now)
-                .orElse(null);
-
         // compute KPIs
         double currentPower = (latest != null && latest.getPowerKw() != null) ? latest.getPowerKw() : 0.0;
 
@@ -61,15 +58,27 @@ public class PartnerKpiService {
         double energyTodayFallback = diffEnergy(firstToday, lastToday);
         double energyToday = (energyTodayAgg != null) ? energyTodayAgg : energyTodayFallback;
 
-        // MONTH: prefer sum of reading_day for the month, fallback to diff
-        List<ReadingDay> monthRows = readingDayRepo.findBySiteIdAndDayBetween(siteId, firstOfMonth, today);
-        Double energyMonthAgg = monthRows.stream()
-                .map(ReadingDay::getEnergyTodayKwh)
-                .filter(v -> v != null)
-                .reduce(0.0, Double::sum);
-
-        double energyMonthFallback = diffEnergy(firstMonth, lastMonth);
-        double energyMonth = (energyMonthAgg != null && energyMonthAgg > 0) ? energyMonthAgg : energyMonthFallback;
+        // MONTH: prefer the MAIN month rollup (one row), then the sum of reading_day, then diff
+        double energyMonth = monthRollupRepo.findBySiteIdAndMeterKindAndPeriodStart(siteId, MeterKind.MAIN, firstOfMonth)
+                .map(m -> m.getAcActiveEnergyKwh() != null ? m.getAcActiveEnergyKwh().doubleValue() : 0.0)
+                .orElse(0.0);
+        if (energyMonth <= 0) {
+            List<ReadingDay> monthRows = readingDayRepo.findBySiteIdAndDayBetween(siteId, firstOfMonth, today);
+            energyMonth = monthRows.stream()
+                    .map(ReadingDay::getEnergyTodayKwh)
+                    .filter(v -> v != null)
+                    .reduce(0.0, Double::sum);
+        }
+        if (energyMonth <= 0) {
+            // month window (last resort)
+            Reading firstMonth = readingRepo
+                    .findFirstBySiteIdAndTsBetweenOrderByTsAsc(siteId, startOfMonth, now)
+                    .orElse(null);
+            Reading lastMonth = readingRepo
+                    .findFirstBySiteIdAndTsBetweenOrderByTsDesc(siteId, startOfMonth, now)
+                    .orElse(null);
+            energyMonth = diffEnergy(firstMonth, lastMonth);
+        }
 
         double energyTotal = (latest != null && latest.getEnergyKwh() != null) ? latest.getEnergyKwh() : 0.0;
 
@@ -5,8 +5,9 @@ import java.time.Instant;
 
 @Entity
 @Table(name = "energy_sample",
+        // one row per (site, meter, instant): makes ingest idempotent and doubles as the range-scan index
+        uniqueConstraints = @UniqueConstraint(name = "uk_es_site_kind_time", columnNames = {"siteId", "meterKind", "sampleTime"}),
         indexes = {
-                @Index(name="idx_es_site_kind_time", columnList="siteId,meterKind,sampleTime"),
                 @Index(name="idx_es_site_time", columnList="siteId,sampleTime")
         })
 public class EnergySample {
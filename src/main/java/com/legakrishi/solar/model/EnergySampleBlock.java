@@ -0,0 +1,51 @@
+package com.legakrishi.solar.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Cold storage for one closed (site, meter, IST day) of energy_sample: the rows packed by
+ * {@link com.legakrishi.solar.util.GorillaCodec} once EnergySampleCompactionJob has moved them out of energy_sample.
+ */
+@Entity
+@Table(
+        name = "energy_sample_block",
+        uniqueConstraints = @UniqueConstraint(name = "uk_esb_site_kind_day", columnNames = {"site_id", "meter_kind", "block_day"}),
+        indexes = {
+                @Index(name = "idx_esb_site_kind_first", columnList = "site_id, meter_kind, first_time")
+        }
+)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class EnergySampleBlock {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "site_id", nullable = false)
+    private Long siteId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "meter_kind", length = 16, nullable = false)
+    private MeterKind meterKind;
+
+    @Column(name = "block_day", nullable = false)
+    private LocalDate blockDay;
+
+    @Column(nullable = false)
+    private int sampleCount;
+
+    // sampleTime of the first / last packed row, for overlap lookups without decoding
+    @Column(nullable = false)
+    private Instant firstTime;
+
+    @Column(nullable = false)
+    private Instant lastTime;
+
+    // varbinary on H2, bytea on Postgres, mediumblob on MySQL
+    @Column(nullable = false, length = 8 * 1024 * 1024)
+    private byte[] data;
+
+    private Instant compactedAt;
+}
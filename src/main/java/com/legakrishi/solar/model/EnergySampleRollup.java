@@ -0,0 +1,58 @@
+package com.legakrishi.solar.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * One fixed-width time bucket of energy_sample for a site and meter: power statistics over the
+ * bucket, the daily counters as of its last sample and the energy produced within it. Buckets are
+ * aligned to IST midnight. Outlives the raw rows it was built from.
+ */
+@Entity
+@Table(
+        name = "energy_sample_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_esr_site_kind_step_bucket",
+                columnNames = {"site_id", "meter_kind", "step_min", "bucket_start"})
+)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class EnergySampleRollup {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "site_id", nullable = false)
+    private Long siteId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "meter_kind", length = 16, nullable = false)
+    private MeterKind meterKind;
+
+    @Column(name = "step_min", nullable = false)
+    private int stepMin;
+
+    @Column(name = "bucket_start", nullable = false)
+    private Instant bucketStart;
+
+    private int sampleCount;
+
+    // over the powerCount samples that carried a power value
+    private int powerCount;
+    private Double powerSumKw;
+    private Double powerMinKw;
+    private Double powerMaxKw;
+    private Double powerLastKw;
+
+    // daily counters of the last sample in the bucket
+    private Double dailyAcEnergyKwh;
+    private Double dailyAcExportKwh;
+    private Double dailyAcImportKwh;
+    private Double dailyDcEnergyKwh;
+
+    // AC energy produced within the bucket: daily counter minus the previous bucket's (or 0 at IST midnight)
+    private Double acEnergyDeltaKwh;
+
+    public Double getPowerAvgKw() {
+        return powerCount == 0 ? null : powerSumKw / powerCount;
+    }
+}
@@ -0,0 +1,54 @@
+package com.legakrishi.solar.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Month totals of reading_day_meter: energy columns are sums of the day rows, power is the max.
+ * period_start is the 1st of the month. Refreshed by {@link com.legakrishi.solar.repository.ReadingPeriodRollups}
+ * every time one of its day rows is upserted.
+ */
+@Entity
+@Table(
+        name = "reading_month_meter",
+        uniqueConstraints = @UniqueConstraint(name = "uniq_site_meter_month", columnNames = {"site_id", "meter_kind", "period_start"})
+)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ReadingMonthMeter {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private Site site;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "meter_kind", length = 16, nullable = false)
+    private MeterKind meterKind;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    private Integer dayCount;        // day rows behind the totals
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal acActiveEnergyKwh;
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal acExportEnergyKwh;
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal acImportEnergyKwh;
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal dcEnergyKwh;
+
+    @Column(precision = 12, scale = 3)
+    private BigDecimal maxAcPowerKw;
+
+    private LocalDateTime lastTs;
+}
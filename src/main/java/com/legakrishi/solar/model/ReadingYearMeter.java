@@ -0,0 +1,52 @@
+package com.legakrishi.solar.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Year totals of reading_month_meter (period_start = 1 January), refreshed right after the month rows.
+ */
+@Entity
+@Table(
+        name = "reading_year_meter",
+        uniqueConstraints = @UniqueConstraint(name = "uniq_site_meter_year", columnNames = {"site_id", "meter_kind", "period_start"})
+)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ReadingYearMeter {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private Site site;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "meter_kind", length = 16, nullable = false)
+    private MeterKind meterKind;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    private Integer dayCount;        // day rows behind the totals
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal acActiveEnergyKwh;
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal acExportEnergyKwh;
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal acImportEnergyKwh;
+
+    @Column(precision = 18, scale = 3)
+    private BigDecimal dcEnergyKwh;
+
+    @Column(precision = 12, scale = 3)
+    private BigDecimal maxAcPowerKw;
+
+    private LocalDateTime lastTs;
+}
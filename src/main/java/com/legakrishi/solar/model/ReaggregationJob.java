@@ -0,0 +1,48 @@
+package com.legakrishi.solar.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One admin-triggered rebuild of reading_day_meter over (sites, meters, from..to). Work items are the
+ * (day, site, meter) triples in that order; {@code checkpoint} is how many of them are done without gaps,
+ * so a restarted job resumes there (items just past it may run twice, which the upsert makes harmless).
+ */
+@Entity
+@Table(name = "reaggregation_job")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ReaggregationJob {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Lob
+    @Column(nullable = false)
+    private String siteIds;          // comma separated; every active site when none were given
+
+    @Column(nullable = false, length = 64)
+    private String meters;           // comma separated MeterKind names
+
+    @Column(nullable = false)
+    private LocalDate fromDay;
+
+    @Column(nullable = false)
+    private LocalDate toDay;
+
+    @Column(nullable = false, length = 16)
+    private String status;           // RUNNING / DONE / FAILED / CANCELLED
+
+    private int totalItems;
+    private int checkpoint;          // items done, contiguous from the first
+    private int failedItems;
+
+    @Column(length = 512)
+    private String lastError;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,31 @@
+package com.legakrishi.solar.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * Marks a WAL entry as written, in the same transaction as its rows, so an entry replayed after a
+ * crash or a lost checkpoint is skipped instead of written twice (reading has no natural unique key).
+ * Rows below the applier's checkpoint are pruned; the log id tells a recreated WAL directory apart.
+ */
+@Entity
+@Table(
+        name = "wal_applied",
+        uniqueConstraints = @UniqueConstraint(name = "uk_wal_applied_log_offset", columnNames = {"log_id", "entry_offset"})
+)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class WalAppliedEntry {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "log_id", length = 36, nullable = false)
+    private String logId;
+
+    @Column(name = "entry_offset", nullable = false)
+    private Long entryOffset;
+
+    @Column(name = "applied_at", nullable = false)
+    private Instant appliedAt;
+}
@@ -0,0 +1,96 @@
+package com.legakrishi.solar.repository;
+
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Which database we are on (H2 file in prod, MySQL in dev, Postgres optional), for the few
+ * native statements that cannot be written portably (insert-ignore, upsert).
+ */
+@Component
+public class DbDialect {
+
+    public enum Vendor { H2, MYSQL, POSTGRES, OTHER }
+
+    private final DataSource dataSource;
+    private volatile Vendor vendor;
+
+    public DbDialect(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public Vendor vendor() {
+        Vendor v = vendor;
+        if (v == null) {
+            try (Connection c = dataSource.getConnection()) {
+                String name = c.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+                if (name.contains("h2")) v = Vendor.H2;
+                else if (name.contains("mysql") || name.contains("mariadb")) v = Vendor.MYSQL;
+                else if (name.contains("postgres")) v = Vendor.POSTGRES;
+                else v = Vendor.OTHER;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot detect database vendor", e);
+            }
+            vendor = v;
+        }
+        return v;
+    }
+
+    /** Quote a column that is also a keyword (e.g. "day") the way each database folds unquoted names. */
+    public String quote(String identifier) {
+        return switch (vendor()) {
+            case H2 -> "\"" + identifier.toUpperCase(Locale.ROOT) + "\"";
+            case MYSQL -> "`" + identifier + "`";
+            default -> "\"" + identifier.toLowerCase(Locale.ROOT) + "\"";
+        };
+    }
+
+    /**
+     * Bind an Instant to a column Hibernate maps as TIMESTAMP_UTC (hibernate.jdbc.time_zone=UTC):
+     * timestamp with time zone on H2/Postgres, UTC wall-clock datetime on MySQL.
+     */
+    public void setInstant(PreparedStatement ps, int index, Instant value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, java.sql.Types.TIMESTAMP);
+        } else if (vendor() == Vendor.MYSQL || vendor() == Vendor.OTHER) {
+            ps.setTimestamp(index, Timestamp.from(value), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+        } else {
+            ps.setObject(index, OffsetDateTime.ofInstant(value, ZoneOffset.UTC));
+        }
+    }
+
+    /**
+     * Bind a LocalDateTime exactly as Hibernate does with hibernate.jdbc.time_zone=UTC
+     * (Timestamp in the JVM zone, written through a UTC calendar), so JDBC and JPA rows agree.
+     */
+    public void setLocalDateTime(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, java.sql.Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, Timestamp.valueOf(value), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+        }
+    }
+
+    /** Bind a LocalDate the way Hibernate does with hibernate.jdbc.time_zone=UTC (java.sql.Date through a UTC calendar). */
+    public void setLocalDate(PreparedStatement ps, int index, LocalDate value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, java.sql.Types.DATE);
+        } else {
+            ps.setDate(index, Date.valueOf(value), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.EnergySampleBlock;
+import com.legakrishi.solar.model.MeterKind;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface EnergySampleBlockRepository extends JpaRepository<EnergySampleBlock, Long> {
+
+    Optional<EnergySampleBlock> findBySiteIdAndMeterKindAndBlockDay(Long siteId, MeterKind meterKind, LocalDate blockDay);
+
+    // blocks overlapping [from, to]
+    @Query("""
+    select b from EnergySampleBlock b
+     where b.siteId = :siteId
+       and b.meterKind = :meterKind
+       and b.firstTime <= :to
+       and b.lastTime >= :from
+     order by b.firstTime
+  """)
+    List<EnergySampleBlock> findOverlapping(Long siteId, MeterKind meterKind, Instant from, Instant to);
+
+    // blocks of every meter of a site overlapping [from, to]
+    @Query("""
+    select b from EnergySampleBlock b
+     where b.siteId = :siteId
+       and b.firstTime <= :to
+       and b.lastTime >= :from
+     order by b.firstTime
+  """)
+    List<EnergySampleBlock> findOverlappingAllMeters(Long siteId, Instant from, Instant to);
+
+    // Oldest block day per (site, meter) whose samples all lie before the cutoff
+    @Query("""
+    select b.siteId, b.meterKind, min(b.blockDay) from EnergySampleBlock b
+     where b.lastTime < :before
+     group by b.siteId, b.meterKind
+  """)
+    List<Object[]> findOldestBefore(Instant before);
+}
@@ -35,6 +35,24 @@ public interface EnergySampleRepository extends JpaRepository<EnergySample, Long
   """)
     List<EnergySample> findWindow(Long siteId, Instant from, Instant to);
 
+    // Half-open [from, to) for one meter: exactly one day when compacting into blocks
+    @Query("""
+    select s from EnergySample s
+     where s.siteId = :siteId
+       and s.meterKind = :meterKind
+       and s.sampleTime >= :from and s.sampleTime < :to
+     order by s.sampleTime
+  """)
+    List<EnergySample> findSlice(Long siteId, MeterKind meterKind, Instant from, Instant to);
+
+    // Oldest raw sample per (site, meter) before the cutoff: where compaction has work left
+    @Query("""
+    select s.siteId, s.meterKind, min(s.sampleTime) from EnergySample s
+     where s.sampleTime < :before
+     group by s.siteId, s.meterKind
+  """)
+    List<Object[]> findOldestBefore(Instant before);
+
     // ---- Compatibility shim for legacy code that still calls "...Ts..." ----
     // If some classes still reference 'ts', this wrapper will compile and delegate.
     default List<EnergySample> findBySiteIdAndTsBetweenOrderByTsAsc(
@@ -0,0 +1,38 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.EnergySampleRollup;
+import com.legakrishi.solar.model.MeterKind;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface EnergySampleRollupRepository extends JpaRepository<EnergySampleRollup, Long> {
+
+    List<EnergySampleRollup> findBySiteIdAndMeterKindAndStepMinAndBucketStartBetweenOrderByBucketStart(
+            Long siteId, MeterKind meterKind, int stepMin, Instant from, Instant to);
+
+    List<EnergySampleRollup> findBySiteIdAndStepMinAndBucketStartBetweenOrderByBucketStart(
+            Long siteId, int stepMin, Instant from, Instant to);
+
+    Optional<EnergySampleRollup> findFirstBySiteIdAndMeterKindAndStepMinAndBucketStartBetweenOrderByBucketStartDesc(
+            Long siteId, MeterKind meterKind, int stepMin, Instant from, Instant to);
+
+    @Query("""
+    select count(r) from EnergySampleRollup r
+     where r.siteId = :siteId and r.meterKind = :meterKind and r.stepMin = :stepMin
+       and r.bucketStart >= :from and r.bucketStart < :to
+  """)
+    long countSlice(Long siteId, MeterKind meterKind, int stepMin, Instant from, Instant to);
+
+    @Modifying
+    @Query("""
+    delete from EnergySampleRollup r
+     where r.siteId = :siteId and r.meterKind = :meterKind and r.stepMin = :stepMin
+       and r.bucketStart >= :from and r.bucketStart < :to
+  """)
+    int deleteSlice(Long siteId, MeterKind meterKind, int stepMin, Instant from, Instant to);
+}
@@ -8,7 +8,7 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
-public interface ReadingDayMeterRepository extends JpaRepository<ReadingDayMeter, Long> {
+public interface ReadingDayMeterRepository extends JpaRepository<ReadingDayMeter, Long>, ReadingDayMeterRepositoryCustom {
     Optional<ReadingDayMeter> findBySiteIdAndMeterKindAndDay(Long siteId, MeterKind meter, LocalDate day);
 
     // >>> This is the one ChartSeriesService is calling <<<
@@ -0,0 +1,14 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.ReadingDayMeter;
+
+import java.util.List;
+
+public interface ReadingDayMeterRepositoryCustom {
+
+    /** Insert or overwrite the row for (site, meter, day) in one statement; safe against concurrent writers. */
+    void upsert(ReadingDayMeter row);
+
+    /** {@link #upsert} for many rows as one JDBC batch. */
+    void upsertAll(List<ReadingDayMeter> rows);
+}
@@ -0,0 +1,100 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.ReadingDayMeter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Native upsert on uniq_site_meter_day: ON CONFLICT (Postgres), ON DUPLICATE KEY (MySQL), MERGE (H2).
+ * Joins the caller's transaction (same DataSource), so it rolls back with it. The month / year rows
+ * of the written days are re-derived right after (see {@link ReadingPeriodRollups}).
+ */
+public class ReadingDayMeterRepositoryImpl implements ReadingDayMeterRepositoryCustom {
+
+    private static final String VALUE_COLUMNS =
+            "ac_active_energy_kwh, ac_export_energy_kwh, ac_import_energy_kwh, dc_energy_kwh, max_ac_power_kw, last_ts";
+
+    private final JdbcTemplate jdbc;
+    private final DbDialect dialect;
+    private final ReadingPeriodRollups periodRollups;
+    private volatile String upsertSql;
+
+    public ReadingDayMeterRepositoryImpl(JdbcTemplate jdbc, DbDialect dialect, ReadingPeriodRollups periodRollups) {
+        this.jdbc = jdbc;
+        this.dialect = dialect;
+        this.periodRollups = periodRollups;
+    }
+
+    @Override
+    public void upsert(ReadingDayMeter row) {
+        upsertAll(List.of(row));
+    }
+
+    @Override
+    public void upsertAll(List<ReadingDayMeter> rows) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate(upsertSql(), rows, 500, this::bind);
+        periodRollups.refresh(rows);
+    }
+
+    private String upsertSql() {
+        String sql = upsertSql;
+        if (sql == null) {
+            String day = dialect.quote("day");
+            String columns = "site_id, meter_kind, " + day + ", " + VALUE_COLUMNS;
+            sql = switch (dialect.vendor()) {
+                case POSTGRES -> "insert into reading_day_meter (" + columns + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                        + " on conflict (site_id, meter_kind, " + day + ") do update set"
+                        + " ac_active_energy_kwh = excluded.ac_active_energy_kwh,"
+                        + " ac_export_energy_kwh = excluded.ac_export_energy_kwh,"
+                        + " ac_import_energy_kwh = excluded.ac_import_energy_kwh,"
+                        + " dc_energy_kwh = excluded.dc_energy_kwh,"
+                        + " max_ac_power_kw = excluded.max_ac_power_kw,"
+                        + " last_ts = excluded.last_ts";
+                case MYSQL -> "insert into reading_day_meter (" + columns + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                        + " on duplicate key update"
+                        + " ac_active_energy_kwh = values(ac_active_energy_kwh),"
+                        + " ac_export_energy_kwh = values(ac_export_energy_kwh),"
+                        + " ac_import_energy_kwh = values(ac_import_energy_kwh),"
+                        + " dc_energy_kwh = values(dc_energy_kwh),"
+                        + " max_ac_power_kw = values(max_ac_power_kw),"
+                        + " last_ts = values(last_ts)";
+                case H2, OTHER -> """
+                        merge into reading_day_meter t
+                        using (select cast(? as bigint) site_id, cast(? as varchar(16)) meter_kind, cast(? as date) d,
+                                      cast(? as decimal(16,3)) ac_active_energy_kwh,
+                                      cast(? as decimal(16,3)) ac_export_energy_kwh,
+                                      cast(? as decimal(16,3)) ac_import_energy_kwh,
+                                      cast(? as decimal(16,3)) dc_energy_kwh,
+                                      cast(? as decimal(12,3)) max_ac_power_kw,
+                                      cast(? as timestamp(6)) last_ts) s
+                           on t.site_id = s.site_id and t.meter_kind = s.meter_kind and t.%1$s = s.d
+                        when matched then update set
+                             ac_active_energy_kwh = s.ac_active_energy_kwh, ac_export_energy_kwh = s.ac_export_energy_kwh,
+                             ac_import_energy_kwh = s.ac_import_energy_kwh, dc_energy_kwh = s.dc_energy_kwh,
+                             max_ac_power_kw = s.max_ac_power_kw, last_ts = s.last_ts
+                        when not matched then insert (site_id, meter_kind, %1$s, %2$s)
+                        values (s.site_id, s.meter_kind, s.d, s.ac_active_energy_kwh, s.ac_export_energy_kwh,
+                                s.ac_import_energy_kwh, s.dc_energy_kwh, s.max_ac_power_kw, s.last_ts)
+                        """.formatted(day, VALUE_COLUMNS);
+            };
+            upsertSql = sql;
+        }
+        return sql;
+    }
+
+    private void bind(PreparedStatement ps, ReadingDayMeter r) throws SQLException {
+        ps.setLong(1, r.getSite().getId());
+        ps.setString(2, r.getMeterKind().name());
+        dialect.setLocalDate(ps, 3, r.getDay());
+        ps.setBigDecimal(4, r.getAcActiveEnergyKwh());
+        ps.setBigDecimal(5, r.getAcExportEnergyKwh());
+        ps.setBigDecimal(6, r.getAcImportEnergyKwh());
+        ps.setBigDecimal(7, r.getDcEnergyKwh());
+        ps.setBigDecimal(8, r.getMaxAcPowerKw());
+        dialect.setLocalDateTime(ps, 9, r.getLastTs());
+    }
+}
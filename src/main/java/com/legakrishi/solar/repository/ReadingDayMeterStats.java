@@ -0,0 +1,33 @@
+package com.legakrishi.solar.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Scalars of one (site, meter, day) of reading rows, computed by the database
+ * ({@link ReadingRepository#dayMeterStats}, {@link ReadingRepository#dayMeterStatsByDay});
+ * input to AggregationService. {@code day} is null for the single-day query.
+ */
+public record ReadingDayMeterStats(
+        LocalDate day,
+        Long rows,
+        LocalDateTime lastTs,
+        BigDecimal maxDailyAc, BigDecimal maxTotalAc, BigDecimal minTotalAc,
+        BigDecimal maxDailyExport, BigDecimal maxTotalExport, BigDecimal minTotalExport,
+        BigDecimal maxDailyImport, BigDecimal maxTotalImport, BigDecimal minTotalImport,
+        BigDecimal maxDailyDc, BigDecimal maxTotalDc, BigDecimal minTotalDc,
+        BigDecimal maxTotalAcPowerKw,
+        Double maxPowerKw) {
+
+    public ReadingDayMeterStats(Long rows, LocalDateTime lastTs,
+                                BigDecimal maxDailyAc, BigDecimal maxTotalAc, BigDecimal minTotalAc,
+                                BigDecimal maxDailyExport, BigDecimal maxTotalExport, BigDecimal minTotalExport,
+                                BigDecimal maxDailyImport, BigDecimal maxTotalImport, BigDecimal minTotalImport,
+                                BigDecimal maxDailyDc, BigDecimal maxTotalDc, BigDecimal minTotalDc,
+                                BigDecimal maxTotalAcPowerKw, Double maxPowerKw) {
+        this(null, rows, lastTs, maxDailyAc, maxTotalAc, minTotalAc, maxDailyExport, maxTotalExport, minTotalExport,
+                maxDailyImport, maxTotalImport, minTotalImport, maxDailyDc, maxTotalDc, minTotalDc,
+                maxTotalAcPowerKw, maxPowerKw);
+    }
+}
@@ -8,7 +8,7 @@ import java.util.Optional;
 import java.util.List;
 import java.time.LocalDate;
 
-public interface ReadingDayRepository extends JpaRepository<ReadingDay, Long> {
+public interface ReadingDayRepository extends JpaRepository<ReadingDay, Long>, ReadingDayRepositoryCustom {
     Optional<ReadingDay> findBySiteIdAndDay(Long siteId, LocalDate day);
     List<ReadingDay> findBySiteIdAndDayBetween(Long siteId, LocalDate start, LocalDate end);
 }
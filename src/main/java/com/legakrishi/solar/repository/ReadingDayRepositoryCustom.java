@@ -0,0 +1,14 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.ReadingDay;
+
+import java.util.List;
+
+public interface ReadingDayRepositoryCustom {
+
+    /** Insert or overwrite the row for (site, day) in one statement; safe against concurrent writers. */
+    void upsert(ReadingDay row);
+
+    /** {@link #upsert} for many rows as one JDBC batch. */
+    void upsertAll(List<ReadingDay> rows);
+}
@@ -0,0 +1,75 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.ReadingDay;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/** Native upsert on uniq_site_day, same per-vendor forms as {@link ReadingDayMeterRepositoryImpl}. */
+public class ReadingDayRepositoryImpl implements ReadingDayRepositoryCustom {
+
+    private final JdbcTemplate jdbc;
+    private final DbDialect dialect;
+    private volatile String upsertSql;
+
+    public ReadingDayRepositoryImpl(JdbcTemplate jdbc, DbDialect dialect) {
+        this.jdbc = jdbc;
+        this.dialect = dialect;
+    }
+
+    @Override
+    public void upsert(ReadingDay row) {
+        upsertAll(List.of(row));
+    }
+
+    @Override
+    public void upsertAll(List<ReadingDay> rows) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate(upsertSql(), rows, 500, this::bind);
+    }
+
+    private String upsertSql() {
+        String sql = upsertSql;
+        if (sql == null) {
+            String day = dialect.quote("day");
+            String columns = "site_id, " + day + ", energy_today_kwh, max_power_kw, last_ts";
+            sql = switch (dialect.vendor()) {
+                case POSTGRES -> "insert into reading_day (" + columns + ") values (?, ?, ?, ?, ?)"
+                        + " on conflict (site_id, " + day + ") do update set"
+                        + " energy_today_kwh = excluded.energy_today_kwh,"
+                        + " max_power_kw = excluded.max_power_kw,"
+                        + " last_ts = excluded.last_ts";
+                case MYSQL -> "insert into reading_day (" + columns + ") values (?, ?, ?, ?, ?)"
+                        + " on duplicate key update"
+                        + " energy_today_kwh = values(energy_today_kwh),"
+                        + " max_power_kw = values(max_power_kw),"
+                        + " last_ts = values(last_ts)";
+                case H2, OTHER -> """
+                        merge into reading_day t
+                        using (select cast(? as bigint) site_id, cast(? as date) d,
+                                      cast(? as double precision) energy_today_kwh,
+                                      cast(? as double precision) max_power_kw,
+                                      cast(? as timestamp(6)) last_ts) s
+                           on t.site_id = s.site_id and t.%1$s = s.d
+                        when matched then update set
+                             energy_today_kwh = s.energy_today_kwh, max_power_kw = s.max_power_kw, last_ts = s.last_ts
+                        when not matched then insert (%2$s)
+                        values (s.site_id, s.d, s.energy_today_kwh, s.max_power_kw, s.last_ts)
+                        """.formatted(day, columns);
+            };
+            upsertSql = sql;
+        }
+        return sql;
+    }
+
+    private void bind(PreparedStatement ps, ReadingDay r) throws SQLException {
+        ps.setLong(1, r.getSite().getId());
+        dialect.setLocalDate(ps, 2, r.getDay());
+        ps.setObject(3, r.getEnergyTodayKwh(), Types.DOUBLE);
+        ps.setObject(4, r.getMaxPowerKw(), Types.DOUBLE);
+        dialect.setLocalDateTime(ps, 5, r.getLastTs());
+    }
+}
@@ -0,0 +1,16 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.ReadingMonthMeter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReadingMonthMeterRepository extends JpaRepository<ReadingMonthMeter, Long> {
+    Optional<ReadingMonthMeter> findBySiteIdAndMeterKindAndPeriodStart(Long siteId, MeterKind meter, LocalDate periodStart);
+
+    List<ReadingMonthMeter> findBySiteIdAndMeterKindAndPeriodStartBetweenOrderByPeriodStartAsc(
+            Long siteId, MeterKind meter, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,166 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.ReadingDayMeter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Keeps reading_month_meter and reading_year_meter in step with reading_day_meter. Every upsert of day
+ * rows re-derives just the touched months (at most 31 indexed day rows each) and then their years
+ * (at most 12 month rows) with one insert-select upsert per period, in the caller's transaction.
+ * Re-deriving instead of adding deltas keeps the totals right however often a day is rewritten.
+ */
+@Component
+public class ReadingPeriodRollups {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadingPeriodRollups.class);
+
+    private static final String VALUE_COLUMNS =
+            "day_count, ac_active_energy_kwh, ac_export_energy_kwh, ac_import_energy_kwh, dc_energy_kwh, max_ac_power_kw, last_ts";
+
+    private record Period(Long siteId, MeterKind meter, LocalDate start) {}
+
+    private final JdbcTemplate jdbc;
+    private final DbDialect dialect;
+    private volatile String monthSql, yearSql;
+
+    public ReadingPeriodRollups(JdbcTemplate jdbc, DbDialect dialect) {
+        this.jdbc = jdbc;
+        this.dialect = dialect;
+    }
+
+    /** Re-derive the months and years holding these day rows. */
+    public void refresh(Collection<ReadingDayMeter> days) {
+        Set<Period> months = new LinkedHashSet<>();
+        for (ReadingDayMeter d : days) {
+            months.add(new Period(d.getSite().getId(), d.getMeterKind(), d.getDay().withDayOfMonth(1)));
+        }
+        Set<Period> years = new LinkedHashSet<>();
+        for (Period m : months) {
+            refresh(monthSql(), m, m.start().plusMonths(1));
+            years.add(new Period(m.siteId(), m.meter(), m.start().withDayOfYear(1)));
+        }
+        for (Period y : years) {
+            refresh(yearSql(), y, y.start().plusYears(1));
+        }
+    }
+
+    /** First start after the tables were added: derive every month / year from the existing day rows. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            Long months = jdbc.queryForObject("select count(*) from reading_month_meter", Long.class);
+            if (months != null && months > 0) return;
+
+            Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            String day = dialect.quote("day");
+            List<Object[]> ranges = jdbc.query(
+                    "select site_id, meter_kind, min(" + day + "), max(" + day + ") from reading_day_meter group by site_id, meter_kind",
+                    (rs, i) -> new Object[]{rs.getLong(1), MeterKind.valueOf(rs.getString(2)),
+                            rs.getDate(3, utc).toLocalDate(), rs.getDate(4, utc).toLocalDate()});
+            int n = 0;
+            for (Object[] r : ranges) {
+                Long siteId = (Long) r[0];
+                MeterKind meter = (MeterKind) r[1];
+                LocalDate last = (LocalDate) r[3];
+                for (LocalDate m = ((LocalDate) r[2]).withDayOfMonth(1); !m.isAfter(last); m = m.plusMonths(1)) {
+                    refresh(monthSql(), new Period(siteId, meter, m), m.plusMonths(1));
+                    n++;
+                }
+                for (int y = ((LocalDate) r[2]).getYear(); y <= last.getYear(); y++) {
+                    LocalDate start = LocalDate.of(y, 1, 1);
+                    refresh(yearSql(), new Period(siteId, meter, start), start.plusYears(1));
+                }
+            }
+            if (n > 0) log.info("Backfilled {} month rollups from reading_day_meter", n);
+        } catch (Exception e) {
+            log.warn("Month / year rollup backfill failed: {}", e.getMessage());
+        }
+    }
+
+    private void refresh(String sql, Period p, LocalDate end) {
+        jdbc.update(sql, ps -> {
+            dialect.setLocalDate(ps, 1, p.start());
+            ps.setLong(2, p.siteId());
+            ps.setString(3, p.meter().name());
+            dialect.setLocalDate(ps, 4, p.start());
+            dialect.setLocalDate(ps, 5, end);
+        });
+    }
+
+    private String monthSql() {
+        String sql = monthSql;
+        if (sql == null) {
+            sql = upsertSql("reading_month_meter", "reading_day_meter", dialect.quote("day"), "count(*)");
+            monthSql = sql;
+        }
+        return sql;
+    }
+
+    private String yearSql() {
+        String sql = yearSql;
+        if (sql == null) {
+            sql = upsertSql("reading_year_meter", "reading_month_meter", "period_start", "sum(day_count)");
+            yearSql = sql;
+        }
+        return sql;
+    }
+
+    // params: period start, site, meter, source range [from, to)
+    private String upsertSql(String target, String source, String dateColumn, String dayCount) {
+        String select = "select site_id, meter_kind, cast(? as date) period_start, " + dayCount + " day_count,"
+                + " sum(ac_active_energy_kwh) ac_active_energy_kwh, sum(ac_export_energy_kwh) ac_export_energy_kwh,"
+                + " sum(ac_import_energy_kwh) ac_import_energy_kwh, sum(dc_energy_kwh) dc_energy_kwh,"
+                + " max(max_ac_power_kw) max_ac_power_kw, max(last_ts) last_ts"
+                + " from " + source
+                + " where site_id = ? and meter_kind = ? and " + dateColumn + " >= ? and " + dateColumn + " < ?"
+                + " group by site_id, meter_kind";
+        String columns = "site_id, meter_kind, period_start, " + VALUE_COLUMNS;
+        return switch (dialect.vendor()) {
+            case POSTGRES -> "insert into " + target + " (" + columns + ") " + select
+                    + " on conflict (site_id, meter_kind, period_start) do update set"
+                    + " day_count = excluded.day_count,"
+                    + " ac_active_energy_kwh = excluded.ac_active_energy_kwh,"
+                    + " ac_export_energy_kwh = excluded.ac_export_energy_kwh,"
+                    + " ac_import_energy_kwh = excluded.ac_import_energy_kwh,"
+                    + " dc_energy_kwh = excluded.dc_energy_kwh,"
+                    + " max_ac_power_kw = excluded.max_ac_power_kw,"
+                    + " last_ts = excluded.last_ts";
+            case MYSQL -> "insert into " + target + " (" + columns + ") " + select
+                    + " on duplicate key update"
+                    + " day_count = values(day_count),"
+                    + " ac_active_energy_kwh = values(ac_active_energy_kwh),"
+                    + " ac_export_energy_kwh = values(ac_export_energy_kwh),"
+                    + " ac_import_energy_kwh = values(ac_import_energy_kwh),"
+                    + " dc_energy_kwh = values(dc_energy_kwh),"
+                    + " max_ac_power_kw = values(max_ac_power_kw),"
+                    + " last_ts = values(last_ts)";
+            case H2, OTHER -> """
+                    merge into %1$s t
+                    using (%2$s) s
+                       on t.site_id = s.site_id and t.meter_kind = s.meter_kind and t.period_start = s.period_start
+                    when matched then update set
+                         day_count = s.day_count, ac_active_energy_kwh = s.ac_active_energy_kwh,
+                         ac_export_energy_kwh = s.ac_export_energy_kwh, ac_import_energy_kwh = s.ac_import_energy_kwh,
+                         dc_energy_kwh = s.dc_energy_kwh, max_ac_power_kw = s.max_ac_power_kw, last_ts = s.last_ts
+                    when not matched then insert (%3$s)
+                    values (s.site_id, s.meter_kind, s.period_start, s.day_count, s.ac_active_energy_kwh,
+                            s.ac_export_energy_kwh, s.ac_import_energy_kwh, s.dc_energy_kwh, s.max_ac_power_kw, s.last_ts)
+                    """.formatted(target, select, columns);
+        };
+    }
+}
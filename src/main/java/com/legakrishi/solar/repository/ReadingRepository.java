@@ -37,4 +37,40 @@ public interface ReadingRepository extends JpaRepository<Reading, Long> {
     // For legacy rows where meter_kind IS NULL (treated as MAIN)
     List<Reading> findBySiteIdAndTsBetweenAndMeterKindIsNullOrderByTsAsc(
             Long siteId, LocalDateTime start, LocalDateTime end);
+
+    // One row of scalars for a meter's day; legacy rows with NULL meter_kind count as MAIN when includeLegacy
+    @Query("""
+           select new com.legakrishi.solar.repository.ReadingDayMeterStats(
+                  count(r), max(r.ts),
+                  max(r.dailyAcActiveEnergyKwh), max(r.totalAcActiveEnergyKwh), min(r.totalAcActiveEnergyKwh),
+                  max(r.dailyAcActiveExportEnergyKwh), max(r.totalAcActiveExportEnergyKwh), min(r.totalAcActiveExportEnergyKwh),
+                  max(r.dailyAcActiveImportEnergyKwh), max(r.totalAcActiveImportEnergyKwh), min(r.totalAcActiveImportEnergyKwh),
+                  max(r.dailyDcEnergyKwh), max(r.totalDcEnergyKwh), min(r.totalDcEnergyKwh),
+                  max(r.totalAcActivePowerKw), max(r.powerKw))
+           from Reading r
+           where r.site.id = :siteId and r.ts between :start and :end
+             and (r.meterKind = :meterKind or (:includeLegacy = true and r.meterKind is null))
+           """)
+    ReadingDayMeterStats dayMeterStats(Long siteId, MeterKind meterKind, boolean includeLegacy,
+                                       LocalDateTime start, LocalDateTime end);
+
+    // Same scalars for a range of days, one row per IST day that has readings (ts is IST wall clock)
+    @Query("""
+           select new com.legakrishi.solar.repository.ReadingDayMeterStats(
+                  cast(r.ts as LocalDate), count(r), max(r.ts),
+                  max(r.dailyAcActiveEnergyKwh), max(r.totalAcActiveEnergyKwh), min(r.totalAcActiveEnergyKwh),
+                  max(r.dailyAcActiveExportEnergyKwh), max(r.totalAcActiveExportEnergyKwh), min(r.totalAcActiveExportEnergyKwh),
+                  max(r.dailyAcActiveImportEnergyKwh), max(r.totalAcActiveImportEnergyKwh), min(r.totalAcActiveImportEnergyKwh),
+                  max(r.dailyDcEnergyKwh), max(r.totalDcEnergyKwh), min(r.totalDcEnergyKwh),
+                  max(r.totalAcActivePowerKw), max(r.powerKw))
+           from Reading r
+           where r.site.id = :siteId and r.ts >= :start and r.ts < :end
+             and (r.meterKind = :meterKind or (:includeLegacy = true and r.meterKind is null))
+           group by cast(r.ts as LocalDate)
+           """)
+    List<ReadingDayMeterStats> dayMeterStatsByDay(Long siteId, MeterKind meterKind, boolean includeLegacy,
+                                                  LocalDateTime start, LocalDateTime end);
+
+    @Query("select max(r.powerKw) from Reading r where r.site.id = :siteId and r.ts between :start and :end")
+    Double maxPowerKw(Long siteId, LocalDateTime start, LocalDateTime end);
 }
@@ -0,0 +1,16 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.ReadingYearMeter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReadingYearMeterRepository extends JpaRepository<ReadingYearMeter, Long> {
+    Optional<ReadingYearMeter> findBySiteIdAndMeterKindAndPeriodStart(Long siteId, MeterKind meter, LocalDate periodStart);
+
+    List<ReadingYearMeter> findBySiteIdAndMeterKindAndPeriodStartBetweenOrderByPeriodStartAsc(
+            Long siteId, MeterKind meter, LocalDate from, LocalDate to);
+}
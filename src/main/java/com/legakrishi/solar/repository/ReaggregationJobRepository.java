@@ -0,0 +1,13 @@
+package com.legakrishi.solar.repository;
+
+import com.legakrishi.solar.model.ReaggregationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ReaggregationJobRepository extends JpaRepository<ReaggregationJob, Long> {
+
+    List<ReaggregationJob> findByStatusOrderById(String status);
+
+    List<ReaggregationJob> findTop20ByOrderByIdDesc();
+}
@@ -2,7 +2,14 @@ package com.legakrishi.solar.repository;
 
 import com.legakrishi.solar.model.Site;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 public interface SiteRepository extends JpaRepository<Site, Long> {
+
+    // status is set to ACTIVE on insert; rows from before that column count as active
+    @Query("select s.id from Site s where s.status = 'ACTIVE' or s.status is null order by s.id")
+    List<Long> findActiveIds();
 }
@@ -1,34 +1,32 @@
 package com.legakrishi.solar.rms;
 
+import com.legakrishi.solar.iot.IngestRateLimiter;
+import com.legakrishi.solar.iot.IngestThrottledException;
+import com.legakrishi.solar.iot.TelemetryIngestCore;
 import com.legakrishi.solar.model.EnergySample;
 import com.legakrishi.solar.model.MeterKind;
-import com.legakrishi.solar.repository.EnergySampleRepository;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.EnumMap;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/rms/ingest")
 public class RmsIngestController {
 
-    private final EnergySampleRepository repo;
-    private final SimpMessagingTemplate broker;
+    private final TelemetryIngestCore core;
+    private final IngestRateLimiter limiter;
 
-    private static final DateTimeFormatter HHMM = DateTimeFormatter.ofPattern("HH:mm");
-
-    public RmsIngestController(EnergySampleRepository repo, SimpMessagingTemplate broker) {
-        this.repo = repo;
-        this.broker = broker;
+    public RmsIngestController(TelemetryIngestCore core, IngestRateLimiter limiter) {
+        this.core = core;
+        this.limiter = limiter;
     }
 
     // Simple DTO for RMS payload
@@ -45,8 +43,111 @@ public class RmsIngestController {
 
     @PostMapping("/energy")
     public ResponseEntity<?> ingest(@RequestBody Payload p) {
+        final EnergySample s;
+        try {
+            s = toSample(p);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+
+        try {
+            limiter.acquire(IngestRateLimiter.Scope.SITE, s.getSiteId(), 1);
+        } catch (IngestThrottledException te) {
+            return tooManyRequests(te);
+        }
+
+        // Idempotent insert; the tick (or, for old samples, backfill tracking) follows the commit.
+        // With the WAL on, this is the fsynced append: a repeat of a recently queued sample is still a 409,
+        // one the recent-key cache no longer holds (restart, eviction) is a 202 and skipped when applied.
+        final TelemetryIngestCore.Result result;
+        try {
+            result = core.submitSamples(List.of(s), false);
+        } catch (IngestThrottledException te) {
+            return tooManyRequests(te);
+        }
+        if (result.failedChunks() > 0) {
+            return ResponseEntity.internalServerError().body("Failed: " + result.error());
+        }
+        if (result.accepted() == 0) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("duplicate sample");
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Many samples across meters and sites in one call: validated, inserted together (JDBC batch,
+     * duplicates skipped by the unique key), then one tick per affected site built from the newest
+     * value per meter in the batch. With {@code X-Backfill: true} no ticks are sent and the touched
+     * (site, meter, day) rows are re-aggregated once the backfill has gone quiet.
+     */
+    @PostMapping("/energy/batch")
+    public ResponseEntity<?> ingestBatch(@RequestBody List<Payload> payload,
+                                         @RequestHeader(value = "X-Backfill", defaultValue = "false") boolean backfillMode) {
+        return write(payload, backfillMode);
+    }
+
+    /** Gateway replay after an outage; same as /energy/batch with X-Backfill: true. */
+    @PostMapping("/energy/backfill")
+    public ResponseEntity<?> ingestBackfill(@RequestBody List<Payload> payload) {
+        return write(payload, true);
+    }
+
+    private ResponseEntity<?> write(List<Payload> payload, boolean backfillMode) {
+        if (payload == null || payload.isEmpty()) return ResponseEntity.badRequest().body("empty payload");
+
+        List<EnergySample> valid = new ArrayList<>(payload.size());
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < payload.size(); i++) {
+            try {
+                valid.add(toSample(payload.get(i)));
+            } catch (IllegalArgumentException ex) {
+                errors.add("[" + i + "] " + ex.getMessage());
+            }
+        }
+
+        // admission per site before any write: one token per chunk of rows the site contributes
+        Map<Long, Integer> rowsPerSite = new HashMap<>();
+        for (EnergySample s : valid) rowsPerSite.merge(s.getSiteId(), 1, Integer::sum);
+        int size = core.chunkSize();
+        try {
+            rowsPerSite.forEach((siteId, rows) ->
+                    limiter.acquire(IngestRateLimiter.Scope.SITE, siteId, (rows + size - 1) / size));
+        } catch (IngestThrottledException te) {
+            return tooManyRequests(te);
+        }
+
+        final TelemetryIngestCore.Result result;
+        try {
+            result = core.submitSamples(valid, backfillMode);
+        } catch (IngestThrottledException te) {
+            return tooManyRequests(te);
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("received", payload.size());
+        out.put("accepted", result.accepted());
+        out.put("duplicates", result.duplicates());
+        out.put("rejected", errors.size() + result.rejected());
+        out.put("errors", errors);
+        if (result.failedChunks() > 0) {
+            // some chunks were not stored (rows before them are): the gateway should resend the batch
+            out.put("failedChunks", result.failedChunks());
+            out.put("error", result.error());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(out);
+        }
+        return ResponseEntity.accepted().body(out);
+    }
+
+    private static ResponseEntity<String> tooManyRequests(IngestThrottledException te) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(te.getRetryAfterSeconds()))
+                .body(te.getMessage());
+    }
+
+    /** Validate and convert; IllegalArgumentException carries the 400 message. */
+    private static EnergySample toSample(Payload p) {
         if (p == null || p.siteId == null || p.meterKind == null || p.sampleTime == null) {
-            return ResponseEntity.badRequest().body("siteId, meterKind, sampleTime required");
+            throw new IllegalArgumentException("siteId, meterKind, sampleTime required");
         }
 
         // Parse meter kind
@@ -54,7 +155,7 @@ public class RmsIngestController {
         try {
             mk = MeterKind.valueOf(p.meterKind.toUpperCase());
         } catch (IllegalArgumentException ex) {
-            return ResponseEntity.badRequest().body("unknown meterKind: " + p.meterKind);
+            throw new IllegalArgumentException("unknown meterKind: " + p.meterKind);
         }
 
         // Parse timestamp (UTC ISO-8601)
@@ -62,17 +163,9 @@ public class RmsIngestController {
         try {
             ts = Instant.parse(p.sampleTime);
         } catch (Exception ex) {
-            return ResponseEntity.badRequest().body("invalid sampleTime: " + p.sampleTime);
-        }
-
-        // Idempotent insert (skip if exists)
-        if (repo.existsBySiteIdAndSampleTimeAndMeterKind(p.siteId, ts, mk)) {
-            // Optional: still publish a tick so UI stays fresh — uncomment if desired
-            // publishTickAtOrBefore(p.siteId, ts);
-            return ResponseEntity.status(HttpStatus.CONFLICT).body("duplicate sample");
+            throw new IllegalArgumentException("invalid sampleTime: " + p.sampleTime);
         }
 
-        // Persist the sample
         EnergySample s = new EnergySample();
         s.setSiteId(p.siteId);
         s.setMeterKind(mk);
@@ -82,37 +175,6 @@ public class RmsIngestController {
         s.setDailyAcExportKwh(p.dailyAcExportKwh);
         s.setDailyAcImportKwh(p.dailyAcImportKwh);
         s.setDailyDcEnergyKwh(p.dailyDcEnergyKwh);
-        repo.save(s);
-
-        // Publish a consolidated tick at this time (latest <= ts per meter)
-        publishTickAtOrBefore(p.siteId, ts);
-
-        return ResponseEntity.accepted().build();
-    }
-
-    /**
-     * Build and publish a tick with the latest (<= ts) power value for each meter.
-     * Keys in the outgoing map are STRING names ("MAIN", "STANDBY", "CHECK") for the UI.
-     */
-    private void publishTickAtOrBefore(Long siteId, Instant ts) {
-        // Collect latest value per meter using enum-keyed map (type-safe)
-        Map<MeterKind, Double> perMeterEnum = new EnumMap<>(MeterKind.class);
-        for (MeterKind kind : MeterKind.values()) {
-            Optional<EnergySample> opt = repo.findTopBySiteIdAndMeterKindAndSampleTimeLessThanEqualOrderBySampleTimeDesc(
-                    siteId, kind, ts);
-            Double v = opt.map(EnergySample::getTotalAcPowerKw).orElse(0.0);
-            perMeterEnum.put(kind, v == null ? 0.0 : v);
-        }
-
-        // Convert to String-keyed map for payload (what the UI expects)
-        Map<String, Double> perMeterOut = new LinkedHashMap<>();
-        perMeterEnum.forEach((k, v) -> perMeterOut.put(k.name(), v));
-
-        // Label = local HH:mm for the tick time
-        String label = ZonedDateTime.ofInstant(ts, ZoneId.systemDefault()).format(HHMM);
-
-        // Publish
-        broker.convertAndSend("/topic/intraday/" + siteId,
-                new com.legakrishi.solar.ws.IntradayTick(label, perMeterOut));
+        return s;
     }
 }
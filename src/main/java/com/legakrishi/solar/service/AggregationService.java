@@ -8,13 +8,17 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 
 import com.legakrishi.solar.repository.ReadingDayMeterRepository;
+import com.legakrishi.solar.repository.ReadingDayMeterStats;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 
 @Service
 public class AggregationService {
@@ -31,11 +35,14 @@ public class AggregationService {
 
     @Transactional
     public ReadingDay aggregateTodayForSite(Long siteId) {
-        var tz = ZoneId.of("Asia/Kolkata");
-        var today = LocalDate.now(tz);
+        return aggregateDayForSite(siteId, LocalDate.now(ZoneId.of("Asia/Kolkata")));
+    }
 
-        // get all today's readings (ordered asc by repo), then compute
-        List<Reading> list = readingRepo.findToday(siteId);
+    /** Full rescan of one IST day (ts is stored as IST wall clock); the nightly repair of the incremental rollup. */
+    @Transactional
+    public ReadingDay aggregateDayForSite(Long siteId, LocalDate today) {
+        // get all of the day's readings (ordered asc by repo), then compute
+        List<Reading> list = readingRepo.findRange(siteId, today.atStartOfDay(), today.plusDays(1).atStartOfDay().minusSeconds(1));
         double energyToday = 0.0;
         double maxPower = 0.0;
 
@@ -52,24 +59,18 @@ public class AggregationService {
                     .orElse(0.0);
         }
 
-        Optional<ReadingDay> existing = dayRepo.findBySiteIdAndDay(siteId, today);
-        ReadingDay rd = existing.orElseGet(() ->
-                ReadingDay.builder()
-                        .site(list.isEmpty() ? null : list.get(0).getSite())
-                        .day(today)
-                        .build()
-        );
-
-        // if site was null (no readings today), try to set site from latest reading overall (optional)
-        if (rd.getSite() == null && !list.isEmpty()) {
-            rd.setSite(list.get(0).getSite());
-        }
-
-        rd.setEnergyTodayKwh(energyToday);
-        rd.setMaxPowerKw(maxPower);
-        rd.setLastTs(list.isEmpty() ? null : list.get(list.size() - 1).getTs());
-
-        return dayRepo.save(rd);
+        Site site = new Site(); site.setId(siteId);
+        ReadingDay rd = ReadingDay.builder()
+                .site(site)
+                .day(today)
+                .energyTodayKwh(energyToday)
+                .maxPowerKw(maxPower)
+                .lastTs(list.isEmpty() ? null : list.get(list.size() - 1).getTs())
+                .build();
+
+        // one-statement upsert: concurrent aggregations of the same day cannot collide on uniq_site_day
+        dayRepo.upsert(rd);
+        return rd;
     }
 
     @Transactional
@@ -78,128 +79,89 @@ public class AggregationService {
         var start = day.atStartOfDay(IST).toLocalDateTime();
         var end   = day.plusDays(1).atStartOfDay(IST).toLocalDateTime();
 
-        // Fetch meter-specific rows
-        List<Reading> list = readingRepo
-                .findBySiteIdAndMeterKindAndTsBetweenOrderByTsAsc(siteId, meter, start, end);
-
-        // For legacy MAIN where meter_kind is NULL, merge them in
-        if (meter == MeterKind.MAIN) {
-            List<Reading> legacy = readingRepo
-                    .findBySiteIdAndTsBetweenAndMeterKindIsNullOrderByTsAsc(siteId, start, end);
-            if (!legacy.isEmpty()) {
-                var merged = new ArrayList<Reading>(list.size() + legacy.size());
-                merged.addAll(list);
-                merged.addAll(legacy);
-                merged.sort(Comparator.comparing(Reading::getTs));
-                list = merged;
-            }
+        // One grouped query: the database returns the scalars, no Reading entities are loaded
+        ReadingDayMeterStats st = readingRepo.dayMeterStats(siteId, meter, meter == MeterKind.MAIN, start, end);
+        if (isEmpty(st)) {
+            // no readings (any more, e.g. past raw retention): an existing row is the only record of the day
+            var existing = rdmRepo.findBySiteIdAndMeterKindAndDay(siteId, meter, day);
+            if (existing.isPresent()) return existing.get();
         }
 
-        // Nothing to aggregate
-        if (list.isEmpty()) {
-            // Upsert an empty row with zeros to keep continuity
-            ReadingDayMeter rdm = rdmRepo.findBySiteIdAndMeterKindAndDay(siteId, meter, day)
-                    .orElse(ReadingDayMeter.builder()
-                            .site(new Site()) // will be overwritten below
-                            .meterKind(meter)
-                            .day(day)
-                            .build());
-
-            // attach site without loading heavy graph
-            Site s = new Site(); s.setId(siteId);
-            rdm.setSite(s);
-            rdm.setAcActiveEnergyKwh(BigDecimal.ZERO);
-            rdm.setAcExportEnergyKwh(BigDecimal.ZERO);
-            rdm.setAcImportEnergyKwh(BigDecimal.ZERO);
-            rdm.setDcEnergyKwh(BigDecimal.ZERO);
-            rdm.setMaxAcPowerKw(BigDecimal.ZERO);
-            rdm.setLastTs(null);
-            return rdmRepo.save(rdm);
-        }
+        ReadingDayMeter rdm = toDayMeter(siteId, meter, day, st);
+        rdmRepo.upsert(rdm);
+        return rdm;
+    }
 
-        // Helper lambdas to pick BigDecimal max/min ignoring nulls
-        var maxBD = (java.util.function.Function<java.util.stream.Stream<BigDecimal>, BigDecimal>)
-                stream -> stream.filter(java.util.Objects::nonNull).max(BigDecimal::compareTo).orElse(null);
-        var minBD = (java.util.function.Function<java.util.stream.Stream<BigDecimal>, BigDecimal>)
-                stream -> stream.filter(java.util.Objects::nonNull).min(BigDecimal::compareTo).orElse(null);
-
-        // Prefer new fields; fallback to cumulative deltas; fallback to legacy powerKw
-        BigDecimal dailyAc = null, dailyExp = null, dailyImp = null, dailyDc = null, maxPow = null;
-
-        // 1) AC Active Energy (daily)
-        // prefer max(dailyAcActiveEnergyKwh)
-        dailyAc = maxBD.apply(list.stream().map(Reading::getDailyAcActiveEnergyKwh));
-        if (dailyAc == null) {
-            // fallback: delta of cumulative totalAcActiveEnergyKwh
-            BigDecimal maxTot = maxBD.apply(list.stream().map(Reading::getTotalAcActiveEnergyKwh));
-            BigDecimal minTot = minBD.apply(list.stream().map(Reading::getTotalAcActiveEnergyKwh));
-            if (maxTot != null && minTot != null) dailyAc = maxTot.subtract(minTot);
+    /**
+     * {@link #aggregateDayPerMeter} for every day in [from, to]: one grouped query and one batched
+     * upsert instead of a query and a write per day. Days without readings keep an existing row.
+     * Returns the number of day rows written.
+     */
+    @Transactional
+    public int aggregateDaysPerMeter(Long siteId, MeterKind meter, LocalDate from, LocalDate to) {
+        var start = from.atStartOfDay();
+        var end   = to.plusDays(1).atStartOfDay();
+        Map<LocalDate, ReadingDayMeterStats> byDay = new HashMap<>();
+        for (ReadingDayMeterStats st : readingRepo.dayMeterStatsByDay(siteId, meter, meter == MeterKind.MAIN, start, end)) {
+            byDay.put(st.day(), st);
         }
-        if (dailyAc == null) {
-            // final fallback: approximate from legacy energyTodayKwh if you used it elsewhere (optional)
-            // leave null -> will set ZERO below
+        Set<LocalDate> existing = new HashSet<>();
+        for (ReadingDayMeter r : rdmRepo.findBySiteIdAndMeterKindAndDayBetween(siteId, meter, from, to)) {
+            existing.add(r.getDay());
         }
-
-        // 2) AC Export Energy (daily)
-        dailyExp = maxBD.apply(list.stream().map(Reading::getDailyAcActiveExportEnergyKwh));
-        if (dailyExp == null) {
-            BigDecimal maxTot = maxBD.apply(list.stream().map(Reading::getTotalAcActiveExportEnergyKwh));
-            BigDecimal minTot = minBD.apply(list.stream().map(Reading::getTotalAcActiveExportEnergyKwh));
-            if (maxTot != null && minTot != null) dailyExp = maxTot.subtract(minTot);
+        List<ReadingDayMeter> rows = new ArrayList<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            ReadingDayMeterStats st = byDay.get(d);
+            if (isEmpty(st) && existing.contains(d)) continue;
+            rows.add(toDayMeter(siteId, meter, d, st));
         }
+        if (!rows.isEmpty()) rdmRepo.upsertAll(rows);
+        return rows.size();
+    }
 
-        // 3) AC Import Energy (daily)
-        dailyImp = maxBD.apply(list.stream().map(Reading::getDailyAcActiveImportEnergyKwh));
-        if (dailyImp == null) {
-            BigDecimal maxTot = maxBD.apply(list.stream().map(Reading::getTotalAcActiveImportEnergyKwh));
-            BigDecimal minTot = minBD.apply(list.stream().map(Reading::getTotalAcActiveImportEnergyKwh));
-            if (maxTot != null && minTot != null) dailyImp = maxTot.subtract(minTot);
-        }
+    private static boolean isEmpty(ReadingDayMeterStats st) {
+        return st == null || st.rows() == null || st.rows() == 0;
+    }
 
-        // 4) DC Energy (daily)
-        dailyDc = maxBD.apply(list.stream().map(Reading::getDailyDcEnergyKwh));
-        if (dailyDc == null) {
-            BigDecimal maxTot = maxBD.apply(list.stream().map(Reading::getTotalDcEnergyKwh));
-            BigDecimal minTot = minBD.apply(list.stream().map(Reading::getTotalDcEnergyKwh));
-            if (maxTot != null && minTot != null) dailyDc = maxTot.subtract(minTot);
-        }
+    // Zeros when the day has no readings, to keep continuity
+    static ReadingDayMeter toDayMeter(Long siteId, MeterKind meter, LocalDate day, ReadingDayMeterStats st) {
+        // attach site without loading heavy graph
+        Site s = new Site(); s.setId(siteId);
+        ReadingDayMeter rdm = ReadingDayMeter.builder()
+                .site(s)
+                .meterKind(meter)
+                .day(day)
+                .acActiveEnergyKwh(BigDecimal.ZERO)
+                .acExportEnergyKwh(BigDecimal.ZERO)
+                .acImportEnergyKwh(BigDecimal.ZERO)
+                .dcEnergyKwh(BigDecimal.ZERO)
+                .maxAcPowerKw(BigDecimal.ZERO)
+                .build();
+        if (st == null || st.rows() == null || st.rows() == 0) return rdm;
+
+        // Prefer daily counters; fallback to cumulative deltas; fallback to legacy powerKw
+        BigDecimal dailyAc  = dailyOrDelta(st.maxDailyAc(), st.maxTotalAc(), st.minTotalAc());
+        BigDecimal dailyExp = dailyOrDelta(st.maxDailyExport(), st.maxTotalExport(), st.minTotalExport());
+        BigDecimal dailyImp = dailyOrDelta(st.maxDailyImport(), st.maxTotalImport(), st.minTotalImport());
+        BigDecimal dailyDc  = dailyOrDelta(st.maxDailyDc(), st.maxTotalDc(), st.minTotalDc());
 
         // Max AC Power (kW): prefer totalAcActivePowerKw; fallback to legacy powerKw
-        BigDecimal maxNew = maxBD.apply(list.stream().map(Reading::getTotalAcActivePowerKw));
-        if (maxNew != null) {
-            maxPow = maxNew;
-        } else {
-            // legacy double -> convert
-            Double maxLegacy = list.stream().map(Reading::getPowerKw).filter(java.util.Objects::nonNull)
-                    .max(Double::compareTo).orElse(null);
-            if (maxLegacy != null) maxPow = BigDecimal.valueOf(maxLegacy);
-        }
-
-        // Default zeros if still null
-        if (dailyAc == null) dailyAc = BigDecimal.ZERO;
-        if (dailyExp == null) dailyExp = BigDecimal.ZERO;
-        if (dailyImp == null) dailyImp = BigDecimal.ZERO;
-        if (dailyDc == null) dailyDc = BigDecimal.ZERO;
-        if (maxPow == null) maxPow = BigDecimal.ZERO;
-
-        // Upsert
-        ReadingDayMeter rdm = rdmRepo.findBySiteIdAndMeterKindAndDay(siteId, meter, day)
-                .orElse(ReadingDayMeter.builder()
-                        .site(new Site())
-                        .meterKind(meter)
-                        .day(day)
-                        .build());
-
-        Site s = new Site(); s.setId(siteId);
-        rdm.setSite(s);
-        rdm.setAcActiveEnergyKwh(dailyAc);
-        rdm.setAcExportEnergyKwh(dailyExp);
-        rdm.setAcImportEnergyKwh(dailyImp);
-        rdm.setDcEnergyKwh(dailyDc);
-        rdm.setMaxAcPowerKw(maxPow);
-        rdm.setLastTs(list.get(list.size()-1).getTs());
-
-        return rdmRepo.save(rdm);
+        BigDecimal maxPow = st.maxTotalAcPowerKw();
+        if (maxPow == null && st.maxPowerKw() != null) maxPow = BigDecimal.valueOf(st.maxPowerKw());
+
+        if (dailyAc != null) rdm.setAcActiveEnergyKwh(dailyAc);
+        if (dailyExp != null) rdm.setAcExportEnergyKwh(dailyExp);
+        if (dailyImp != null) rdm.setAcImportEnergyKwh(dailyImp);
+        if (dailyDc != null) rdm.setDcEnergyKwh(dailyDc);
+        if (maxPow != null) rdm.setMaxAcPowerKw(maxPow);
+        rdm.setLastTs(st.lastTs());
+        return rdm;
     }
 
+    // max(daily counter), else max - min of the cumulative counter
+    private static BigDecimal dailyOrDelta(BigDecimal maxDaily, BigDecimal maxTotal, BigDecimal minTotal) {
+        if (maxDaily != null) return maxDaily;
+        if (maxTotal != null && minTotal != null) return maxTotal.subtract(minTotal);
+        return null;
+    }
 }
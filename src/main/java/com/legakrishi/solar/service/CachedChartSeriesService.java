@@ -0,0 +1,229 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.config.ChartProps;
+import com.legakrishi.solar.iot.TelemetryListener;
+import com.legakrishi.solar.iot.TelemetryPoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache in front of {@link ChartSeriesServiceImpl}, keyed by (site, days, metric, step and
+ * variant). Entries of closed days never expire; a stored energy_sample of a site drops that site's
+ * entries whose span holds the sample time (today's as it ticks, closed days on a backfill). Entries
+ * reaching into today also expire after lkf.charts.cache.open-ttl-ms, as the rollups they are built
+ * from are refreshed on a timer. Least recently used entries go first once the entry count or the
+ * estimated size exceeds its bound. Cached results are shared between callers: read only.
+ */
+@Primary
+@Service
+public class CachedChartSeriesService implements ChartSeriesService, TelemetryListener {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private enum Kind { INTRADAY, DAILY, RANGE }
+
+    private record Key(Kind kind, Long siteId, LocalDate from, LocalDate to, String metric, int step, String variant) {}
+
+    private record Entry(Map<String, Object> value, long weight, long fromMs, long toMs, long expiresAtMs) {}
+
+    private final ChartSeriesServiceImpl delegate;
+    private final ChartProps.Cache props;
+
+    // guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Long, Map<Key, Entry>> bySite = new HashMap<>();
+    private final Map<Long, Long> versions = new HashMap<>();   // bumped per stored batch, so a build racing it is not kept
+    private long weight;
+
+    private final Map<Kind, Counter> hits = new EnumMap<>(Kind.class);
+    private final Map<Kind, Counter> misses = new EnumMap<>(Kind.class);
+    private final Counter evictions;
+
+    public CachedChartSeriesService(ChartSeriesServiceImpl delegate, ChartProps props, MeterRegistry meters) {
+        this.delegate = delegate;
+        this.props = props.getCache();
+        for (Kind k : Kind.values()) {
+            String kind = k.name().toLowerCase(Locale.ROOT);
+            hits.put(k, Counter.builder("charts.cache.requests").description("Chart series served from the cache")
+                    .tag("kind", kind).tag("result", "hit").register(meters));
+            misses.put(k, Counter.builder("charts.cache.requests").description("Chart series built from the database")
+                    .tag("kind", kind).tag("result", "miss").register(meters));
+        }
+        evictions = Counter.builder("charts.cache.evictions").description("Entries evicted by the size bounds").register(meters);
+        Gauge.builder("charts.cache.size", this, CachedChartSeriesService::size).register(meters);
+        Gauge.builder("charts.cache.weight", this, CachedChartSeriesService::weight).baseUnit("bytes").register(meters);
+        Gauge.builder("charts.cache.hit.ratio", this, CachedChartSeriesService::hitRatio).register(meters);
+    }
+
+    @Override
+    public Map<String, Object> buildIntradayMeterSeries(Long siteId, LocalDate day, String metric, Integer stepMin) {
+        return buildIntradayMeterSeries(siteId, day, metric, (stepMin == null || stepMin <= 0) ? 1 : stepMin, null);
+    }
+
+    @Override
+    public Map<String, Object> buildIntradayMeterSeries(Long siteId, LocalDate day, String metric, int stepMin) {
+        return buildIntradayMeterSeries(siteId, day, metric, stepMin, null);
+    }
+
+    @Override
+    public Map<String, Object> buildIntradayMeterSeries(Long siteId, LocalDate day, String metric, int stepMin, String agg) {
+        LocalDate d = day == null ? LocalDate.now(IST) : day;       // IST days, as the delegate's window
+        int step = stepMin <= 0 ? 1 : stepMin;
+        Key key = new Key(Kind.INTRADAY, siteId, d, d, metric, step, agg == null ? "" : agg.toLowerCase(Locale.ROOT));
+        return cached(key, d.atStartOfDay(IST).toInstant(), d.plusDays(1).atStartOfDay(IST).toInstant(),
+                () -> delegate.buildIntradayMeterSeries(siteId, d, metric, step, agg));
+    }
+
+    @Override
+    public Map<String, Object> buildDailyMeterSeries(Long siteId, int days) {
+        LocalDate today = LocalDate.now(IST);
+        LocalDate from = today.minusDays(Math.max(1, days) - 1);
+        Key key = new Key(Kind.DAILY, siteId, from, today, "", 0, "");
+        return cached(key, from.atStartOfDay(IST).toInstant(), today.plusDays(1).atStartOfDay(IST).toInstant(),
+                () -> delegate.buildDailyMeterSeries(siteId, days));
+    }
+
+    @Override
+    public Map<String, Object> buildRangeSeries(Long siteId, LocalDate fromDay, LocalDate toDay, String metric,
+                                                int maxPoints, String method) {
+        if (fromDay == null || toDay == null || toDay.isBefore(fromDay)) {
+            return delegate.buildRangeSeries(siteId, fromDay, toDay, metric, maxPoints, method);
+        }
+        Key key = new Key(Kind.RANGE, siteId, fromDay, toDay, metric, maxPoints,
+                method == null ? "" : method.toLowerCase(Locale.ROOT));
+        return cached(key, fromDay.atStartOfDay(IST).toInstant(), toDay.plusDays(1).atStartOfDay(IST).toInstant(),
+                () -> delegate.buildRangeSeries(siteId, fromDay, toDay, metric, maxPoints, method));
+    }
+
+    /** Drops the entries of each site whose span holds one of its stored samples. */
+    @Override
+    public void onCommitted(List<TelemetryPoint> points) {
+        if (!props.isEnabled()) return;
+        Map<Long, long[]> spans = new HashMap<>();                  // site -> earliest, latest sample millis
+        for (TelemetryPoint p : points) {
+            if (p.source() != TelemetryPoint.Source.ENERGY_SAMPLE || p.siteId() == null || p.time() == null) continue;
+            long t = p.time().toEpochMilli();
+            spans.merge(p.siteId(), new long[]{t, t}, (a, b) -> new long[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+        }
+        if (spans.isEmpty()) return;
+        synchronized (this) {
+            spans.forEach((siteId, span) -> {
+                versions.merge(siteId, 1L, Long::sum);
+                Map<Key, Entry> site = bySite.get(siteId);
+                if (site == null) return;
+                for (Iterator<Map.Entry<Key, Entry>> it = site.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Key, Entry> e = it.next();
+                    if (span[0] < e.getValue().toMs() && span[1] >= e.getValue().fromMs()) {
+                        it.remove();
+                        entries.remove(e.getKey());
+                        weight -= e.getValue().weight();
+                    }
+                }
+                if (site.isEmpty()) bySite.remove(siteId);
+            });
+        }
+    }
+
+    private Map<String, Object> cached(Key key, Instant from, Instant to, Supplier<Map<String, Object>> build) {
+        if (!props.isEnabled()) return build.get();
+        long now = System.currentTimeMillis();
+        long version;
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null && (e.expiresAtMs() == 0 || e.expiresAtMs() > now)) {
+                hits.get(key.kind()).increment();
+                return e.value();
+            }
+            if (e != null) remove(key);
+            version = versions.getOrDefault(key.siteId(), 0L);
+        }
+        misses.get(key.kind()).increment();
+
+        Map<String, Object> value = build.get();
+        long w = weigh(value);
+        long maxBytes = props.getMaxMb() * 1024L * 1024L;
+        if (w > maxBytes) return value;
+        long fromMs = from.toEpochMilli(), toMs = to.toEpochMilli();
+        long expiresAt = toMs > now ? now + Math.max(1, props.getOpenTtlMs()) : 0;
+        synchronized (this) {
+            if (versions.getOrDefault(key.siteId(), 0L) != version) return value;   // samples stored meanwhile
+            remove(key);
+            Entry e = new Entry(value, w, fromMs, toMs, expiresAt);
+            entries.put(key, e);
+            bySite.computeIfAbsent(key.siteId(), id -> new HashMap<>()).put(key, e);
+            weight += w;
+            Iterator<Key> eldest = entries.keySet().iterator();
+            while ((entries.size() > Math.max(1, props.getMaxEntries()) || weight > maxBytes) && eldest.hasNext()) {
+                Key k = eldest.next();
+                eldest.remove();
+                unindex(k);
+                evictions.increment();
+            }
+        }
+        return value;
+    }
+
+    // callers hold the lock
+    private void remove(Key key) {
+        if (entries.remove(key) != null) unindex(key);
+    }
+
+    private void unindex(Key key) {
+        Map<Key, Entry> site = bySite.get(key.siteId());
+        if (site == null) return;
+        Entry e = site.remove(key);
+        if (e != null) weight -= e.weight();
+        if (site.isEmpty()) bySite.remove(key.siteId());
+    }
+
+    private synchronized double size() {
+        return entries.size();
+    }
+
+    private synchronized double weight() {
+        return weight;
+    }
+
+    private double hitRatio() {
+        double h = 0, m = 0;
+        for (Kind k : Kind.values()) {
+            h += hits.get(k).count();
+            m += misses.get(k).count();
+        }
+        return h + m == 0 ? 0 : h / (h + m);
+    }
+
+    // rough retained bytes of a built series: the number arrays and label lists dominate
+    private static long weigh(Object o) {
+        if (o instanceof double[] a) return 16 + 8L * a.length;
+        if (o instanceof long[] a) return 16 + 8L * a.length;
+        if (o instanceof String s) return 40 + 2L * s.length();
+        if (o instanceof Map<?, ?> m) {
+            long w = 48;
+            for (Map.Entry<?, ?> e : m.entrySet()) w += 32 + weigh(e.getKey()) + weigh(e.getValue());
+            return w;
+        }
+        if (o instanceof Collection<?> c) {
+            long w = 24;
+            for (Object x : c) w += 8 + weigh(x);
+            return w;
+        }
+        return 16;
+    }
+}
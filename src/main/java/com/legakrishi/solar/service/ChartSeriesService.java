@@ -7,8 +7,19 @@ import java.util.Map;
 public interface ChartSeriesService {
 
     Map<String,Object> buildIntradayMeterSeries(Long siteId, LocalDate day, String metric, int stepMin);
+
+    /** Intraday with a per-bucket aggregate: avg, min, max, last or delta (null = avg for power, last for counters). */
+    Map<String,Object> buildIntradayMeterSeries(Long siteId, LocalDate day, String metric, int stepMin, String agg);
     Map<String,Object> buildDailyMeterSeries(Long siteId, int days);
 
+    /**
+     * Series of every meter over IST days [fromDay, toDay], downsampled server-side to about
+     * maxPoints per meter with "lttb" (default) or "minmax". At most lkf.charts.range.max-days days
+     * (IllegalArgumentException beyond); a meter without rollups is read raw over its last max-raw-days only.
+     */
+    Map<String,Object> buildRangeSeries(Long siteId, LocalDate fromDay, LocalDate toDay, String metric,
+                                        int maxPoints, String method);
+
     /** Intraday (time-view) aligned to the chosen step in minutes. */
     Map<String, Object> buildIntradayMeterSeries(Long siteId,
                                                  LocalDate day,
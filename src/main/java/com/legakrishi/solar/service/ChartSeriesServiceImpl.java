@@ -1,25 +1,33 @@
 package com.legakrishi.solar.service;
 
+import com.legakrishi.solar.config.ChartProps;
 import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.EnergySampleRollup;
 import com.legakrishi.solar.model.MeterKind;
-import com.legakrishi.solar.repository.EnergySampleRepository;
+import com.legakrishi.solar.util.Downsampler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Transactional(readOnly = true)
 public class ChartSeriesServiceImpl implements ChartSeriesService {
 
-    private final EnergySampleRepository repo;
+    private final EnergySampleStore store;   // raw rows + compacted day blocks
+    private final IntervalRollupService rollups;
+    private final ChartProps.Range rangeProps;
     private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private static final Map<Integer, List<String>> DAY_LABELS = new ConcurrentHashMap<>();
 
-    public ChartSeriesServiceImpl(EnergySampleRepository repo) {
-        this.repo = repo;
+    public ChartSeriesServiceImpl(EnergySampleStore store, IntervalRollupService rollups, ChartProps chartProps) {
+        this.store = store;
+        this.rollups = rollups;
+        this.rangeProps = chartProps.getRange();
     }
 
     // === Interface method (Integer) ===
@@ -34,60 +42,86 @@ public class ChartSeriesServiceImpl implements ChartSeriesService {
     }
 
     // === Convenience overload (primitive int) ===
+    @Override
     public Map<String, Object> buildIntradayMeterSeries(Long siteId,
                                                         LocalDate localDay,
                                                         String metric,
                                                         int stepMin) {
-        if (localDay == null) localDay = LocalDate.now();
+        return buildIntradayMeterSeries(siteId, localDay, metric, stepMin, null);
+    }
+
+    /**
+     * One query for all meters (rollups when the step allows, else raw samples), bucketed in one pass
+     * over primitive accumulators. Series values are double[] (serialized like the former lists).
+     */
+    @Override
+    public Map<String, Object> buildIntradayMeterSeries(Long siteId,
+                                                        LocalDate localDay,
+                                                        String metric,
+                                                        int stepMin,
+                                                        String agg) {
+        if (localDay == null) localDay = LocalDate.now(IST);
         final int step = (stepMin <= 0) ? 1 : stepMin;
+        Metric m = Metric.of(metric);
+        Agg a = Agg.of(agg, m);
+        Metric source = a == Agg.DELTA ? m.counter() : m;
 
-        ZoneId zone = ZoneId.systemDefault();
+        ZoneId zone = IST;                          // site days, as the daily rollups
         ZonedDateTime startZ = localDay.atStartOfDay(zone);
         ZonedDateTime endZ   = startZ.plusDays(1);
         Instant from = startZ.toInstant();
         Instant to   = endZ.toInstant();
+        long fromMs = from.toEpochMilli(), toMs = to.toEpochMilli(), stepMs = step * 60_000L;
 
         // Labels at 'step' minutes strictly before end of day
-        List<String> labels = new ArrayList<>();
-        for (ZonedDateTime t = startZ; t.isBefore(endZ); t = t.plusMinutes(step)) {
-            labels.add(TIME_FMT.format(t));
-        }
-
-        Map<String, List<Double>> seriesPerMeter = new LinkedHashMap<>();
-        for (MeterKind mk : MeterKind.values()) {
-            List<EnergySample> samples =
-                    repo.findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTimeAsc(siteId, mk, from, to);
+        List<String> labels = labels(startZ, endZ, step);
 
-            double[] arr = new double[labels.size()];
-            Arrays.fill(arr, 0d);
+        Map<MeterKind, Buckets> perMeter = new EnumMap<>(MeterKind.class);
+        for (MeterKind mk : MeterKind.values()) perMeter.put(mk, new Buckets(labels.size()));
 
-            for (EnergySample s : samples) {
-                if (s.getSampleTime() == null) continue;
-                ZonedDateTime localT = s.getSampleTime().atZone(zone);
-                if (localT.isBefore(startZ) || !localT.isBefore(endZ)) continue;
-
-                long minutes = Duration.between(startZ, localT).toMinutes();
-                int idx = (int) (minutes / step); // floor to bucket
-                if (idx < 0 || idx >= arr.length) continue;
-
-                arr[idx] = pickMetricValue(metric, s);
+        // 5/15/60-minute rollups when the step allows; raw samples for the meters they do not cover
+        Map<MeterKind, List<EnergySampleRollup>> rolled = rollups.readAll(siteId, from, to, step);
+        rolled.forEach((mk, rows) -> {
+            Buckets b = perMeter.get(mk);
+            for (EnergySampleRollup r : rows) {
+                long idx = (r.getBucketStart().toEpochMilli() - fromMs) / stepMs;
+                if (idx >= 0 && idx < b.size) source.add(b, (int) idx, r);
             }
-
-            seriesPerMeter.put(mk.name(), toList(arr));
+        });
+        if (rolled.size() < perMeter.size()) {
+            store.findAll(siteId, from, to).forEach((mk, samples) -> {
+                if (rolled.containsKey(mk)) return;
+                Buckets b = perMeter.get(mk);
+                for (EnergySample s : samples) {
+                    long ms = s.getSampleTime().toEpochMilli();
+                    if (ms < fromMs || ms >= toMs) continue;
+                    b.add((int) ((ms - fromMs) / stepMs), source.value(s));
+                }
+            });
         }
 
+        Map<String, double[]> seriesPerMeter = new LinkedHashMap<>();
+        perMeter.forEach((mk, b) -> seriesPerMeter.put(mk.name(), b.result(a)));
+
         Map<String, Object> out = new LinkedHashMap<>();
         out.put("labels", labels);
+        out.put("start", fromMs);        // labels[i] = start + i * stepMin, for the compact format
+        out.put("stepMin", step);
         out.put("metric", metric);
-        out.put("unit", unitFor(metric));
+        out.put("agg", a.name().toLowerCase(Locale.ROOT));
+        out.put("unit", a == Agg.DELTA ? "kWh" : unitFor(metric));
         out.put("series", seriesPerMeter);
         return out;
     }
 
+    /**
+     * Daily series per meter over the last {@code days} IST days: one query for the daily rollup
+     * buckets of all meters, whatever the length. Days without a bucket (not rolled up yet) are
+     * filled from raw samples, one read per meter and run of consecutive such days.
+     */
     @Override
     public Map<String, Object> buildDailyMeterSeries(Long siteId, int days) {
-        ZoneId zone = ZoneId.systemDefault();
-        LocalDate today = LocalDate.now(zone);
+        LocalDate today = LocalDate.now(IST);
         int safeDays = Math.max(1, days);
         LocalDate fromDay = today.minusDays(safeDays - 1);
 
@@ -97,6 +131,13 @@ public class ChartSeriesServiceImpl implements ChartSeriesService {
             labels.add(df.format(d));
         }
 
+        Map<MeterKind, Map<LocalDate, EnergySampleRollup>> byMeter = new EnumMap<>(MeterKind.class);
+        for (MeterKind mk : MeterKind.values()) byMeter.put(mk, new HashMap<>());
+        for (EnergySampleRollup b : rollups.readDays(siteId, fromDay.atStartOfDay(IST).toInstant(),
+                today.plusDays(1).atStartOfDay(IST).toInstant())) {
+            byMeter.get(b.getMeterKind()).put(b.getBucketStart().atZone(IST).toLocalDate(), b);
+        }
+
         Map<String, Map<String, List<Double>>> series = new LinkedHashMap<>();
         series.put("acActiveEnergyKwh", new LinkedHashMap<>());
         series.put("acExportEnergyKwh", new LinkedHashMap<>());
@@ -105,35 +146,26 @@ public class ChartSeriesServiceImpl implements ChartSeriesService {
         series.put("maxAcPowerKw",      new LinkedHashMap<>());
 
         for (MeterKind mk : MeterKind.values()) {
-            List<Double> dailyAc  = new ArrayList<>();
-            List<Double> dailyExp = new ArrayList<>();
-            List<Double> dailyImp = new ArrayList<>();
-            List<Double> dailyDc  = new ArrayList<>();
-            List<Double> maxPower = new ArrayList<>();
-
-            for (LocalDate d = fromDay; !d.isAfter(today); d = d.plusDays(1)) {
-                ZonedDateTime z0 = d.atStartOfDay(zone);
-                ZonedDateTime z1 = z0.plusDays(1);
+            Map<LocalDate, EnergySampleRollup> daily = byMeter.get(mk);
+            fillFromRaw(siteId, mk, fromDay, today, daily);
 
-                List<EnergySample> window = repo
-                        .findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTimeAsc(
-                                siteId, mk, z0.toInstant(), z1.toInstant());
+            List<Double> dailyAc  = new ArrayList<>(safeDays);
+            List<Double> dailyExp = new ArrayList<>(safeDays);
+            List<Double> dailyImp = new ArrayList<>(safeDays);
+            List<Double> dailyDc  = new ArrayList<>(safeDays);
+            List<Double> maxPower = new ArrayList<>(safeDays);
 
-                if (window.isEmpty()) {
+            for (LocalDate d = fromDay; !d.isAfter(today); d = d.plusDays(1)) {
+                EnergySampleRollup b = daily.get(d);
+                if (b == null) {
                     dailyAc.add(0d); dailyExp.add(0d); dailyImp.add(0d); dailyDc.add(0d); maxPower.add(0d);
                 } else {
-                    EnergySample last = window.get(window.size() - 1);
-                    double maxKw = window.stream()
-                            .map(EnergySample::getTotalAcPowerKw)
-                            .filter(Objects::nonNull)
-                            .mapToDouble(Double::doubleValue)
-                            .max().orElse(0d);
-
-                    dailyAc.add(nz(last.getDailyAcEnergyKwh()));
-                    dailyExp.add(nz(last.getDailyAcExportKwh()));
-                    dailyImp.add(nz(last.getDailyAcImportKwh()));
-                    dailyDc.add(nz(last.getDailyDcEnergyKwh()));
-                    maxPower.add(maxKw);
+                    // counters as of the day's last sample, peak over the day
+                    dailyAc.add(nz(b.getDailyAcEnergyKwh()));
+                    dailyExp.add(nz(b.getDailyAcExportKwh()));
+                    dailyImp.add(nz(b.getDailyAcImportKwh()));
+                    dailyDc.add(nz(b.getDailyDcEnergyKwh()));
+                    maxPower.add(nz(b.getPowerMaxKw()));
                 }
             }
 
@@ -150,33 +182,288 @@ public class ChartSeriesServiceImpl implements ChartSeriesService {
         return out;
     }
 
+    // Days of [fromDay, toDay] with no daily bucket: one raw read per run of consecutive missing days,
+    // bucketed per IST day, so an old gap does not re-read the rolled-up days after it
+    private void fillFromRaw(Long siteId, MeterKind mk, LocalDate fromDay, LocalDate toDay,
+                             Map<LocalDate, EnergySampleRollup> daily) {
+        LocalDate runStart = null;
+        for (LocalDate d = fromDay; !d.isAfter(toDay.plusDays(1)); d = d.plusDays(1)) {
+            boolean missing = !d.isAfter(toDay) && !daily.containsKey(d);
+            if (missing && runStart == null) {
+                runStart = d;
+            } else if (!missing && runStart != null) {
+                fillRun(siteId, mk, runStart, d, daily);
+                runStart = null;
+            }
+        }
+    }
+
+    // raw samples of [fromDay, endDay) as daily buckets
+    private void fillRun(Long siteId, MeterKind mk, LocalDate fromDay, LocalDate endDay,
+                         Map<LocalDate, EnergySampleRollup> daily) {
+        Instant to = endDay.atStartOfDay(IST).toInstant();
+        List<EnergySample> samples = store.find(siteId, mk, fromDay.atStartOfDay(IST).toInstant(), to).stream()
+                .filter(s -> s.getSampleTime() != null && s.getSampleTime().isBefore(to))
+                .toList();
+        for (EnergySampleRollup b : IntervalRollupService.buckets(siteId, mk, IntervalRollupService.DAY_STEP, samples)) {
+            daily.putIfAbsent(b.getBucketStart().atZone(IST).toLocalDate(), b);
+        }
+    }
+
+    /**
+     * Range series: 5/15/60-minute rollups when the range is long enough that the coarsest of them
+     * still yields maxPoints (a bucket contributes its min and max, so peaks survive), raw samples
+     * otherwise; then LTTB or min-max per slice down to maxPoints. Times are epoch millis per meter.
+     */
+    @Override
+    public Map<String, Object> buildRangeSeries(Long siteId, LocalDate fromDay, LocalDate toDay, String metric,
+                                                int maxPoints, String method) {
+        if (fromDay == null || toDay == null || toDay.isBefore(fromDay)) {
+            throw new IllegalArgumentException("invalid range " + fromDay + " .. " + toDay);
+        }
+        if (fromDay.plusDays(Math.max(1, rangeProps.getMaxDays())).isBefore(toDay.plusDays(1))) {
+            throw new IllegalArgumentException("range longer than " + rangeProps.getMaxDays() + " days");
+        }
+        Metric m = Metric.of(metric);
+        boolean minMax = method != null && method.replace("-", "").equalsIgnoreCase("minmax");
+        int points = Math.max(10, Math.min(maxPoints, 20_000));
+        Instant from = fromDay.atStartOfDay(IST).toInstant();
+        Instant to = toDay.plusDays(1).atStartOfDay(IST).toInstant();
+        long toMs = to.toEpochMilli();
+
+        long rangeMin = Duration.between(from, to).toMinutes();
+        int step = 0;
+        for (int i = IntervalRollupService.STEPS.length - 1; i >= 0; i--) {
+            int s = IntervalRollupService.STEPS[i];
+            if ((long) s * points <= 2 * rangeMin) {
+                step = s;
+                break;
+            }
+        }
+        Map<MeterKind, List<EnergySampleRollup>> rolled = step > 0 ? rollups.readAll(siteId, from, to, step) : Map.of();
+        // raw samples only for the meters without rollups (on a single-meter site that is every other
+        // meter, and those reads come back empty), and over the end of the range only
+        Instant rawFrom = toDay.minusDays(Math.max(1, rangeProps.getMaxRawDays()) - 1L).atStartOfDay(IST).toInstant();
+        if (rawFrom.isBefore(from)) rawFrom = from;
+        Map<MeterKind, List<EnergySample>> raw = new EnumMap<>(MeterKind.class);
+        for (MeterKind mk : MeterKind.values()) {
+            if (!rolled.containsKey(mk)) raw.put(mk, store.find(siteId, mk, rawFrom, to));
+        }
+
+        Map<String, Object> series = new LinkedHashMap<>();
+        for (MeterKind mk : MeterKind.values()) {
+            Points p = new Points();
+            List<EnergySampleRollup> buckets = rolled.get(mk);
+            if (buckets != null) {
+                for (EnergySampleRollup r : buckets) m.addPoints(p, r);
+            } else {
+                for (EnergySample s : raw.getOrDefault(mk, List.of())) {
+                    long ms = s.getSampleTime().toEpochMilli();
+                    Double v = m.value(s);
+                    if (ms < toMs && v != null) p.add(ms, v);
+                }
+            }
+            int[] keep = minMax ? Downsampler.minMax(p.t, p.v, p.n, points) : Downsampler.lttb(p.t, p.v, p.n, points);
+            long[] t = new long[keep.length];
+            double[] v = new double[keep.length];
+            for (int i = 0; i < keep.length; i++) {
+                t[i] = p.t[keep[i]];
+                v[i] = p.v[keep[i]];
+            }
+            Map<String, Object> one = new LinkedHashMap<>();
+            one.put("t", t);
+            one.put("v", v);
+            series.put(mk.name(), one);
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("from", from.toString());
+        out.put("to", to.toString());
+        out.put("metric", metric);
+        out.put("unit", unitFor(metric));
+        out.put("method", minMax ? "minmax" : "lttb");
+        out.put("sourceStepMin", rolled.isEmpty() ? 0 : step);      // 0 = raw samples
+        if (rolled.size() < MeterKind.values().length) out.put("rawFrom", rawFrom.toString());
+        out.put("series", series);
+        return out;
+    }
+
     /* ------------ helpers ------------ */
 
-    private double pickMetricValue(String metric, EnergySample s) {
-        if (metric == null) return nz(s.getTotalAcPowerKw());
-        switch (metric.toUpperCase(Locale.ROOT)) {
-            case "TOTAL_AC_POWER":
-            case "AC_POWER":
-            case "POWER":
-                return nz(s.getTotalAcPowerKw());
-            case "TOTAL_AC_ENERGY":
-            case "DAILY_AC_ENERGY":
-            case "AC_ENERGY":
-                return nz(s.getDailyAcEnergyKwh());
-            case "DAILY_AC_EXPORT":
-            case "TOTAL_AC_EXPORT":
-            case "AC_EXPORT":
-                return nz(s.getDailyAcExportKwh());
-            case "DAILY_AC_IMPORT":
-            case "TOTAL_AC_IMPORT":
-            case "AC_IMPORT":
-                return nz(s.getDailyAcImportKwh());
-            case "DAILY_DC_ENERGY":
-            case "TOTAL_DC_ENERGY":
-            case "DC_ENERGY":
-                return nz(s.getDailyDcEnergyKwh());
-            default:
-                return nz(s.getTotalAcPowerKw());
+    // Labels of a plain 24-hour day depend on the step only; built once per step
+    private static List<String> labels(ZonedDateTime startZ, ZonedDateTime endZ, int step) {
+        boolean plainDay = startZ.toLocalTime().equals(LocalTime.MIDNIGHT)
+                && Duration.between(startZ, endZ).toMinutes() == 1440;
+        if (plainDay && step <= 1440) {
+            return DAY_LABELS.computeIfAbsent(step, s -> buildLabels(startZ, endZ, s));
+        }
+        return buildLabels(startZ, endZ, step);
+    }
+
+    private static List<String> buildLabels(ZonedDateTime startZ, ZonedDateTime endZ, int step) {
+        List<String> labels = new ArrayList<>();
+        for (ZonedDateTime t = startZ; t.isBefore(endZ); t = t.plusMinutes(step)) {
+            labels.add(TIME_FMT.format(t));
+        }
+        return List.copyOf(labels);
+    }
+
+    /** What a series plots; unknown names fall back to AC power, as before. */
+    private enum Metric {
+        POWER, AC_ENERGY, AC_EXPORT, AC_IMPORT, DC_ENERGY;
+
+        static Metric of(String metric) {
+            if (metric == null) return POWER;
+            switch (metric.toUpperCase(Locale.ROOT)) {
+                case "TOTAL_AC_ENERGY":
+                case "DAILY_AC_ENERGY":
+                case "AC_ENERGY":
+                    return AC_ENERGY;
+                case "DAILY_AC_EXPORT":
+                case "TOTAL_AC_EXPORT":
+                case "AC_EXPORT":
+                    return AC_EXPORT;
+                case "DAILY_AC_IMPORT":
+                case "TOTAL_AC_IMPORT":
+                case "AC_IMPORT":
+                    return AC_IMPORT;
+                case "DAILY_DC_ENERGY":
+                case "TOTAL_DC_ENERGY":
+                case "DC_ENERGY":
+                    return DC_ENERGY;
+                default:
+                    return POWER;
+            }
+        }
+
+        // the daily counter an energy delta is taken from
+        Metric counter() {
+            return this == POWER ? AC_ENERGY : this;
+        }
+
+        Double value(EnergySample s) {
+            return switch (this) {
+                case POWER -> s.getTotalAcPowerKw();
+                case AC_ENERGY -> s.getDailyAcEnergyKwh();
+                case AC_EXPORT -> s.getDailyAcExportKwh();
+                case AC_IMPORT -> s.getDailyAcImportKwh();
+                case DC_ENERGY -> s.getDailyDcEnergyKwh();
+            };
+        }
+
+        // range points of a rollup bucket: power as its min and max (in that order), counters as of its end
+        void addPoints(Points p, EnergySampleRollup r) {
+            long start = r.getBucketStart().toEpochMilli();
+            if (this != POWER) {
+                Double v = switch (this) {
+                    case AC_ENERGY -> r.getDailyAcEnergyKwh();
+                    case AC_EXPORT -> r.getDailyAcExportKwh();
+                    case AC_IMPORT -> r.getDailyAcImportKwh();
+                    default -> r.getDailyDcEnergyKwh();
+                };
+                if (v != null) p.add(start, v);
+                return;
+            }
+            if (r.getPowerCount() == 0) return;
+            p.add(start, r.getPowerMinKw());
+            if (r.getPowerMaxKw() > r.getPowerMinKw()) p.add(start + r.getStepMin() * 30_000L, r.getPowerMaxKw());
+        }
+
+        // a rollup bucket: full power statistics; counters only as of the bucket's end
+        void add(Buckets b, int idx, EnergySampleRollup r) {
+            switch (this) {
+                case POWER -> {
+                    if (r.getPowerCount() > 0) {
+                        b.add(idx, r.getPowerSumKw(), r.getPowerMinKw(), r.getPowerMaxKw(), r.getPowerLastKw(), r.getPowerCount());
+                    }
+                }
+                case AC_ENERGY -> b.add(idx, r.getDailyAcEnergyKwh());
+                case AC_EXPORT -> b.add(idx, r.getDailyAcExportKwh());
+                case AC_IMPORT -> b.add(idx, r.getDailyAcImportKwh());
+                case DC_ENERGY -> b.add(idx, r.getDailyDcEnergyKwh());
+            }
+        }
+    }
+
+    /** Per-bucket aggregate; default AVG for power and LAST for the daily counters. */
+    private enum Agg {
+        AVG, MIN, MAX, LAST, DELTA;
+
+        static Agg of(String agg, Metric metric) {
+            if (agg != null) {
+                for (Agg a : values()) {
+                    if (a.name().equalsIgnoreCase(agg.trim())) return a;
+                }
+            }
+            return metric == Metric.POWER ? AVG : LAST;
+        }
+    }
+
+    // Growable (time, value) columns
+    private static final class Points {
+        long[] t = new long[1024];
+        double[] v = new double[1024];
+        int n;
+
+        void add(long time, double value) {
+            if (n == t.length) {
+                t = Arrays.copyOf(t, n * 2);
+                v = Arrays.copyOf(v, n * 2);
+            }
+            t[n] = time;
+            v[n++] = value;
+        }
+    }
+
+    // Running count / sum / min / max / last per bucket; empty buckets come out as 0
+    private static final class Buckets {
+        final int size;
+        final int[] count;
+        final double[] sum, min, max, last;
+
+        Buckets(int size) {
+            this.size = size;
+            count = new int[size];
+            sum = new double[size];
+            min = new double[size];
+            max = new double[size];
+            last = new double[size];
+        }
+
+        void add(int i, Double v) {
+            if (v == null) return;
+            double d = v;
+            add(i, d, d, d, d, 1);
+        }
+
+        void add(int i, double s, double mn, double mx, double l, int n) {
+            if (count[i] == 0) {
+                min[i] = mn;
+                max[i] = mx;
+            } else {
+                if (mn < min[i]) min[i] = mn;
+                if (mx > max[i]) max[i] = mx;
+            }
+            count[i] += n;
+            sum[i] += s;
+            last[i] = l;
+        }
+
+        double[] result(Agg a) {
+            double[] out = new double[size];
+            double prev = 0d;              // counters restart at midnight; a drop means a reset
+            for (int i = 0; i < size; i++) {
+                if (count[i] == 0) continue;
+                out[i] = switch (a) {
+                    case AVG -> sum[i] / count[i];
+                    case MIN -> min[i];
+                    case MAX -> max[i];
+                    case LAST -> last[i];
+                    case DELTA -> last[i] >= prev ? last[i] - prev : last[i];
+                };
+                prev = last[i];
+            }
+            return out;
         }
     }
 
@@ -186,8 +473,4 @@ public class ChartSeriesServiceImpl implements ChartSeriesService {
     }
 
     private static double nz(Double v) { return v == null ? 0d : v; }
-
-    private static List<Double> toList(double[] arr) {
-        return Arrays.stream(arr).boxed().collect(Collectors.toList());
-    }
 }
@@ -0,0 +1,237 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.config.AggregationProps;
+import com.legakrishi.solar.iot.TelemetryListener;
+import com.legakrishi.solar.iot.TelemetryPoint;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.Reading;
+import com.legakrishi.solar.model.ReadingDay;
+import com.legakrishi.solar.model.ReadingDayMeter;
+import com.legakrishi.solar.model.Site;
+import com.legakrishi.solar.repository.ReadingDayMeterRepository;
+import com.legakrishi.solar.repository.ReadingDayMeterStats;
+import com.legakrishi.solar.repository.ReadingDayRepository;
+import com.legakrishi.solar.repository.ReadingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps reading_day_meter and reading_day current from the ingest path: every committed Reading
+ * updates the running max / min / last of its (site, meter, day) and (site, day) in memory, O(1) per row,
+ * and dirty days are upserted every lkf.aggregation.flush-ms. A day is seeded from SQL the first time
+ * it is seen (restart mid-day, late data), so the values always match a full rescan of
+ * {@link AggregationService}; AutoAggregateTodayJob still runs that rescan nightly as a repair.
+ */
+@Component
+public class DayRollupAccumulator implements TelemetryListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DayRollupAccumulator.class);
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private record MeterDay(Long siteId, MeterKind meter, LocalDate day) {}
+
+    private record SiteDay(Long siteId, LocalDate day) {}
+
+    private final ReadingRepository readingRepo;
+    private final ReadingDayMeterRepository rdmRepo;
+    private final ReadingDayRepository dayRepo;
+    private final AggregationProps props;
+
+    private final Map<MeterDay, MeterAcc> meterDays = new ConcurrentHashMap<>();
+    private final Map<SiteDay, SiteAcc> siteDays = new ConcurrentHashMap<>();
+
+    public DayRollupAccumulator(ReadingRepository readingRepo, ReadingDayMeterRepository rdmRepo,
+                                ReadingDayRepository dayRepo, AggregationProps props) {
+        this.readingRepo = readingRepo;
+        this.rdmRepo = rdmRepo;
+        this.dayRepo = dayRepo;
+        this.props = props;
+    }
+
+    @Override
+    public void onCommitted(List<TelemetryPoint> points) {
+        if (!props.isIncremental()) return;
+        for (TelemetryPoint p : points) {
+            // replays too: max / min do not care about arrival order
+            if (!(p.row() instanceof Reading r) || r.getTs() == null) continue;
+            LocalDate day = r.getTs().toLocalDate();                 // ts is IST wall clock
+            meterAcc(new MeterDay(p.siteId(), p.meter(), day)).add(r);
+            siteAcc(new SiteDay(p.siteId(), day)).add(r);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${lkf.aggregation.flush-ms:30000}", fixedDelayString = "${lkf.aggregation.flush-ms:30000}")
+    public void flush() {
+        List<MeterDay> meterKeys = new ArrayList<>();
+        List<ReadingDayMeter> meterRows = new ArrayList<>();
+        meterDays.forEach((k, acc) -> {
+            ReadingDayMeterStats st = acc.takeIfDirty(k.day());
+            if (st == null) return;
+            meterKeys.add(k);
+            meterRows.add(AggregationService.toDayMeter(k.siteId(), k.meter(), k.day(), st));
+        });
+        List<SiteDay> siteKeys = new ArrayList<>();
+        List<ReadingDay> siteRows = new ArrayList<>();
+        siteDays.forEach((k, acc) -> {
+            ReadingDay rd = acc.takeIfDirty(k.siteId(), k.day());
+            if (rd == null) return;
+            siteKeys.add(k);
+            siteRows.add(rd);
+        });
+
+        try {
+            rdmRepo.upsertAll(meterRows);
+        } catch (Exception e) {
+            meterKeys.forEach(k -> meterDays.get(k).markDirty());
+            log.warn("Flushing {} day-meter rollups failed, retrying next cycle: {}", meterRows.size(), e.getMessage());
+        }
+        try {
+            dayRepo.upsertAll(siteRows);
+        } catch (Exception e) {
+            siteKeys.forEach(k -> siteDays.get(k).markDirty());
+            log.warn("Flushing {} site-day rollups failed, retrying next cycle: {}", siteRows.size(), e.getMessage());
+        }
+
+        // yesterday stays for late rows; older days are dropped once written
+        LocalDate keepFrom = LocalDate.now(IST).minusDays(1);
+        meterDays.entrySet().removeIf(e -> e.getKey().day().isBefore(keepFrom) && !e.getValue().isDirty());
+        siteDays.entrySet().removeIf(e -> e.getKey().day().isBefore(keepFrom) && !e.getValue().isDirty());
+    }
+
+    private MeterAcc meterAcc(MeterDay k) {
+        MeterAcc acc = meterDays.get(k);
+        if (acc != null) return acc;
+        // seeded outside the map lock; a concurrent seed of the same day is simply discarded
+        LocalDateTime start = k.day().atStartOfDay();
+        MeterAcc seeded = new MeterAcc(readingRepo.dayMeterStats(
+                k.siteId(), k.meter(), k.meter() == MeterKind.MAIN, start, start.plusDays(1)));
+        MeterAcc prev = meterDays.putIfAbsent(k, seeded);
+        return prev != null ? prev : seeded;
+    }
+
+    private SiteAcc siteAcc(SiteDay k) {
+        SiteAcc acc = siteDays.get(k);
+        if (acc != null) return acc;
+        LocalDateTime start = k.day().atStartOfDay();
+        LocalDateTime end = start.plusDays(1).minusSeconds(1);      // same window as aggregateDayForSite
+        SiteAcc seeded = new SiteAcc();
+        readingRepo.findFirstBySiteIdAndTsBetweenOrderByTsAsc(k.siteId(), start, end).ifPresent(seeded::add);
+        readingRepo.findFirstBySiteIdAndTsBetweenOrderByTsDesc(k.siteId(), start, end).ifPresent(seeded::add);
+        seeded.maxPower(readingRepo.maxPowerKw(k.siteId(), start, end));
+        SiteAcc prev = siteDays.putIfAbsent(k, seeded);
+        return prev != null ? prev : seeded;
+    }
+
+    // Running version of ReadingRepository.dayMeterStats
+    private static final class MeterAcc {
+        private long rows;
+        private LocalDateTime lastTs;
+        private BigDecimal maxDailyAc, maxTotalAc, minTotalAc;
+        private BigDecimal maxDailyExport, maxTotalExport, minTotalExport;
+        private BigDecimal maxDailyImport, maxTotalImport, minTotalImport;
+        private BigDecimal maxDailyDc, maxTotalDc, minTotalDc;
+        private BigDecimal maxTotalAcPowerKw;
+        private Double maxPowerKw;
+        private boolean dirty;
+
+        MeterAcc(ReadingDayMeterStats st) {
+            if (st == null || st.rows() == null) return;
+            rows = st.rows();
+            lastTs = st.lastTs();
+            maxDailyAc = st.maxDailyAc(); maxTotalAc = st.maxTotalAc(); minTotalAc = st.minTotalAc();
+            maxDailyExport = st.maxDailyExport(); maxTotalExport = st.maxTotalExport(); minTotalExport = st.minTotalExport();
+            maxDailyImport = st.maxDailyImport(); maxTotalImport = st.maxTotalImport(); minTotalImport = st.minTotalImport();
+            maxDailyDc = st.maxDailyDc(); maxTotalDc = st.maxTotalDc(); minTotalDc = st.minTotalDc();
+            maxTotalAcPowerKw = st.maxTotalAcPowerKw();
+            maxPowerKw = st.maxPowerKw();
+        }
+
+        synchronized void add(Reading r) {
+            rows++;
+            if (lastTs == null || r.getTs().isAfter(lastTs)) lastTs = r.getTs();
+            maxDailyAc = max(maxDailyAc, r.getDailyAcActiveEnergyKwh());
+            maxTotalAc = max(maxTotalAc, r.getTotalAcActiveEnergyKwh());
+            minTotalAc = min(minTotalAc, r.getTotalAcActiveEnergyKwh());
+            maxDailyExport = max(maxDailyExport, r.getDailyAcActiveExportEnergyKwh());
+            maxTotalExport = max(maxTotalExport, r.getTotalAcActiveExportEnergyKwh());
+            minTotalExport = min(minTotalExport, r.getTotalAcActiveExportEnergyKwh());
+            maxDailyImport = max(maxDailyImport, r.getDailyAcActiveImportEnergyKwh());
+            maxTotalImport = max(maxTotalImport, r.getTotalAcActiveImportEnergyKwh());
+            minTotalImport = min(minTotalImport, r.getTotalAcActiveImportEnergyKwh());
+            maxDailyDc = max(maxDailyDc, r.getDailyDcEnergyKwh());
+            maxTotalDc = max(maxTotalDc, r.getTotalDcEnergyKwh());
+            minTotalDc = min(minTotalDc, r.getTotalDcEnergyKwh());
+            maxTotalAcPowerKw = max(maxTotalAcPowerKw, r.getTotalAcActivePowerKw());
+            if (r.getPowerKw() != null && (maxPowerKw == null || r.getPowerKw() > maxPowerKw)) maxPowerKw = r.getPowerKw();
+            dirty = true;
+        }
+
+        synchronized ReadingDayMeterStats takeIfDirty(LocalDate day) {
+            if (!dirty) return null;
+            dirty = false;
+            return new ReadingDayMeterStats(day, rows, lastTs,
+                    maxDailyAc, maxTotalAc, minTotalAc,
+                    maxDailyExport, maxTotalExport, minTotalExport,
+                    maxDailyImport, maxTotalImport, minTotalImport,
+                    maxDailyDc, maxTotalDc, minTotalDc,
+                    maxTotalAcPowerKw, maxPowerKw);
+        }
+
+        synchronized void markDirty() { dirty = true; }
+
+        synchronized boolean isDirty() { return dirty; }
+
+        private static BigDecimal max(BigDecimal a, BigDecimal b) {
+            return a == null ? b : (b == null || a.compareTo(b) >= 0 ? a : b);
+        }
+
+        private static BigDecimal min(BigDecimal a, BigDecimal b) {
+            return a == null ? b : (b == null || a.compareTo(b) <= 0 ? a : b);
+        }
+    }
+
+    // Running version of AggregationService.aggregateDayForSite: first / last energyKwh by ts, max powerKw
+    private static final class SiteAcc {
+        private LocalDateTime firstTs, lastTs;
+        private Double firstEnergy, lastEnergy;
+        private double maxPower;
+        private boolean dirty;
+
+        synchronized void add(Reading r) {
+            if (firstTs == null || r.getTs().isBefore(firstTs)) { firstTs = r.getTs(); firstEnergy = r.getEnergyKwh(); }
+            if (lastTs == null || !r.getTs().isBefore(lastTs)) { lastTs = r.getTs(); lastEnergy = r.getEnergyKwh(); }
+            maxPower(r.getPowerKw());
+            dirty = true;
+        }
+
+        synchronized void maxPower(Double kw) {
+            if (kw != null && kw > maxPower) maxPower = kw;
+        }
+
+        synchronized ReadingDay takeIfDirty(Long siteId, LocalDate day) {
+            if (!dirty) return null;
+            dirty = false;
+            double energy = 0.0;
+            if (firstEnergy != null && lastEnergy != null && lastEnergy >= firstEnergy) energy = lastEnergy - firstEnergy;
+            Site site = new Site(); site.setId(siteId);
+            return ReadingDay.builder().site(site).day(day)
+                    .energyTodayKwh(energy).maxPowerKw(maxPower).lastTs(lastTs)
+                    .build();
+        }
+
+        synchronized void markDirty() { dirty = true; }
+
+        synchronized boolean isDirty() { return dirty; }
+    }
+}
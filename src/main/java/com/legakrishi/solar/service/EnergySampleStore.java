@@ -0,0 +1,122 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.EnergySampleBlock;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.EnergySampleBlockRepository;
+import com.legakrishi.solar.repository.EnergySampleRepository;
+import com.legakrishi.solar.util.GorillaCodec;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads energy_sample history regardless of where it lives: raw rows for recent days,
+ * compressed energy_sample_block rows for compacted ones. A day may have both when late data
+ * arrived after compaction; the raw row wins on an identical sampleTime.
+ */
+@Service
+@Transactional(readOnly = true)
+public class EnergySampleStore {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private static final int DELETE_BATCH = 1_000;
+
+    private final EnergySampleRepository sampleRepo;
+    private final EnergySampleBlockRepository blockRepo;
+
+    public EnergySampleStore(EnergySampleRepository sampleRepo, EnergySampleBlockRepository blockRepo) {
+        this.sampleRepo = sampleRepo;
+        this.blockRepo = blockRepo;
+    }
+
+    /** Samples of one meter with sampleTime in [from, to], ordered by time. */
+    public List<EnergySample> find(Long siteId, MeterKind meter, Instant from, Instant to) {
+        List<EnergySample> raw = sampleRepo.findBySiteIdAndMeterKindAndSampleTimeBetweenOrderBySampleTime(
+                siteId, meter, from, to);
+        List<EnergySampleBlock> blocks = blockRepo.findOverlapping(siteId, meter, from, to);
+        if (blocks == null || blocks.isEmpty()) return raw;
+
+        TreeMap<Instant, EnergySample> byTime = new TreeMap<>();
+        for (EnergySampleBlock b : blocks) {
+            for (EnergySample s : GorillaCodec.decode(b.getData(), siteId, meter)) {
+                Instant t = s.getSampleTime();
+                if (!t.isBefore(from) && !t.isAfter(to)) byTime.put(t, s);
+            }
+        }
+        if (raw != null) {
+            for (EnergySample s : raw) byTime.put(s.getSampleTime(), s);
+        }
+        return new ArrayList<>(byTime.values());
+    }
+
+    /** {@link #find} for every meter of the site at once: one raw query and one block query. */
+    public Map<MeterKind, List<EnergySample>> findAll(Long siteId, Instant from, Instant to) {
+        Map<MeterKind, TreeMap<Instant, EnergySample>> byMeter = new EnumMap<>(MeterKind.class);
+        List<EnergySampleBlock> blocks = blockRepo.findOverlappingAllMeters(siteId, from, to);
+        if (blocks != null) {
+            for (EnergySampleBlock b : blocks) {
+                TreeMap<Instant, EnergySample> byTime = byMeter.computeIfAbsent(b.getMeterKind(), k -> new TreeMap<>());
+                for (EnergySample s : GorillaCodec.decode(b.getData(), siteId, b.getMeterKind())) {
+                    Instant t = s.getSampleTime();
+                    if (!t.isBefore(from) && !t.isAfter(to)) byTime.put(t, s);
+                }
+            }
+        }
+        List<EnergySample> raw = sampleRepo.findBySiteIdAndSampleTimeBetweenOrderBySampleTime(siteId, from, to);
+        if (raw != null) {
+            for (EnergySample s : raw) {
+                if (s.getMeterKind() == null || s.getSampleTime() == null) continue;
+                byMeter.computeIfAbsent(s.getMeterKind(), k -> new TreeMap<>()).put(s.getSampleTime(), s);
+            }
+        }
+        Map<MeterKind, List<EnergySample>> out = new EnumMap<>(MeterKind.class);
+        byMeter.forEach((meter, byTime) -> out.put(meter, new ArrayList<>(byTime.values())));
+        return out;
+    }
+
+    /**
+     * Moves the raw rows of one (site, meter, IST day) into its block, merging with an existing
+     * block if late rows arrived after an earlier compaction. Returns the number of raw rows moved.
+     */
+    @Transactional
+    public int compactDay(Long siteId, MeterKind meter, LocalDate day) {
+        Instant from = day.atStartOfDay(IST).toInstant();
+        Instant to = day.plusDays(1).atStartOfDay(IST).toInstant();
+        List<EnergySample> raw = sampleRepo.findSlice(siteId, meter, from, to);
+        if (raw.isEmpty()) return 0;
+
+        EnergySampleBlock block = blockRepo.findBySiteIdAndMeterKindAndBlockDay(siteId, meter, day)
+                .orElseGet(() -> EnergySampleBlock.builder().siteId(siteId).meterKind(meter).blockDay(day).build());
+        List<EnergySample> rows = raw;
+        if (block.getData() != null) {
+            TreeMap<Instant, EnergySample> byTime = new TreeMap<>();
+            for (EnergySample s : GorillaCodec.decode(block.getData(), siteId, meter)) byTime.put(s.getSampleTime(), s);
+            for (EnergySample s : raw) byTime.put(s.getSampleTime(), s);
+            rows = new ArrayList<>(byTime.values());
+        }
+
+        block.setData(GorillaCodec.encode(rows));
+        block.setSampleCount(rows.size());
+        block.setFirstTime(rows.get(0).getSampleTime());
+        block.setLastTime(rows.get(rows.size() - 1).getSampleTime());
+        block.setCompactedAt(Instant.now());
+        blockRepo.save(block);
+
+        // by id, so a row that lands in the slice meanwhile is left for the next run rather than lost
+        List<Long> ids = raw.stream().map(EnergySample::getId).sorted(Comparator.naturalOrder()).toList();
+        for (int i = 0; i < ids.size(); i += DELETE_BATCH) {
+            sampleRepo.deleteAllByIdInBatch(ids.subList(i, Math.min(ids.size(), i + DELETE_BATCH)));
+        }
+        return raw.size();
+    }
+}
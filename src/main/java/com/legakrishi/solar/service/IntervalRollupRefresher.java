@@ -0,0 +1,80 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.config.AggregationProps;
+import com.legakrishi.solar.iot.TelemetryListener;
+import com.legakrishi.solar.iot.TelemetryPoint;
+import com.legakrishi.solar.model.MeterKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link IntervalRollupService#STEPS} rollups current from the ingest path. Committed
+ * energy_sample rows only mark their (site, meter, IST day) dirty from the earliest sample time,
+ * O(1) per row; every lkf.aggregation.flush-ms the dirty hours up to the end of the day are rebuilt
+ * from storage. The first flush of a day in this process rebuilds the whole day, so buckets written
+ * before a restart or while rollups were off are brought in line too.
+ */
+@Component
+public class IntervalRollupRefresher implements TelemetryListener {
+
+    private static final Logger log = LoggerFactory.getLogger(IntervalRollupRefresher.class);
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private record MeterDay(Long siteId, MeterKind meter, LocalDate day) {}
+
+    private final IntervalRollupService rollups;
+    private final AggregationProps props;
+
+    private final Map<MeterDay, Instant> dirty = new ConcurrentHashMap<>();   // -> earliest dirty sample
+    private final Set<MeterDay> rebuilt = ConcurrentHashMap.newKeySet();
+
+    public IntervalRollupRefresher(IntervalRollupService rollups, AggregationProps props) {
+        this.rollups = rollups;
+        this.props = props;
+    }
+
+    @Override
+    public void onCommitted(List<TelemetryPoint> points) {
+        if (!props.isIntervalRollups()) return;
+        for (TelemetryPoint p : points) {
+            if (p.source() != TelemetryPoint.Source.ENERGY_SAMPLE || p.siteId() == null || p.meter() == null || p.time() == null) continue;
+            MeterDay k = new MeterDay(p.siteId(), p.meter(), p.time().atZone(IST).toLocalDate());
+            dirty.merge(k, p.time(), (a, b) -> a.isBefore(b) ? a : b);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${lkf.aggregation.flush-ms:30000}", fixedDelayString = "${lkf.aggregation.flush-ms:30000}")
+    public void flush() {
+        for (MeterDay k : new ArrayList<>(dirty.keySet())) {
+            Instant since = dirty.remove(k);
+            if (since == null) continue;
+            Instant dayStart = k.day().atStartOfDay(IST).toInstant();
+            Instant from = rebuilt.contains(k) ? IntervalRollupService.bucketStart(since, 60) : dayStart;
+            if (from.isBefore(dayStart)) from = dayStart;
+            try {
+                rollups.rollupRange(k.siteId(), k.meter(), from, k.day().plusDays(1).atStartOfDay(IST).toInstant(),
+                        IntervalRollupService.STEPS);
+                rebuilt.add(k);
+            } catch (Exception e) {
+                dirty.merge(k, since, (a, b) -> a.isBefore(b) ? a : b);
+                log.warn("Interval rollup of site={} meter={} day={} failed, retrying next cycle: {}",
+                        k.siteId(), k.meter(), k.day(), e.getMessage());
+            }
+        }
+
+        // yesterday stays for late rows; IntervalRollupJob rebuilds closed days anyway
+        LocalDate keepFrom = LocalDate.now(IST).minusDays(1);
+        rebuilt.removeIf(k -> k.day().isBefore(keepFrom));
+    }
+}
@@ -0,0 +1,225 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.config.StorageProps;
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.EnergySampleRollup;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.EnergySampleRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds energy_sample_rollup buckets (step minutes wide, aligned to IST midnight) from raw rows and
+ * day blocks alike, via {@link EnergySampleStore}. The chart steps in {@link #STEPS} are kept current
+ * by {@link IntervalRollupRefresher} and rebuilt for closed days by IntervalRollupJob; each rebuild
+ * also re-merges the day's {@link #DAY_STEP} bucket from the coarsest step it wrote.
+ */
+@Service
+public class IntervalRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(IntervalRollupService.class);
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private static final long IST_OFFSET_MS = 19_800_000L;          // +05:30, no DST
+
+    /** Materialized chart steps, finest first. */
+    public static final int[] STEPS = {5, 15, 60};
+
+    /** One bucket per IST day, merged from intraday buckets; serves the daily charts. */
+    public static final int DAY_STEP = 1440;
+
+    private final EnergySampleStore store;
+    private final EnergySampleRollupRepository rollupRepo;
+    private final StorageProps storage;
+
+    public IntervalRollupService(EnergySampleStore store, EnergySampleRollupRepository rollupRepo, StorageProps storage) {
+        this.store = store;
+        this.rollupRepo = rollupRepo;
+        this.storage = storage;
+    }
+
+    /** Replaces the buckets of one IST day. Returns the number of buckets written. */
+    @Transactional
+    public int rollupDay(Long siteId, MeterKind meter, LocalDate day, int stepMin) {
+        return rollupRange(siteId, meter, day.atStartOfDay(IST).toInstant(), day.plusDays(1).atStartOfDay(IST).toInstant(), stepMin);
+    }
+
+    /**
+     * Replaces the buckets of each step in [from, to), which must be aligned to every step and lie
+     * within one IST day. Energy deltas continue from the finest stored bucket before {@code from}.
+     * Buckets that outlived their raw rows are never replaced: nothing happens when the store has no
+     * rows for the slice, nor for a day before the site's raw-retention cutoff that already has buckets
+     * of these steps (a late sample there would otherwise stand in for the whole day).
+     */
+    @Transactional
+    public int rollupRange(Long siteId, MeterKind meter, Instant from, Instant to, int... steps) {
+        List<EnergySample> samples = store.find(siteId, meter, from, to).stream()
+                .filter(s -> s.getSampleTime().isBefore(to))
+                .toList();
+        if (samples.isEmpty()) return 0;
+        if (beforeRawCutoff(siteId, from)) {
+            for (int step : steps) {
+                if (rollupRepo.countSlice(siteId, meter, step, from, to) > 0) {
+                    log.debug("Not rebuilding site={} meter={} from {}: past raw retention, rollups kept", siteId, meter, from);
+                    return 0;
+                }
+            }
+        }
+        Double baseline = null;
+        Instant dayStart = from.atZone(IST).toLocalDate().atStartOfDay(IST).toInstant();
+        if (from.isAfter(dayStart)) {
+            baseline = rollupRepo.findFirstBySiteIdAndMeterKindAndStepMinAndBucketStartBetweenOrderByBucketStartDesc(
+                            siteId, meter, STEPS[0], dayStart, from.minusMillis(1))
+                    .map(EnergySampleRollup::getDailyAcEnergyKwh)
+                    .orElse(null);
+        }
+        int written = 0, coarsest = 0;
+        for (int step : steps) {
+            rollupRepo.deleteSlice(siteId, meter, step, from, to);
+            List<EnergySampleRollup> buckets = buckets(siteId, meter, step, samples, baseline);
+            rollupRepo.saveAll(buckets);
+            written += buckets.size();
+            coarsest = Math.max(coarsest, step);
+        }
+        if (coarsest > 0 && coarsest < DAY_STEP) written += rollupDayBucket(siteId, meter, dayStart, coarsest);
+        return written;
+    }
+
+    // raw rows before this are deleted (or about to be) by RetentionService
+    private boolean beforeRawCutoff(Long siteId, Instant from) {
+        StorageProps.Retention retention = storage.getRetention();
+        if (!retention.isEnabled()) return false;
+        Integer rawDays = retention.policyFor(siteId).getRawDays();
+        if (rawDays == null || rawDays <= 0) return false;
+        return from.isBefore(LocalDate.now(IST).minusDays(rawDays).atStartOfDay(IST).toInstant());
+    }
+
+    // the whole day's buckets of fromStep are stored by now (this call wrote the rest of the day)
+    private int rollupDayBucket(Long siteId, MeterKind meter, Instant dayStart, int fromStep) {
+        Instant dayEnd = dayStart.atZone(IST).plusDays(1).toInstant();
+        List<EnergySampleRollup> parts = rollupRepo.findBySiteIdAndMeterKindAndStepMinAndBucketStartBetweenOrderByBucketStart(
+                siteId, meter, fromStep, dayStart, dayEnd.minusMillis(1));
+        rollupRepo.deleteSlice(siteId, meter, DAY_STEP, dayStart, dayEnd);
+        if (parts.isEmpty()) return 0;
+        rollupRepo.save(merge(siteId, meter, DAY_STEP, dayStart, parts));
+        return 1;
+    }
+
+    /** Daily buckets of every meter of a site in [from, to), in time order. */
+    @Transactional(readOnly = true)
+    public List<EnergySampleRollup> readDays(Long siteId, Instant from, Instant to) {
+        return rollupRepo.findBySiteIdAndStepMinAndBucketStartBetweenOrderByBucketStart(siteId, DAY_STEP, from, to.minusMillis(1));
+    }
+
+    /** True when the day already has buckets of this width (raw rows may be gone since). */
+    @Transactional(readOnly = true)
+    public boolean hasDay(Long siteId, MeterKind meter, LocalDate day, int stepMin) {
+        Instant from = day.atStartOfDay(IST).toInstant();
+        Instant to = day.plusDays(1).atStartOfDay(IST).toInstant();
+        return rollupRepo.countSlice(siteId, meter, stepMin, from, to) > 0;
+    }
+
+    /**
+     * Stored buckets of every meter of a site in [from, to), in time order, from the coarsest step
+     * that divides {@code stepMin}, is aligned to {@code from} and has rows. Meters absent from the
+     * map have none (callers fall back to raw samples for them).
+     */
+    @Transactional(readOnly = true)
+    public Map<MeterKind, List<EnergySampleRollup>> readAll(Long siteId, Instant from, Instant to, int stepMin) {
+        Map<MeterKind, List<EnergySampleRollup>> out = new EnumMap<>(MeterKind.class);
+        for (int i = STEPS.length - 1; i >= 0 && out.isEmpty(); i--) {
+            int s = STEPS[i];
+            if (stepMin % s != 0 || !bucketStart(from, s).equals(from)) continue;
+            for (EnergySampleRollup r : rollupRepo.findBySiteIdAndStepMinAndBucketStartBetweenOrderByBucketStart(
+                    siteId, s, from, to.minusMillis(1))) {
+                out.computeIfAbsent(r.getMeterKind(), k -> new ArrayList<>()).add(r);
+            }
+        }
+        return out;
+    }
+
+    /** Start of the step-minute bucket holding {@code t}, buckets aligned to IST midnight. */
+    public static Instant bucketStart(Instant t, int stepMin) {
+        long stepMs = stepMin * 60_000L;
+        return Instant.ofEpochMilli(Math.floorDiv(t.toEpochMilli() + IST_OFFSET_MS, stepMs) * stepMs - IST_OFFSET_MS);
+    }
+
+    /** One bucket of {@code stepMin} starting at {@code start} from time-ordered finer buckets inside it. */
+    public static EnergySampleRollup merge(Long siteId, MeterKind meter, int stepMin, Instant start, List<EnergySampleRollup> parts) {
+        EnergySampleRollup m = EnergySampleRollup.builder()
+                .siteId(siteId).meterKind(meter).stepMin(stepMin).bucketStart(start)
+                .build();
+        for (EnergySampleRollup p : parts) {
+            m.setSampleCount(m.getSampleCount() + p.getSampleCount());
+            if (p.getPowerCount() > 0) {
+                m.setPowerCount(m.getPowerCount() + p.getPowerCount());
+                m.setPowerSumKw(m.getPowerSumKw() == null ? p.getPowerSumKw() : m.getPowerSumKw() + p.getPowerSumKw());
+                m.setPowerMinKw(m.getPowerMinKw() == null ? p.getPowerMinKw() : Math.min(m.getPowerMinKw(), p.getPowerMinKw()));
+                m.setPowerMaxKw(m.getPowerMaxKw() == null ? p.getPowerMaxKw() : Math.max(m.getPowerMaxKw(), p.getPowerMaxKw()));
+                m.setPowerLastKw(p.getPowerLastKw());
+            }
+            if (p.getDailyAcEnergyKwh() != null) m.setDailyAcEnergyKwh(p.getDailyAcEnergyKwh());
+            if (p.getDailyAcExportKwh() != null) m.setDailyAcExportKwh(p.getDailyAcExportKwh());
+            if (p.getDailyAcImportKwh() != null) m.setDailyAcImportKwh(p.getDailyAcImportKwh());
+            if (p.getDailyDcEnergyKwh() != null) m.setDailyDcEnergyKwh(p.getDailyDcEnergyKwh());
+            if (p.getAcEnergyDeltaKwh() != null) {
+                m.setAcEnergyDeltaKwh(m.getAcEnergyDeltaKwh() == null ? p.getAcEnergyDeltaKwh() : m.getAcEnergyDeltaKwh() + p.getAcEnergyDeltaKwh());
+            }
+        }
+        return m;
+    }
+
+    /** Group time-ordered samples of one IST day into buckets; empty buckets are not emitted. */
+    public static List<EnergySampleRollup> buckets(Long siteId, MeterKind meter, int stepMin, List<EnergySample> samples) {
+        return buckets(siteId, meter, stepMin, samples, null);
+    }
+
+    /** As above, for samples starting mid-day; {@code baselineAcKwh} is the daily AC counter just before them. */
+    public static List<EnergySampleRollup> buckets(Long siteId, MeterKind meter, int stepMin, List<EnergySample> samples,
+                                                   Double baselineAcKwh) {
+        List<EnergySampleRollup> out = new ArrayList<>();
+        EnergySampleRollup cur = null;
+        for (EnergySample s : samples) {
+            Instant start = bucketStart(s.getSampleTime(), stepMin);
+            if (cur == null || !cur.getBucketStart().equals(start)) {
+                cur = EnergySampleRollup.builder()
+                        .siteId(siteId).meterKind(meter).stepMin(stepMin).bucketStart(start)
+                        .build();
+                out.add(cur);
+            }
+            cur.setSampleCount(cur.getSampleCount() + 1);
+            Double p = s.getTotalAcPowerKw();
+            if (p != null) {
+                cur.setPowerCount(cur.getPowerCount() + 1);
+                cur.setPowerSumKw(cur.getPowerSumKw() == null ? p : cur.getPowerSumKw() + p);
+                cur.setPowerMinKw(cur.getPowerMinKw() == null ? p : Math.min(cur.getPowerMinKw(), p));
+                cur.setPowerMaxKw(cur.getPowerMaxKw() == null ? p : Math.max(cur.getPowerMaxKw(), p));
+                cur.setPowerLastKw(p);
+            }
+            if (s.getDailyAcEnergyKwh() != null) cur.setDailyAcEnergyKwh(s.getDailyAcEnergyKwh());
+            if (s.getDailyAcExportKwh() != null) cur.setDailyAcExportKwh(s.getDailyAcExportKwh());
+            if (s.getDailyAcImportKwh() != null) cur.setDailyAcImportKwh(s.getDailyAcImportKwh());
+            if (s.getDailyDcEnergyKwh() != null) cur.setDailyDcEnergyKwh(s.getDailyDcEnergyKwh());
+        }
+
+        // a counter below the previous one has been reset, so all of it is new energy
+        double prev = baselineAcKwh == null ? 0d : baselineAcKwh;
+        for (EnergySampleRollup b : out) {
+            Double last = b.getDailyAcEnergyKwh();
+            if (last == null) continue;
+            b.setAcEnergyDeltaKwh(last >= prev ? last - prev : last);
+            prev = last;
+        }
+        return out;
+    }
+}
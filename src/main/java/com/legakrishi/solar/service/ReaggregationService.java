@@ -0,0 +1,242 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.ReaggregationJob;
+import com.legakrishi.solar.repository.ReaggregationJobRepository;
+import com.legakrishi.solar.repository.SiteRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rebuilds reading_day_meter for a past range, e.g. after aggregation logic changed or late data arrived.
+ * The range is split into (day, site, meter) items, run on one thread per core in windows of a few
+ * items per thread; the job row is checkpointed after each window and RUNNING jobs resume on startup.
+ * One job runs at a time.
+ */
+@Service
+public class ReaggregationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReaggregationService.class);
+
+    public static final String RUNNING = "RUNNING", DONE = "DONE", FAILED = "FAILED", CANCELLED = "CANCELLED";
+
+    private record Item(LocalDate day, Long siteId, MeterKind meter) {}
+
+    // live numbers of the job being run by this process
+    private record Live(long jobId, long startedNanos, int startCheckpoint, AtomicInteger doneThisRun) {}
+
+    private final AggregationService aggregationService;
+    private final ReaggregationJobRepository jobRepo;
+    private final SiteRepository siteRepo;
+    private final int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final ExecutorService workers;
+    private final ExecutorService coordinator;
+
+    private volatile Live live;
+    private volatile boolean cancelRequested;
+
+    public ReaggregationService(AggregationService aggregationService, ReaggregationJobRepository jobRepo,
+                                SiteRepository siteRepo) {
+        this.aggregationService = aggregationService;
+        this.jobRepo = jobRepo;
+        this.siteRepo = siteRepo;
+        this.workers = Executors.newFixedThreadPool(parallelism, daemon("reaggregate-"));
+        this.coordinator = Executors.newSingleThreadExecutor(daemon("reaggregate-coordinator-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        List<ReaggregationJob> running = jobRepo.findByStatusOrderById(RUNNING);
+        for (ReaggregationJob job : running) {
+            log.info("Resuming re-aggregation job {} at item {} of {}", job.getId(), job.getCheckpoint(), job.getTotalItems());
+            coordinator.submit(() -> run(job.getId()));
+        }
+    }
+
+    /** Start a job; null / empty sites means every ACTIVE site, null / empty meters every MeterKind. */
+    public synchronized ReaggregationJob start(List<Long> siteIds, List<MeterKind> meters, LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) throw new IllegalArgumentException("invalid range " + from + " .. " + to);
+        if (!jobRepo.findByStatusOrderById(RUNNING).isEmpty()) throw new IllegalStateException("a re-aggregation job is already running");
+
+        List<Long> sites = siteIds == null || siteIds.isEmpty() ? siteRepo.findActiveIds() : siteIds;
+        List<MeterKind> kinds = meters == null || meters.isEmpty() ? List.of(MeterKind.values()) : meters;
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        Instant now = Instant.now();
+        ReaggregationJob job = jobRepo.save(ReaggregationJob.builder()
+                .siteIds(String.join(",", sites.stream().map(String::valueOf).toList()))
+                .meters(String.join(",", kinds.stream().map(Enum::name).toList()))
+                .fromDay(from)
+                .toDay(to)
+                .status(RUNNING)
+                .totalItems(Math.toIntExact(days * sites.size() * kinds.size()))
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        coordinator.submit(() -> run(job.getId()));
+        return job;
+    }
+
+    /**
+     * Stop a RUNNING job: the one this process runs stops after its current window, any other (queued here,
+     * or left RUNNING by another instance) is marked CANCELLED right away. False when the job is not running.
+     */
+    public synchronized boolean cancel(Long jobId) {
+        ReaggregationJob job = jobRepo.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("no re-aggregation job " + jobId));
+        if (!RUNNING.equals(job.getStatus())) return false;
+        Live l = live;
+        if (l != null && l.jobId() == jobId) cancelRequested = true;
+        else finish(job, CANCELLED);
+        return true;
+    }
+
+    /** Status, counters, items/s and ETA (the last two only while this process runs the job). */
+    public Map<String, Object> progress(Long jobId) {
+        ReaggregationJob job = jobRepo.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("no re-aggregation job " + jobId));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("id", job.getId());
+        out.put("status", job.getStatus());
+        out.put("sites", job.getSiteIds());
+        out.put("meters", job.getMeters());
+        out.put("from", job.getFromDay());
+        out.put("to", job.getToDay());
+        out.put("totalItems", job.getTotalItems());
+
+        int done = job.getCheckpoint();
+        Live l = live;
+        if (l != null && l.jobId() == jobId) {
+            done = Math.max(done, l.startCheckpoint() + l.doneThisRun().get());
+            double secs = (System.nanoTime() - l.startedNanos()) / 1e9;
+            double perSecond = secs > 0 ? l.doneThisRun().get() / secs : 0d;
+            out.put("itemsPerSecond", Math.round(perSecond * 10) / 10.0);
+            out.put("etaSeconds", perSecond > 0 ? Math.round((job.getTotalItems() - done) / perSecond) : null);
+        }
+        out.put("doneItems", done);
+        out.put("failedItems", job.getFailedItems());
+        out.put("percent", job.getTotalItems() == 0 ? 100.0
+                : Math.round(1000.0 * done / job.getTotalItems()) / 10.0);
+        out.put("lastError", job.getLastError());
+        out.put("updatedAt", job.getUpdatedAt());
+        out.put("finishedAt", job.getFinishedAt());
+        return out;
+    }
+
+    public List<ReaggregationJob> recent() {
+        return jobRepo.findTop20ByOrderByIdDesc();
+    }
+
+    private void run(Long jobId) {
+        ReaggregationJob job = jobRepo.findById(jobId).orElse(null);
+        if (job == null || !RUNNING.equals(job.getStatus())) return;
+
+        List<Item> items = items(job);
+        int window = parallelism * 8;
+        Live l = new Live(jobId, System.nanoTime(), job.getCheckpoint(), new AtomicInteger());
+        live = l;
+        cancelRequested = false;
+        try {
+            for (int from = job.getCheckpoint(); from < items.size(); from += window) {
+                if (Thread.currentThread().isInterrupted()) return;   // shutting down: resumes on next start
+                if (cancelRequested || cancelledElsewhere(jobId)) {
+                    finish(job, CANCELLED);
+                    return;
+                }
+                List<Future<?>> futures = new ArrayList<>();
+                for (Item item : items.subList(from, Math.min(items.size(), from + window))) {
+                    futures.add(workers.submit(() -> {
+                        aggregationService.aggregateDayPerMeter(item.siteId(), item.day(), item.meter());
+                        l.doneThisRun().incrementAndGet();
+                    }));
+                }
+                int failed = 0;
+                String error = null;
+                for (Future<?> f : futures) {
+                    try {
+                        f.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;                  // shutting down: stays RUNNING, resumes from the checkpoint
+                    } catch (Exception e) {
+                        failed++;
+                        error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                    }
+                }
+                job.setCheckpoint(Math.min(items.size(), from + window));
+                job.setFailedItems(job.getFailedItems() + failed);
+                if (error != null) job.setLastError(truncate(error));
+                job.setUpdatedAt(Instant.now());
+                job = jobRepo.save(job);
+            }
+            finish(job, job.getFailedItems() > 0 ? FAILED : DONE);
+            log.info("Re-aggregation job {} finished: {} items, {} failed", jobId, job.getTotalItems(), job.getFailedItems());
+        } catch (Exception e) {
+            log.warn("Re-aggregation job {} stopped at item {}: {}", jobId, job.getCheckpoint(), e.getMessage());
+            job.setLastError(truncate(e.getMessage()));
+            finish(job, FAILED);
+        } finally {
+            live = null;
+        }
+    }
+
+    // cancel() ran before this run registered as live, or in another instance
+    private boolean cancelledElsewhere(Long jobId) {
+        return jobRepo.findById(jobId).map(j -> CANCELLED.equals(j.getStatus())).orElse(true);
+    }
+
+    private void finish(ReaggregationJob job, String status) {
+        job.setStatus(status);
+        job.setUpdatedAt(Instant.now());
+        job.setFinishedAt(Instant.now());
+        jobRepo.save(job);
+    }
+
+    // day-major, so a half-done job has whole early days finished rather than a scattering
+    private static List<Item> items(ReaggregationJob job) {
+        List<Long> sites = Arrays.stream(job.getSiteIds().split(",")).filter(s -> !s.isBlank()).map(Long::valueOf).toList();
+        List<MeterKind> meters = Arrays.stream(job.getMeters().split(",")).filter(s -> !s.isBlank()).map(MeterKind::valueOf).toList();
+        List<Item> items = new ArrayList<>(job.getTotalItems());
+        for (LocalDate d = job.getFromDay(); !d.isAfter(job.getToDay()); d = d.plusDays(1)) {
+            for (Long siteId : sites) {
+                for (MeterKind meter : meters) items.add(new Item(d, siteId, meter));
+            }
+        }
+        return items;
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= 512 ? s : s.substring(0, 512);
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
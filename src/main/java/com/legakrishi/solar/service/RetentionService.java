@@ -0,0 +1,299 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.config.StorageProps;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.DbDialect;
+import com.legakrishi.solar.repository.EnergySampleBlockRepository;
+import com.legakrishi.solar.repository.EnergySampleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies {@link StorageProps.Retention}: energy_sample days about to leave raw retention are rolled
+ * up first (see {@link IntervalRollupService}; a site with a day that fails to roll up keeps its raw
+ * energy_sample rows from that day on), then expired rows are deleted per table and per site
+ * scope in chunk-size transactions with pause-ms between them, so ingest never waits long on a lock.
+ * Bytes are estimates (fixed per-row sizes, real length for day blocks); H2 reuses freed pages
+ * but only shrinks the file on SHUTDOWN COMPACT.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+
+    private enum Tier { RAW, ROLLUP }
+
+    // table, time column compared to the cutoff, SQL for the approximate stored size of one row
+    private enum Table {
+        READING("reading", "ts", "220", Tier.RAW),
+        ENERGY_SAMPLE("energy_sample", "sample_time", "140", Tier.RAW),
+        ENERGY_SAMPLE_BLOCK("energy_sample_block", "last_time", "80 + octet_length(data)", Tier.RAW),
+        ENERGY_SAMPLE_ROLLUP("energy_sample_rollup", "bucket_start", "150", Tier.ROLLUP);
+
+        final String table, timeColumn, rowBytes;
+        final Tier tier;
+
+        Table(String table, String timeColumn, String rowBytes, Tier tier) {
+            this.table = table;
+            this.timeColumn = timeColumn;
+            this.rowBytes = rowBytes;
+            this.tier = tier;
+        }
+    }
+
+    // one overridden site, or every other site ("global")
+    private record Scope(String label, Long siteId, List<Long> excluded, StorageProps.Policy policy) {}
+
+    public record Line(String table, String scope, Instant cutoff, long rows, long bytes) {}
+
+    public record Report(boolean dryRun, int rolledUpDays, List<Line> lines) {
+        public long rows() { return lines.stream().mapToLong(Line::rows).sum(); }
+        public long bytes() { return lines.stream().mapToLong(Line::bytes).sum(); }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final DbDialect dialect;
+    private final StorageProps.Retention props;
+    private final IntervalRollupService rollups;
+    private final EnergySampleRepository sampleRepo;
+    private final EnergySampleBlockRepository blockRepo;
+    private final MeterRegistry meters;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RetentionService(JdbcTemplate jdbc, PlatformTransactionManager txManager, DbDialect dialect,
+                            StorageProps props, IntervalRollupService rollups,
+                            EnergySampleRepository sampleRepo, EnergySampleBlockRepository blockRepo,
+                            MeterRegistry meters) {
+        this.jdbc = jdbc;
+        this.dialect = dialect;
+        this.props = props.getRetention();
+        this.rollups = rollups;
+        this.sampleRepo = sampleRepo;
+        this.blockRepo = blockRepo;
+        this.meters = meters;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /** What {@link #apply()} would delete right now, without touching anything. */
+    public Report plan() {
+        List<Line> lines = new ArrayList<>();
+        for (Scope scope : scopes()) {
+            for (Table t : Table.values()) {
+                Instant cutoff = cutoff(scope.policy(), t.tier);
+                if (cutoff == null) continue;
+                String sql = "select count(*), coalesce(sum(" + t.rowBytes + "), 0) from " + t.table
+                        + " where " + t.timeColumn + " < ?" + scopeSql(scope);
+                long[] r = jdbc.query(sql, ps -> bind(ps, t, cutoff, scope),
+                        rs -> rs.next() ? new long[]{rs.getLong(1), rs.getLong(2)} : new long[2]);
+                lines.add(new Line(t.table, scope.label(), cutoff, r[0], r[1]));
+            }
+        }
+        return new Report(true, 0, lines);
+    }
+
+    public Report apply() {
+        if (!running.compareAndSet(false, true)) throw new IllegalStateException("retention is already running");
+        try {
+            Map<Long, Instant> held = new HashMap<>();     // site -> start of its earliest day that failed to roll up
+            int rolled = rollupExpiringDays(held);
+            List<Line> lines = new ArrayList<>();
+            for (Scope scope : scopes()) {
+                for (Table t : Table.values()) {
+                    Instant cutoff = cutoff(scope.policy(), t.tier);
+                    if (cutoff == null) continue;
+                    if (t == Table.ENERGY_SAMPLE || t == Table.ENERGY_SAMPLE_BLOCK) {
+                        for (Map.Entry<Scope, Instant> e : holdBack(scope, cutoff, held).entrySet()) {
+                            lines.add(deleteBefore(t, e.getKey(), e.getValue()));
+                        }
+                    } else {
+                        lines.add(deleteBefore(t, scope, cutoff));
+                    }
+                }
+            }
+            if (!held.isEmpty()) {
+                log.warn("Retention: raw energy_sample kept from {} for sites whose rollup failed", held);
+            }
+            Report report = new Report(false, rolled, lines);
+            if (report.rows() > 0 || rolled > 0) {
+                log.info("Retention: rolled up {} days, removed {} rows (~{} KB)", rolled, report.rows(), report.bytes() / 1024);
+            }
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // The scope's deletes with the sites in 'held' split off, each with its cutoff moved back to its held day
+    private static Map<Scope, Instant> holdBack(Scope scope, Instant cutoff, Map<Long, Instant> held) {
+        Map<Scope, Instant> out = new LinkedHashMap<>();
+        if (scope.siteId() != null) {
+            Instant h = held.get(scope.siteId());
+            out.put(scope, h != null && h.isBefore(cutoff) ? h : cutoff);
+            return out;
+        }
+        List<Long> excluded = new ArrayList<>(scope.excluded());
+        for (Map.Entry<Long, Instant> e : held.entrySet()) {
+            if (scope.excluded().contains(e.getKey())) continue;
+            excluded.add(e.getKey());
+            Instant h = e.getValue().isBefore(cutoff) ? e.getValue() : cutoff;
+            out.put(new Scope("site " + e.getKey(), e.getKey(), List.of(), scope.policy()), h);
+        }
+        out.put(new Scope(scope.label(), null, excluded, scope.policy()), cutoff);
+        return out;
+    }
+
+    // Build rollups for every energy_sample day that is about to lose its raw rows (once per day).
+    // Days that fail are recorded in 'held' so their raw rows are not deleted.
+    private int rollupExpiringDays(Map<Long, Instant> held) {
+        int step = Math.max(1, props.getRollupStepMinutes());
+        Instant latest = null;
+        for (Scope scope : scopes()) {
+            Instant c = cutoff(scope.policy(), Tier.RAW);
+            if (c != null && (latest == null || c.isAfter(latest))) latest = c;
+        }
+        if (latest == null) return 0;
+
+        Map<String, Object[]> oldest = new LinkedHashMap<>();   // "site:meter" -> {siteId, meter, first day}
+        for (Object[] r : sampleRepo.findOldestBefore(latest)) {
+            merge(oldest, (Long) r[0], (MeterKind) r[1], ((Instant) r[2]).atZone(IST).toLocalDate());
+        }
+        for (Object[] r : blockRepo.findOldestBefore(latest)) {
+            merge(oldest, (Long) r[0], (MeterKind) r[1], (LocalDate) r[2]);
+        }
+
+        int days = 0;
+        for (Object[] o : oldest.values()) {
+            Long siteId = (Long) o[0];
+            MeterKind meter = (MeterKind) o[1];
+            Instant cutoff = cutoff(props.policyFor(siteId), Tier.RAW);
+            if (cutoff == null) continue;
+            LocalDate cutoffDay = cutoff.atZone(IST).toLocalDate();
+            for (LocalDate d = (LocalDate) o[2]; d.isBefore(cutoffDay); d = d.plusDays(1)) {
+                try {
+                    if (rollups.hasDay(siteId, meter, d, step)) continue;
+                    if (rollups.rollupDay(siteId, meter, d, step) > 0) days++;
+                } catch (Exception e) {
+                    log.warn("Rollup of site={} meter={} day={} failed, keeping its raw rows: {}", siteId, meter, d, e.getMessage());
+                    Instant dayStart = d.atStartOfDay(IST).toInstant();
+                    held.merge(siteId, dayStart, (x, y) -> x.isBefore(y) ? x : y);
+                }
+                pause();
+            }
+        }
+        return days;
+    }
+
+    private static void merge(Map<String, Object[]> oldest, Long siteId, MeterKind meter, LocalDate day) {
+        oldest.merge(siteId + ":" + meter, new Object[]{siteId, meter, day},
+                (a, b) -> ((LocalDate) b[2]).isBefore((LocalDate) a[2]) ? b : a);
+    }
+
+    private Line deleteBefore(Table t, Scope scope, Instant cutoff) {
+        int chunk = Math.max(1, props.getChunkSize());
+        String select = "select id, " + t.rowBytes + " from " + t.table
+                + " where " + t.timeColumn + " < ?" + scopeSql(scope) + " limit " + chunk;
+        Counter rowsRemoved = Counter.builder("retention.rows.removed")
+                .description("Telemetry rows deleted by the retention policy")
+                .tag("table", t.table)
+                .register(meters);
+        Counter bytesReclaimed = Counter.builder("retention.bytes.reclaimed")
+                .description("Estimated bytes freed by the retention policy")
+                .baseUnit("bytes")
+                .tag("table", t.table)
+                .register(meters);
+
+        long rows = 0, bytes = 0;
+        while (true) {
+            List<long[]> batch = jdbc.query(select, ps -> bind(ps, t, cutoff, scope),
+                    (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+            if (batch.isEmpty()) break;
+
+            Object[] ids = new Object[batch.size()];
+            long batchBytes = 0;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = batch.get(i)[0];
+                batchBytes += batch.get(i)[1];
+            }
+            String delete = "delete from " + t.table + " where id in (" + "?,".repeat(ids.length - 1) + "?)";
+            Integer n = tx.execute(status -> jdbc.update(delete, ids));
+            int removed = n == null ? 0 : n;
+            rows += removed;
+            bytes += batchBytes;
+            rowsRemoved.increment(removed);
+            bytesReclaimed.increment(batchBytes);
+
+            if (batch.size() < chunk) break;
+            pause();
+        }
+        return new Line(t.table, scope.label(), cutoff, rows, bytes);
+    }
+
+    private List<Scope> scopes() {
+        List<Scope> scopes = new ArrayList<>();
+        List<Long> overridden = new ArrayList<>(props.getSites().keySet());
+        for (Long siteId : overridden) {
+            scopes.add(new Scope("site " + siteId, siteId, List.of(), props.policyFor(siteId)));
+        }
+        scopes.add(new Scope("global", null, overridden, props.policyFor(null)));
+        return scopes;
+    }
+
+    private static String scopeSql(Scope scope) {
+        if (scope.siteId() != null) return " and site_id = ?";
+        if (scope.excluded().isEmpty()) return "";
+        return " and site_id not in (" + "?,".repeat(scope.excluded().size() - 1) + "?)";
+    }
+
+    private void bind(PreparedStatement ps, Table t, Instant cutoff, Scope scope) throws SQLException {
+        if (t == Table.READING) {
+            dialect.setLocalDateTime(ps, 1, LocalDateTime.ofInstant(cutoff, IST));   // reading.ts is IST wall clock
+        } else {
+            dialect.setInstant(ps, 1, cutoff);
+        }
+        int i = 2;
+        if (scope.siteId() != null) {
+            ps.setLong(i, scope.siteId());
+        } else {
+            for (Long id : scope.excluded()) ps.setLong(i++, id);
+        }
+    }
+
+    // start of the IST day `days` ago; null = keep forever
+    private static Instant cutoff(StorageProps.Policy policy, Tier tier) {
+        Integer days = tier == Tier.RAW ? policy.getRawDays() : policy.getRollupDays();
+        if (days == null || days <= 0) return null;
+        return LocalDate.now(IST).minusDays(days).atStartOfDay(IST).toInstant();
+    }
+
+    private void pause() {
+        if (props.getPauseMs() <= 0) return;
+        try {
+            Thread.sleep(props.getPauseMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.legakrishi.solar.util;
+
+import java.util.Arrays;
+
+/**
+ * Picks which points of a time series to draw when there are more than the chart has pixels for.
+ * Both return indexes into the input, ascending, always including the first and last point, so the
+ * caller copies the kept (time, value) pairs. Input times must be ascending.
+ */
+public final class Downsampler {
+
+    private Downsampler() {}
+
+    /**
+     * Largest-Triangle-Three-Buckets (Steinarsson, 2013): one point per bucket, the one forming the
+     * largest triangle with the previously kept point and the next bucket's average. Keeps the shape
+     * and the peaks of a curve with far fewer points.
+     */
+    public static int[] lttb(long[] t, double[] v, int n, int threshold) {
+        if (threshold >= n || threshold < 3) return all(n);
+        int[] keep = new int[threshold];
+        int k = 0;
+        keep[k++] = 0;
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            // average of the next bucket
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgT = 0, avgV = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgT += t[j];
+                avgV += v[j];
+            }
+            int len = Math.max(1, avgEnd - avgStart);
+            avgT /= len;
+            avgV /= len;
+
+            // point of this bucket with the largest triangle (a, point, next average)
+            int from = (int) Math.floor(i * every) + 1;
+            int to = (int) Math.floor((i + 1) * every) + 1;
+            double ta = t[a], va = v[a], maxArea = -1;
+            int pick = from;
+            for (int j = from; j < to; j++) {
+                double area = Math.abs((ta - avgT) * (v[j] - va) - (ta - t[j]) * (avgV - va));
+                if (area > maxArea) {
+                    maxArea = area;
+                    pick = j;
+                }
+            }
+            keep[k++] = pick;
+            a = pick;
+        }
+        keep[k++] = n - 1;
+        return k == keep.length ? keep : Arrays.copyOf(keep, k);
+    }
+
+    /**
+     * Min and max of each of (maxPoints - 2) / 2 equal time slices (min-max per pixel column), plus the
+     * first and last point: every local extreme survives, which is what a power chart is read for.
+     */
+    public static int[] minMax(long[] t, double[] v, int n, int maxPoints) {
+        if (maxPoints >= n || maxPoints < 4) return all(n);
+        int slices = (maxPoints - 2) / 2;                 // the end points take two of maxPoints
+        long t0 = t[0], span = Math.max(1, t[n - 1] - t0 + 1);
+        int[] keep = new int[slices * 2 + 2];
+        int k = 0;
+        keep[k++] = 0;
+        int i = 1;
+        for (int s = 0; s < slices && i < n - 1; s++) {
+            long end = t0 + (span * (s + 1)) / slices;
+            int min = -1, max = -1;
+            for (; i < n - 1 && t[i] < end; i++) {
+                if (min < 0 || v[i] < v[min]) min = i;
+                if (max < 0 || v[i] > v[max]) max = i;
+            }
+            if (min < 0) continue;
+            if (min == max) {
+                keep[k++] = min;
+            } else {
+                keep[k++] = Math.min(min, max);
+                keep[k++] = Math.max(min, max);
+            }
+        }
+        keep[k++] = n - 1;
+        return Arrays.copyOf(keep, k);
+    }
+
+    private static int[] all(int n) {
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        return idx;
+    }
+}
@@ -0,0 +1,282 @@
+package com.legakrishi.solar.util;
+
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.MeterKind;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Gorilla-style columnar encoding of the EnergySample rows of one (site, meter, day) block.
+ * Timestamps: first one in full (epoch millis), then delta-of-delta in variable-width buckets,
+ * so a steady 1-minute cadence costs one bit per row. Each double column: XOR with the previous
+ * value of that column, keeping only the meaningful bits. deviceId / firmware: "same as previous" bit.
+ * Rows must be in sampleTime order; siteId and meterKind live on the block row, not in the bytes.
+ */
+public final class GorillaCodec {
+
+    private static final int VERSION = 1;
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column(EnergySample::getTotalAcPowerKw, EnergySample::setTotalAcPowerKw),
+            new Column(EnergySample::getDailyAcEnergyKwh, EnergySample::setDailyAcEnergyKwh),
+            new Column(EnergySample::getDailyAcExportKwh, EnergySample::setDailyAcExportKwh),
+            new Column(EnergySample::getDailyAcImportKwh, EnergySample::setDailyAcImportKwh),
+            new Column(EnergySample::getDailyDcEnergyKwh, EnergySample::setDailyDcEnergyKwh));
+
+    private GorillaCodec() {}
+
+    public static byte[] encode(List<EnergySample> rows) {
+        BitWriter w = new BitWriter(64 + rows.size() * 12);
+        w.write(VERSION, 8);
+        w.write(rows.size(), 32);
+
+        // sub-millisecond parts are rare; carried in a separate section only when present
+        boolean subMillis = rows.stream().anyMatch(s -> s.getSampleTime().getNano() % 1_000_000 != 0);
+        w.writeBit(subMillis);
+        long prev = 0, prevDelta = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            long t = rows.get(i).getSampleTime().toEpochMilli();
+            if (i == 0) {
+                w.write(t, 64);
+            } else {
+                long delta = t - prev;
+                writeDeltaOfDelta(w, delta - prevDelta);
+                prevDelta = delta;
+            }
+            prev = t;
+        }
+        if (subMillis) {
+            for (EnergySample s : rows) w.write(s.getSampleTime().getNano() % 1_000_000, 20);
+        }
+
+        for (Column c : COLUMNS) writeDoubles(w, rows, c.get);
+        writeStrings(w, rows, EnergySample::getDeviceId);
+        writeStrings(w, rows, EnergySample::getFirmware);
+        return w.toByteArray();
+    }
+
+    public static List<EnergySample> decode(byte[] data, Long siteId, MeterKind meter) {
+        BitReader r = new BitReader(data);
+        int version = (int) r.read(8);
+        if (version != VERSION) throw new IllegalStateException("unsupported block version " + version);
+        int count = (int) r.read(32);
+
+        List<EnergySample> rows = new ArrayList<>(count);
+        boolean subMillis = r.readBit();
+        long t = 0, delta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                t = r.read(64);
+            } else {
+                delta += readDeltaOfDelta(r);
+                t += delta;
+            }
+            EnergySample s = new EnergySample();
+            s.setSiteId(siteId);
+            s.setMeterKind(meter);
+            s.setSampleTime(Instant.ofEpochMilli(t));
+            rows.add(s);
+        }
+        if (subMillis) {
+            for (EnergySample s : rows) s.setSampleTime(s.getSampleTime().plusNanos(r.read(20)));
+        }
+
+        for (Column c : COLUMNS) readDoubles(r, rows, c.set);
+        readStrings(r, rows, EnergySample::setDeviceId);
+        readStrings(r, rows, EnergySample::setFirmware);
+        return rows;
+    }
+
+    // ---- timestamps ----
+
+    // '0' | '10'+8 | '110'+14 | '1110'+20 | '1111'+64 bits, values two's complement
+    private static void writeDeltaOfDelta(BitWriter w, long dod) {
+        if (dod == 0) {
+            w.writeBit(false);
+        } else if (fits(dod, 8)) {
+            w.write(0b10, 2);
+            w.write(dod, 8);
+        } else if (fits(dod, 14)) {
+            w.write(0b110, 3);
+            w.write(dod, 14);
+        } else if (fits(dod, 20)) {
+            w.write(0b1110, 4);
+            w.write(dod, 20);
+        } else {
+            w.write(0b1111, 4);
+            w.write(dod, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader r) {
+        if (!r.readBit()) return 0;
+        if (!r.readBit()) return r.readSigned(8);
+        if (!r.readBit()) return r.readSigned(14);
+        if (!r.readBit()) return r.readSigned(20);
+        return r.read(64);
+    }
+
+    private static boolean fits(long v, int bits) {
+        long half = 1L << (bits - 1);
+        return v >= -half && v < half;
+    }
+
+    // ---- doubles ----
+
+    // per value: '0' null | '1' then '0' same as previous | '10' xor in previous window | '11' lead(5) len-1(6) bits
+    private static void writeDoubles(BitWriter w, List<EnergySample> rows, Function<EnergySample, Double> get) {
+        long prev = 0;
+        int prevLead = -1, prevTrail = 0;
+        for (EnergySample s : rows) {
+            Double v = get.apply(s);
+            w.writeBit(v != null);
+            if (v == null) continue;
+
+            long bits = Double.doubleToRawLongBits(v);
+            long xor = bits ^ prev;
+            prev = bits;
+            if (xor == 0) {
+                w.writeBit(false);
+                continue;
+            }
+            w.writeBit(true);
+            int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trail = Long.numberOfTrailingZeros(xor);
+            if (prevLead >= 0 && lead >= prevLead && trail >= prevTrail) {
+                w.writeBit(false);
+                w.write(xor >>> prevTrail, 64 - prevLead - prevTrail);
+            } else {
+                int len = 64 - lead - trail;
+                w.writeBit(true);
+                w.write(lead, 5);
+                w.write(len - 1, 6);
+                w.write(xor >>> trail, len);
+                prevLead = lead;
+                prevTrail = trail;
+            }
+        }
+    }
+
+    private static void readDoubles(BitReader r, List<EnergySample> rows, BiConsumer<EnergySample, Double> set) {
+        long prev = 0;
+        int lead = -1, trail = 0;
+        for (EnergySample s : rows) {
+            if (!r.readBit()) continue;
+            if (r.readBit()) {
+                if (!r.readBit()) {
+                    prev ^= r.read(64 - lead - trail) << trail;
+                } else {
+                    lead = (int) r.read(5);
+                    int len = (int) r.read(6) + 1;
+                    trail = 64 - lead - len;
+                    prev ^= r.read(len) << trail;
+                }
+            }
+            set.accept(s, Double.longBitsToDouble(prev));
+        }
+    }
+
+    // ---- strings ----
+
+    // per value: '0' same as previous | '1' then '0' null | '11' length(16) + UTF-8 bytes
+    private static void writeStrings(BitWriter w, List<EnergySample> rows, Function<EnergySample, String> get) {
+        String prev = null;
+        for (EnergySample s : rows) {
+            String v = get.apply(s);
+            if (Objects.equals(v, prev)) {
+                w.writeBit(false);
+                continue;
+            }
+            w.writeBit(true);
+            w.writeBit(v != null);
+            if (v != null) {
+                byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                int len = Math.min(bytes.length, 0xFFFF);
+                // cut on a character boundary: never leave a UTF-8 continuation byte (10xxxxxx) behind the cut
+                while (len < bytes.length && len > 0 && (bytes[len] & 0xC0) == 0x80) len--;
+                w.write(len, 16);
+                for (int i = 0; i < len; i++) w.write(bytes[i], 8);
+            }
+            prev = v;
+        }
+    }
+
+    private static void readStrings(BitReader r, List<EnergySample> rows, BiConsumer<EnergySample, String> set) {
+        String prev = null;
+        for (EnergySample s : rows) {
+            if (r.readBit()) {
+                if (r.readBit()) {
+                    byte[] bytes = new byte[(int) r.read(16)];
+                    for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) r.read(8);
+                    prev = new String(bytes, StandardCharsets.UTF_8);
+                } else {
+                    prev = null;
+                }
+            }
+            set.accept(s, prev);
+        }
+    }
+
+    private record Column(Function<EnergySample, Double> get, BiConsumer<EnergySample, Double> set) {}
+
+    // ---- bit streams (MSB first) ----
+
+    private static final class BitWriter {
+        private byte[] buf;
+        private long pos;
+
+        BitWriter(int initialBytes) {
+            buf = new byte[Math.max(16, initialBytes)];
+        }
+
+        void writeBit(boolean bit) {
+            int i = (int) (pos >>> 3);
+            if (i == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            if (bit) buf[i] |= (byte) (0x80 >>> (pos & 7));
+            pos++;
+        }
+
+        /** Low {@code n} bits of {@code value}. */
+        void write(long value, int n) {
+            for (int i = n - 1; i >= 0; i--) writeBit(((value >>> i) & 1) != 0);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, (int) ((pos + 7) >>> 3));
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buf;
+        private long pos;
+
+        BitReader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        boolean readBit() {
+            int i = (int) (pos >>> 3);
+            if (i >= buf.length) throw new IllegalStateException("block truncated at bit " + pos);
+            boolean bit = ((buf[i] >>> (7 - (pos & 7))) & 1) != 0;
+            pos++;
+            return bit;
+        }
+
+        long read(int n) {
+            long v = 0;
+            for (int i = 0; i < n; i++) v = (v << 1) | (readBit() ? 1 : 0);
+            return v;
+        }
+
+        long readSigned(int n) {
+            return (read(n) << (64 - n)) >> (64 - n);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.legakrishi.solar.ws;
+
+import com.legakrishi.solar.iot.TelemetryListener;
+import com.legakrishi.solar.iot.TelemetryPoint;
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.repository.EnergySampleRepository;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes /topic/intraday/{siteId} ticks from values the ingest path already has in hand.
+ * Keeps the newest power per (site, meter), so a tick for one meter still carries the other two
+ * without the three findTop...LessThanEqual queries per sample. A meter is read from the DB only
+ * the first time a site is seen after startup.
+ * Fed by the ingest core after commit: one tick per site per chunk, never for replayed samples.
+ */
+@Component
+public class LiveTickService implements TelemetryListener {
+
+    private static final DateTimeFormatter HHMM = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final SimpMessagingTemplate broker;
+    private final EnergySampleRepository repo;
+
+    private final Map<Long, SiteState> sites = new ConcurrentHashMap<>();
+
+    public LiveTickService(SimpMessagingTemplate broker, EnergySampleRepository repo) {
+        this.broker = broker;
+        this.repo = repo;
+    }
+
+    // the intraday chart is drawn from energy_sample, so only those rows tick
+    @Override
+    public void onCommitted(List<TelemetryPoint> points) {
+        Map<Long, Map<MeterKind, Latest>> newest = new HashMap<>();
+        Map<Long, Instant> tickAt = new HashMap<>();
+        for (TelemetryPoint p : points) {
+            if (p.replay() || p.source() != TelemetryPoint.Source.ENERGY_SAMPLE) continue;
+            Latest l = new Latest(p.time(), p.powerKw() == null ? 0.0 : p.powerKw());
+            newest.computeIfAbsent(p.siteId(), id -> new EnumMap<>(MeterKind.class))
+                    .merge(p.meter(), l, (a, b) -> b.sampleTime().isBefore(a.sampleTime()) ? a : b);
+            tickAt.merge(p.siteId(), p.time(), (a, b) -> b.isAfter(a) ? b : a);
+        }
+        newest.forEach((siteId, perMeter) -> publish(siteId, tickAt.get(siteId), perMeter));
+    }
+
+    /** Merge the newest power per meter at {@code ts} and publish one consolidated tick for the site. */
+    public void publish(Long siteId, Instant ts, Map<MeterKind, Latest> newest) {
+        SiteState state = sites.computeIfAbsent(siteId, id -> seed(id, ts));
+
+        Map<String, Double> perMeterOut = new LinkedHashMap<>();
+        synchronized (state) {
+            newest.forEach(state::offer);
+            for (MeterKind kind : MeterKind.values()) {
+                Latest l = state.latest.get(kind);
+                perMeterOut.put(kind.name(), l == null ? 0.0 : l.powerKw());
+            }
+        }
+
+        // Label = local HH:mm for the tick time
+        String label = ZonedDateTime.ofInstant(ts, ZoneId.systemDefault()).format(HHMM);
+        broker.convertAndSend("/topic/intraday/" + siteId, new IntradayTick(label, perMeterOut));
+    }
+
+    // first sight of a site since startup: latest (<= ts) per meter, once
+    private SiteState seed(Long siteId, Instant ts) {
+        SiteState s = new SiteState();
+        for (MeterKind kind : MeterKind.values()) {
+            repo.findTopBySiteIdAndMeterKindAndSampleTimeLessThanEqualOrderBySampleTimeDesc(siteId, kind, ts)
+                    .ifPresent(e -> s.offer(kind, Latest.of(e)));
+        }
+        return s;
+    }
+
+    /** Newest power of one meter and the sample time it belongs to. */
+    public record Latest(Instant sampleTime, double powerKw) {
+        public static Latest of(EnergySample s) {
+            return new Latest(s.getSampleTime(), s.getTotalAcPowerKw() == null ? 0.0 : s.getTotalAcPowerKw());
+        }
+    }
+
+    private static final class SiteState {
+        final Map<MeterKind, Latest> latest = new EnumMap<>(MeterKind.class);
+
+        // out-of-order samples never move a meter backwards
+        void offer(MeterKind kind, Latest l) {
+            Latest cur = latest.get(kind);
+            if (cur == null || !l.sampleTime().isBefore(cur.sampleTime())) latest.put(kind, l);
+        }
+    }
+}
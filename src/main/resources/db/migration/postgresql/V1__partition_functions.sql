@@ -0,0 +1,66 @@
+-- Monthly range partitions for the telemetry tables (postgres profile only).
+-- Partitions are named <parent>_pYYYYMM; <parent>_default catches rows outside every monthly range.
+
+-- Create the monthly partitions [first_month, last_month] that do not exist yet.
+-- Rows already sitting in the default partition for a new month are moved into it first,
+-- so ATTACH never fails on them. Returns the number of partitions created.
+CREATE OR REPLACE FUNCTION lkf_ensure_month_partitions(parent text, col text, first_month date, last_month date)
+RETURNS integer
+LANGUAGE plpgsql AS $$
+DECLARE
+    m       date := date_trunc('month', first_month)::date;
+    part    text;
+    lo      text;
+    hi      text;
+    created integer := 0;
+BEGIN
+    WHILE m <= last_month LOOP
+        part := format('%s_p%s', parent, to_char(m, 'YYYYMM'));
+        IF to_regclass(part) IS NULL THEN
+            -- '+00' is read as UTC by timestamptz and ignored by plain timestamp
+            lo := format('%s 00:00:00+00', m);
+            hi := format('%s 00:00:00+00', (m + interval '1 month')::date);
+            EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS)', part, parent);
+            IF to_regclass(parent || '_default') IS NOT NULL THEN
+                EXECUTE format('WITH moved AS (DELETE FROM %I WHERE %I >= %L AND %I < %L RETURNING *) '
+                               'INSERT INTO %I SELECT * FROM moved',
+                               parent || '_default', col, lo, col, hi, part);
+            END IF;
+            EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           parent, part, lo, hi);
+            created := created + 1;
+        END IF;
+        m := (m + interval '1 month')::date;
+    END LOOP;
+    RETURN created;
+END;
+$$;
+
+-- Retention by DROP: whole monthly partitions that end on or before cutoff_month go in one statement each,
+-- no row-by-row DELETE and no vacuum debt. Stragglers in the default partition are deleted.
+CREATE OR REPLACE FUNCTION lkf_drop_month_partitions_before(parent text, col text, cutoff_month date)
+RETURNS integer
+LANGUAGE plpgsql AS $$
+DECLARE
+    child   record;
+    dropped integer := 0;
+BEGIN
+    FOR child IN
+        SELECT c.relname
+          FROM pg_inherits i
+          JOIN pg_class c ON c.oid = i.inhrelid
+         WHERE i.inhparent = parent::regclass
+           AND c.relname ~ ('^' || parent || '_p[0-9]{6}$')
+    LOOP
+        IF to_date(right(child.relname, 6), 'YYYYMM') < date_trunc('month', cutoff_month)::date THEN
+            EXECUTE format('DROP TABLE %I', child.relname);
+            dropped := dropped + 1;
+        END IF;
+    END LOOP;
+    IF to_regclass(parent || '_default') IS NOT NULL THEN
+        EXECUTE format('DELETE FROM %I WHERE %I < %L', parent || '_default', col,
+                       format('%s 00:00:00+00', date_trunc('month', cutoff_month)::date));
+    END IF;
+    RETURN dropped;
+END;
+$$;
@@ -0,0 +1,70 @@
+-- energy_sample partitioned by month on sample_time (timestamptz, UTC).
+-- The primary key and the idempotency key both carry sample_time, as Postgres requires for a partitioned table.
+-- An existing unpartitioned energy_sample (created by Hibernate) is copied over and dropped.
+
+DO $$
+BEGIN
+    IF to_regclass('energy_sample') IS NOT NULL
+       AND (SELECT relkind FROM pg_class WHERE oid = 'energy_sample'::regclass) = 'r' THEN
+        ALTER TABLE energy_sample RENAME TO energy_sample_unpartitioned;
+        ALTER INDEX IF EXISTS idx_es_site_time RENAME TO idx_es_site_time_unpartitioned;
+        ALTER INDEX IF EXISTS idx_es_site_kind_time RENAME TO idx_es_site_kind_time_unpartitioned;
+        IF EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_es_site_kind_time') THEN
+            ALTER TABLE energy_sample_unpartitioned
+                RENAME CONSTRAINT uk_es_site_kind_time TO uk_es_site_kind_time_unpartitioned;
+        END IF;
+    END IF;
+END $$;
+
+-- not an identity column: identity on partitioned tables needs Postgres 17
+CREATE SEQUENCE IF NOT EXISTS energy_sample_part_id_seq;
+
+CREATE TABLE IF NOT EXISTS energy_sample (
+    id                  bigint           NOT NULL DEFAULT nextval('energy_sample_part_id_seq'),
+    site_id             bigint,
+    meter_kind          varchar(16)      NOT NULL,
+    sample_time         timestamp(6) with time zone NOT NULL,
+    total_ac_power_kw   double precision,
+    daily_ac_energy_kwh double precision,
+    daily_ac_export_kwh double precision,
+    daily_ac_import_kwh double precision,
+    daily_dc_energy_kwh double precision,
+    device_id           varchar(255),
+    firmware            varchar(255),
+    CONSTRAINT energy_sample_pkey PRIMARY KEY (id, sample_time),
+    CONSTRAINT uk_es_site_kind_time UNIQUE (site_id, meter_kind, sample_time)
+) PARTITION BY RANGE (sample_time);
+
+ALTER SEQUENCE energy_sample_part_id_seq OWNED BY energy_sample.id;
+
+CREATE INDEX IF NOT EXISTS idx_es_site_time ON energy_sample (site_id, sample_time);
+
+CREATE TABLE IF NOT EXISTS energy_sample_default PARTITION OF energy_sample DEFAULT;
+
+DO $$
+DECLARE
+    oldest date;
+BEGIN
+    IF to_regclass('energy_sample_unpartitioned') IS NOT NULL THEN
+        SELECT (min(sample_time) AT TIME ZONE 'UTC')::date INTO oldest FROM energy_sample_unpartitioned;
+        PERFORM lkf_ensure_month_partitions('energy_sample', 'sample_time',
+                coalesce(oldest, current_date), (current_date + interval '3 months')::date);
+
+        INSERT INTO energy_sample (id, site_id, meter_kind, sample_time, total_ac_power_kw,
+                                   daily_ac_energy_kwh, daily_ac_export_kwh, daily_ac_import_kwh,
+                                   daily_dc_energy_kwh, device_id, firmware)
+        SELECT id, site_id, meter_kind, sample_time, total_ac_power_kw,
+               daily_ac_energy_kwh, daily_ac_export_kwh, daily_ac_import_kwh,
+               daily_dc_energy_kwh, device_id, firmware
+          FROM energy_sample_unpartitioned
+           WHERE sample_time IS NOT NULL
+        ON CONFLICT DO NOTHING;
+
+        PERFORM setval('energy_sample_part_id_seq',
+                       greatest(1, (SELECT coalesce(max(id), 0) FROM energy_sample)));
+        DROP TABLE energy_sample_unpartitioned;
+    ELSE
+        PERFORM lkf_ensure_month_partitions('energy_sample', 'sample_time',
+                current_date, (current_date + interval '3 months')::date);
+    END IF;
+END $$;
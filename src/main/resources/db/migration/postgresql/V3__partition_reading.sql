@@ -0,0 +1,75 @@
+-- reading partitioned by month on ts (timestamp in site time, Asia/Kolkata wall clock).
+-- Same procedure as energy_sample: copy an existing unpartitioned table over, then drop it.
+-- Foreign keys to site/device are left to Hibernate (ddl-auto=update), which may run on an empty schema after us.
+
+DO $$
+BEGIN
+    IF to_regclass('reading') IS NOT NULL
+       AND (SELECT relkind FROM pg_class WHERE oid = 'reading'::regclass) = 'r' THEN
+        ALTER TABLE reading RENAME TO reading_unpartitioned;
+        ALTER INDEX IF EXISTS idx_site_ts RENAME TO idx_site_ts_unpartitioned;
+        ALTER INDEX IF EXISTS idx_device_ts RENAME TO idx_device_ts_unpartitioned;
+        ALTER INDEX IF EXISTS idx_site_meter_ts RENAME TO idx_site_meter_ts_unpartitioned;
+    END IF;
+END $$;
+
+CREATE SEQUENCE IF NOT EXISTS reading_part_id_seq;
+
+CREATE TABLE IF NOT EXISTS reading (
+    id                                bigint        NOT NULL DEFAULT nextval('reading_part_id_seq'),
+    meter_kind                        varchar(16),
+    site_id                           bigint        NOT NULL,
+    device_id                         bigint        NOT NULL,
+    ts                                timestamp(6)  NOT NULL,
+    total_ac_active_power_kw          numeric(12,3),
+    total_ac_active_energy_kwh        numeric(16,3),
+    daily_ac_active_energy_kwh        numeric(12,3),
+    daily_ac_active_export_energy_kwh numeric(12,3),
+    total_ac_active_export_energy_kwh numeric(16,3),
+    daily_ac_active_import_energy_kwh numeric(12,3),
+    total_ac_active_import_energy_kwh numeric(16,3),
+    daily_dc_energy_kwh               numeric(12,3),
+    total_dc_energy_kwh               numeric(16,3),
+    power_kw                          double precision,
+    energy_kwh                        double precision,
+    dc_voltage                        double precision,
+    dc_current                        double precision,
+    ac_voltage                        double precision,
+    ac_current                        double precision,
+    temperature                       double precision,
+    status                            varchar(32),
+    CONSTRAINT reading_pkey PRIMARY KEY (id, ts)
+) PARTITION BY RANGE (ts);
+
+ALTER SEQUENCE reading_part_id_seq OWNED BY reading.id;
+
+CREATE INDEX IF NOT EXISTS idx_site_ts ON reading (site_id, ts);
+CREATE INDEX IF NOT EXISTS idx_device_ts ON reading (device_id, ts);
+CREATE INDEX IF NOT EXISTS idx_site_meter_ts ON reading (site_id, meter_kind, ts);
+
+CREATE TABLE IF NOT EXISTS reading_default PARTITION OF reading DEFAULT;
+
+DO $$
+DECLARE
+    oldest date;
+BEGIN
+    IF to_regclass('reading_unpartitioned') IS NOT NULL THEN
+        SELECT min(ts)::date INTO oldest FROM reading_unpartitioned;
+        PERFORM lkf_ensure_month_partitions('reading', 'ts',
+                coalesce(oldest, current_date), (current_date + interval '3 months')::date);
+
+        INSERT INTO reading SELECT id, meter_kind, site_id, device_id, ts,
+               total_ac_active_power_kw, total_ac_active_energy_kwh, daily_ac_active_energy_kwh,
+               daily_ac_active_export_energy_kwh, total_ac_active_export_energy_kwh,
+               daily_ac_active_import_energy_kwh, total_ac_active_import_energy_kwh,
+               daily_dc_energy_kwh, total_dc_energy_kwh,
+               power_kw, energy_kwh, dc_voltage, dc_current, ac_voltage, ac_current, temperature, status
+          FROM reading_unpartitioned;
+
+        PERFORM setval('reading_part_id_seq', greatest(1, (SELECT coalesce(max(id), 0) FROM reading)));
+        DROP TABLE reading_unpartitioned;
+    ELSE
+        PERFORM lkf_ensure_month_partitions('reading', 'ts',
+                current_date, (current_date + interval '3 months')::date);
+    END IF;
+END $$;
@@ -2,13 +2,20 @@ package com.legakrishi.solar.controller;
 
 import com.legakrishi.solar.config.MonitoringProps;
 import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.EnergySampleBlock;
 import com.legakrishi.solar.model.MeterKind;
 import com.legakrishi.solar.model.Reading;
+import com.legakrishi.solar.model.ReadingMonthMeter;
+import com.legakrishi.solar.repository.EnergySampleBlockRepository;
 import com.legakrishi.solar.repository.EnergySampleRepository;
 import com.legakrishi.solar.repository.PartnerSiteRepository;
+import com.legakrishi.solar.repository.ReadingMonthMeterRepository;
 import com.legakrishi.solar.repository.ReadingRepository;
+import com.legakrishi.solar.repository.ReadingYearMeterRepository;
 import com.legakrishi.solar.repository.SiteRepository;
 import com.legakrishi.solar.repository.UserRepository;
+import com.legakrishi.solar.service.EnergySampleStore;
+import com.legakrishi.solar.util.GorillaCodec;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -16,9 +23,11 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -28,12 +37,15 @@ import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = PartnerTelemetryController.class)
 @AutoConfigureMockMvc(addFilters = true)
+@Import(EnergySampleStore.class)
 class PartnerTelemetryControllerTest {
 
     @Autowired MockMvc mvc;
@@ -43,6 +55,9 @@ class PartnerTelemetryControllerTest {
     @MockBean UserRepository userRepo;
     @MockBean SiteRepository siteRepo;
     @MockBean EnergySampleRepository energySampleRepo;
+    @MockBean EnergySampleBlockRepository energySampleBlockRepo;
+    @MockBean ReadingMonthMeterRepository monthRollupRepo;
+    @MockBean ReadingYearMeterRepository yearRollupRepo;
 
     @TestConfiguration
     static class Cfg {
@@ -74,6 +89,25 @@ class PartnerTelemetryControllerTest {
                 .andExpect(jsonPath("$.peakPowerKw").value(15.0));
     }
 
+    @Test
+    @WithMockUser(roles = "PARTNER")
+    void monthSummary_fromMonthRollup() throws Exception {
+        // Month row present -> no telemetry scan at all
+        given(monthRollupRepo.findBySiteIdAndMeterKindAndPeriodStart(eq(1L), eq(MeterKind.MAIN), any(LocalDate.class)))
+                .willReturn(Optional.of(ReadingMonthMeter.builder()
+                        .acActiveEnergyKwh(new BigDecimal("321.000"))
+                        .maxAcPowerKw(new BigDecimal("42.500"))
+                        .build()));
+        given(siteRepo.findById(anyLong())).willReturn(Optional.empty());
+
+        mvc.perform(get("/partners/api/month-summary").param("siteId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.energyMonthKwh").value(321.0))
+                .andExpect(jsonPath("$.peakPowerKw").value(42.5));
+
+        verify(readingRepo, never()).findRange(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
     @Test
     @WithMockUser(roles = "PARTNER")
     void monthSummary_fromEnergySample_fallback() throws Exception {
@@ -114,4 +148,44 @@ class PartnerTelemetryControllerTest {
                 .andExpect(jsonPath("$.energyMonthKwh").value(200.0))
                 .andExpect(jsonPath("$.peakPowerKw").value(25.0));
     }
+
+    @Test
+    @WithMockUser(roles = "PARTNER")
+    void monthSummary_fromCompactedBlock() throws Exception {
+        // No READING rows and no raw samples: the month start lives only in a compacted day block
+        given(readingRepo.findRange(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .willReturn(List.of());
+
+        ZoneId IST = ZoneId.of("Asia/Kolkata");
+        LocalDate day = LocalDate.now(IST).withDayOfMonth(1);
+        Instant s1 = day.atStartOfDay(IST).toInstant();
+
+        EnergySample e1 = new EnergySample();
+        e1.setSampleTime(s1);
+        e1.setTotalAcPowerKw(12.0);
+        e1.setDailyAcEnergyKwh(500.0);
+        e1.setDeviceId("inv-1");
+
+        EnergySample e2 = new EnergySample();
+        e2.setSampleTime(s1.plusSeconds(60));
+        e2.setTotalAcPowerKw(25.0);
+        e2.setDailyAcEnergyKwh(700.0);
+        e2.setDeviceId("inv-1");
+
+        EnergySampleBlock block = EnergySampleBlock.builder()
+                .siteId(1L).meterKind(MeterKind.MAIN).blockDay(day)
+                .sampleCount(2).firstTime(s1).lastTime(e2.getSampleTime())
+                .data(GorillaCodec.encode(List.of(e1, e2)))
+                .build();
+        given(energySampleBlockRepo.findOverlapping(
+                anyLong(), any(MeterKind.class), any(Instant.class), any(Instant.class)))
+                .willReturn(List.of(block));
+
+        given(siteRepo.findById(anyLong())).willReturn(Optional.empty());
+
+        mvc.perform(get("/partners/api/month-summary").param("siteId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.energyMonthKwh").value(200.0))
+                .andExpect(jsonPath("$.peakPowerKw").value(25.0));
+    }
 }
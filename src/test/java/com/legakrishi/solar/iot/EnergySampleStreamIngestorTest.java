@@ -0,0 +1,91 @@
+package com.legakrishi.solar.iot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.iot.EnergySampleStreamIngestor.StreamResult;
+import com.legakrishi.solar.iot.wal.WalLog;
+import com.legakrishi.solar.model.EnergySample;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+class EnergySampleStreamIngestorTest {
+
+    private static final String BODY = """
+            [
+              {"siteId": 1, "meterKind": "MAIN", "sampleTimeUtc": "2025-08-15T06:00:00Z", "totalAcPowerKw": 10.0},
+              {"siteId": 1, "meterKind": "MAIN", "sampleTimeUtc": "2025-08-15T06:01:00Z", "totalAcPowerKw": 11.0},
+              {"siteId": 1, "meterKind": "MAIN", "sampleTimeUtc": "2025-08-15T06:02:00Z", "totalAcPowerKw": 12.0},
+              {"siteId": 1, "meterKind": "MAIN", "sampleTimeUtc": "2025-08-15T06:00:00Z", "totalAcPowerKw": 10.0},
+              {"siteId": 1, "meterKind": "MAIN", "sampleTimeUtc": "2025-08-15T06:03:00Z", "totalAcPowerKw": 13.0}
+            ]
+            """;
+
+    private final IngestProps props = new IngestProps();
+    private final TelemetryBatchWriter writer = mock(TelemetryBatchWriter.class);
+    private final WalLog wal = mock(WalLog.class);
+    private EnergySampleStreamIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        given(writer.chunkSize()).willReturn(2);
+        TelemetryIngestCore core = new TelemetryIngestCore(writer, new RecentSampleKeys(props), props, List.of(), wal);
+        ingestor = new EnergySampleStreamIngestor(new ObjectMapper().findAndRegisterModules(), core);
+    }
+
+    @Test
+    void walEnabled_queuedRowsCountAsAccepted() throws IOException {
+        given(wal.isEnabled()).willReturn(true);
+
+        StreamResult r = ingestor.ingest(body(BODY));
+
+        assertEquals(5, r.received());
+        assertEquals(4, r.accepted());              // queued in the WAL, applied later
+        assertEquals(1, r.duplicates());            // the resent 06:00 sample
+        assertEquals(0, r.rejected());
+        assertEquals(0, r.failedChunks());
+        assertNull(r.error());
+        verify(wal, times(3)).appendSamples(anyList(), eq(false));
+        verify(writer, never()).writeSampleChunk(anyInt(), anyList(), any());
+    }
+
+    @Test
+    void walDisabled_writtenRowsCountAsAccepted() throws IOException {
+        given(wal.isEnabled()).willReturn(false);
+        given(writer.writeSampleChunk(anyInt(), anyList(), isNull())).willAnswer(inv -> {
+            List<EnergySample> chunk = inv.getArgument(1);
+            return new TelemetryBatchWriter.ChunkResult(inv.getArgument(0), chunk.size(), chunk.size(), 1, null);
+        });
+
+        StreamResult r = ingestor.ingest(body(BODY));
+
+        assertEquals(4, r.accepted());
+        assertEquals(1, r.duplicates());
+        assertEquals(0, r.failedChunks());
+        verify(wal, never()).appendSamples(anyList(), anyBoolean());
+    }
+
+    @Test
+    void walEnabled_truncatedBody_keepsTheQueuedRows() throws IOException {
+        given(wal.isEnabled()).willReturn(true);
+        String truncated = BODY.substring(0, BODY.indexOf("06:02:00Z") - 20);
+
+        StreamResult r = ingestor.ingest(body(truncated));
+
+        assertEquals(2, r.accepted());
+        assertNotNull(r.error());
+    }
+
+    private static ByteArrayInputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
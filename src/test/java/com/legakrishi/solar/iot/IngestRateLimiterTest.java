@@ -0,0 +1,180 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    // ---- token bucket ----
+
+    @Test
+    void bucket_allowsTheBurst_thenOneTokenPerInterval() {
+        IngestRateLimiter.Bucket b = new IngestRateLimiter.Bucket(2.0, 5);   // one token per 500 ms
+        long now = 1_000 * SECOND;
+
+        for (int i = 0; i < 5; i++) assertEquals(0, b.tryTake(1, now), "burst token " + i);
+        assertEquals(SECOND / 2, b.tryTake(1, now));                        // wait for exactly one token
+
+        assertTrue(b.tryTake(1, now + SECOND / 2 - 1) > 0);
+        assertEquals(0, b.tryTake(1, now + SECOND / 2));
+        assertTrue(b.tryTake(1, now + SECOND / 2) > 0);
+    }
+
+    @Test
+    void bucket_refillsCompletely_andNeverBeyondTheBurst() {
+        IngestRateLimiter.Bucket b = new IngestRateLimiter.Bucket(1.0, 3);
+        long now = 50 * SECOND;
+        assertTrue(b.isFull(now));
+        assertEquals(0, b.tryTake(3, now));
+        assertFalse(b.isFull(now));
+
+        long later = now + 3 * SECOND;                                       // idle far longer than needed
+        assertTrue(b.isFull(later));
+        assertEquals(0, b.tryTake(3, later + 60 * SECOND));
+        assertTrue(b.tryTake(1, later + 60 * SECOND) > 0);                   // idle time is not banked
+    }
+
+    @Test
+    void bucket_oversizedCost_needsAFullBucketOnly() {
+        IngestRateLimiter.Bucket b = new IngestRateLimiter.Bucket(1.0, 4);
+        long now = 10 * SECOND;
+        assertEquals(0, b.tryTake(100, now));
+        assertEquals(SECOND, b.tryTake(1, now));
+        assertEquals(4 * SECOND, b.tryTake(100, now));
+    }
+
+    // ---- limiter ----
+
+    @Test
+    void acquire_throwsWithRetryAfterInWholeSeconds() {
+        IngestRateLimiter limiter = limiter(l -> {
+            l.setDevicePerSecond(0.5);                                         // one token per 2 s
+            l.setDeviceBurst(3);
+        });
+        for (int i = 0; i < 3; i++) limiter.acquire(IngestRateLimiter.Scope.DEVICE, 7L, 1);
+
+        IngestThrottledException ex = assertThrows(IngestThrottledException.class,
+                () -> limiter.acquire(IngestRateLimiter.Scope.DEVICE, 7L, 1));
+        assertEquals(2, ex.getRetryAfterSeconds());
+
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 8L, 1);              // other devices are unaffected
+        limiter.acquire(IngestRateLimiter.Scope.SITE, 7L, 1);                // as is the same id in another scope
+    }
+
+    @Test
+    void retryAfter_isAtLeastOneSecond() {
+        IngestRateLimiter limiter = limiter(l -> {
+            l.setClientPerSecond(4);                                           // 250 ms to the next token
+            l.setClientBurst(1);
+        });
+        limiter.acquire(IngestRateLimiter.Scope.CLIENT, "addr-10.0.0.1", 1);
+        IngestThrottledException ex = assertThrows(IngestThrottledException.class,
+                () -> limiter.acquire(IngestRateLimiter.Scope.CLIENT, "addr-10.0.0.1", 1));
+        assertEquals(1, ex.getRetryAfterSeconds());
+    }
+
+    @Test
+    void disabledLimiter_neverThrows() {
+        IngestRateLimiter limiter = limiter(l -> {
+            l.setEnabled(false);
+            l.setDeviceBurst(1);
+        });
+        for (int i = 0; i < 100; i++) limiter.acquire(IngestRateLimiter.Scope.DEVICE, 1L, 1);
+        assertEquals(0, limiter.activeBuckets());
+    }
+
+    @Test
+    void rejections_areCountedPerKey() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        IngestRateLimiter limiter = limiter(meters, l -> l.setDeviceBurst(1));
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 7L, 1);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IngestThrottledException.class, () -> limiter.acquire(IngestRateLimiter.Scope.DEVICE, 7L, 1));
+        }
+
+        assertEquals(2L, limiter.rejectionCounts().get("device:7"));
+        assertEquals(2.0, meters.get("ingest.throttled").tag("scope", "device").tag("key", "7").counter().count());
+    }
+
+    @Test
+    void keysBeyondMaxKeys_shareOneOverflowBucket() {
+        IngestRateLimiter limiter = limiter(l -> {
+            l.setDeviceBurst(2);
+            l.setMaxKeys(2);
+        });
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 1L, 1);
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 2L, 1);
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 3L, 1);              // overflow bucket, first token
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 4L, 1);              // overflow bucket, second token
+        assertEquals(3, limiter.activeBuckets());
+
+        assertThrows(IngestThrottledException.class, () -> limiter.acquire(IngestRateLimiter.Scope.DEVICE, 5L, 1));
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 1L, 1);              // known keys keep their own bucket
+        assertEquals(3, limiter.activeBuckets());
+    }
+
+    @Test
+    void keysBeyondMetricKeys_areTaggedOther() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        IngestRateLimiter limiter = limiter(meters, l -> {
+            l.setDeviceBurst(1);
+            l.setMetricKeys(1);
+        });
+        for (long id = 1; id <= 3; id++) {
+            long device = id;
+            limiter.acquire(IngestRateLimiter.Scope.DEVICE, device, 1);
+            assertThrows(IngestThrottledException.class, () -> limiter.acquire(IngestRateLimiter.Scope.DEVICE, device, 1));
+        }
+
+        assertEquals(1.0, meters.get("ingest.throttled").tag("key", "1").counter().count());
+        assertEquals(2.0, meters.get("ingest.throttled").tag("key", "other").counter().count());
+        assertEquals(2, meters.find("ingest.throttled").counters().size());
+        assertEquals(2, limiter.rejectionCounts().size());
+    }
+
+    @Test
+    void evictIdle_dropsRefilledBuckets() throws InterruptedException {
+        IngestRateLimiter limiter = limiter(l -> {
+            l.setDevicePerSecond(1_000_000);                                  // refills in a microsecond
+            l.setDeviceBurst(1);
+            l.setSitePerSecond(0.001);                                        // stays drained
+            l.setSiteBurst(1);
+        });
+        limiter.acquire(IngestRateLimiter.Scope.DEVICE, 1L, 1);
+        limiter.acquire(IngestRateLimiter.Scope.SITE, 1L, 1);
+        Thread.sleep(5);
+
+        limiter.evictIdle();
+        assertEquals(1, limiter.activeBuckets());
+    }
+
+    @Test
+    void clientId_neverContainsTheApiKey() {
+        String id = IngestRateLimiter.clientId("super-secret-key", "10.0.0.1");
+        assertTrue(id.startsWith("key-"));
+        assertFalse(id.contains("super-secret-key"));
+        assertEquals(id, IngestRateLimiter.clientId("super-secret-key", "10.0.0.2"));   // per key, not per address
+        assertNotEquals(id, IngestRateLimiter.clientId("other-key", "10.0.0.1"));
+        assertEquals("addr-10.0.0.1", IngestRateLimiter.clientId(null, "10.0.0.1"));
+        assertEquals("addr-10.0.0.1", IngestRateLimiter.clientId(" ", "10.0.0.1"));
+    }
+
+    // ---- helpers ----
+
+    private static IngestRateLimiter limiter(Consumer<IngestProps.Limits> config) {
+        return limiter(new SimpleMeterRegistry(), config);
+    }
+
+    private static IngestRateLimiter limiter(SimpleMeterRegistry meters, Consumer<IngestProps.Limits> config) {
+        IngestProps props = new IngestProps();
+        config.accept(props.getLimits());
+        return new IngestRateLimiter(props, meters);
+    }
+}
@@ -0,0 +1,78 @@
+package com.legakrishi.solar.iot;
+
+import com.legakrishi.solar.config.IngestProps;
+import com.legakrishi.solar.iot.wal.WalLog;
+import com.legakrishi.solar.model.Device;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.Reading;
+import com.legakrishi.solar.model.Site;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+class TelemetryIngestCoreTest {
+
+    private static final LocalDateTime TS = LocalDateTime.of(2025, 8, 15, 11, 30);
+
+    private final IngestProps props = new IngestProps();
+    private final TelemetryBatchWriter writer = mock(TelemetryBatchWriter.class);
+    private final WalLog wal = mock(WalLog.class);
+    private TelemetryIngestCore core;
+
+    @BeforeEach
+    void setUp() {
+        given(writer.chunkSize()).willReturn(100);
+        given(writer.writeReadingChunk(anyInt(), anyList(), any())).willAnswer(inv -> {
+            List<?> chunk = inv.getArgument(1);
+            return new TelemetryBatchWriter.ChunkResult(inv.getArgument(0), chunk.size(), chunk.size(), 0, null);
+        });
+        core = new TelemetryIngestCore(writer, new RecentSampleKeys(props), props, List.of(), wal);
+    }
+
+    @Test
+    void sameMeterAndSecond_fromTwoDevices_areBothKept() {
+        TelemetryIngestCore.Result r = core.submitReadings(List.of(reading(7L), reading(8L)), false);
+
+        assertEquals(2, r.accepted());
+        assertEquals(0, r.duplicates());
+    }
+
+    @Test
+    void resentReading_fromTheSameDevice_isADuplicate() {
+        core.submitReadings(List.of(reading(7L)), false);
+
+        TelemetryIngestCore.Result r = core.submitReadings(List.of(reading(7L), reading(8L)), false);
+
+        assertEquals(1, r.accepted());
+        assertEquals(1, r.duplicates());
+    }
+
+    @Test
+    void walEnabled_dedupesReadingsPerDevice() {
+        given(wal.isEnabled()).willReturn(true);
+
+        TelemetryIngestCore.Result r = core.submitReadings(List.of(reading(7L), reading(8L), reading(7L)), false);
+
+        assertEquals(2, r.accepted());
+        assertEquals(1, r.duplicates());
+        verify(wal).appendReadings(argThat(chunk -> chunk.size() == 2), eq(false));
+    }
+
+    private static Reading reading(long deviceId) {
+        Site site = Site.builder().id(1L).build();
+        return Reading.builder()
+                .site(site)
+                .device(Device.builder().id(deviceId).site(site).build())
+                .meterKind(MeterKind.MAIN)
+                .ts(TS)
+                .powerKw(5.0)
+                .build();
+    }
+}
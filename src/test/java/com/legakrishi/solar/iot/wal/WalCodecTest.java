@@ -0,0 +1,114 @@
+package com.legakrishi.solar.iot.wal;
+
+import com.legakrishi.solar.model.Device;
+import com.legakrishi.solar.model.EnergySample;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.Reading;
+import com.legakrishi.solar.model.Site;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalCodecTest {
+
+    @Test
+    void samples_roundTrip() throws IOException {
+        EnergySample full = new EnergySample();
+        full.setSiteId(7L);
+        full.setMeterKind(MeterKind.MAIN);
+        full.setSampleTime(Instant.parse("2025-08-15T06:30:00.123456789Z"));
+        full.setTotalAcPowerKw(12.5);
+        full.setDailyAcEnergyKwh(40.25);
+        full.setDailyAcExportKwh(30.0);
+        full.setDailyAcImportKwh(0.5);
+        full.setDailyDcEnergyKwh(42.0);
+        full.setDeviceId("inv-01");
+        full.setFirmware("fw 2.1 – ünïcode");
+
+        EnergySample sparse = new EnergySample();        // nullable fields stay null
+        sparse.setSiteId(7L);
+        sparse.setMeterKind(MeterKind.values()[MeterKind.values().length - 1]);
+        sparse.setSampleTime(Instant.parse("2025-08-15T06:31:00Z"));
+
+        WalCodec.Entry e = WalCodec.decode(WalCodec.encodeSamples(List.of(full, sparse), true));
+
+        assertTrue(e.backfill());
+        assertNull(e.readings());
+        assertEquals(2, e.samples().size());
+        EnergySample a = e.samples().get(0);
+        assertEquals(7L, a.getSiteId());
+        assertEquals(MeterKind.MAIN, a.getMeterKind());
+        assertEquals(full.getSampleTime(), a.getSampleTime());
+        assertEquals(12.5, a.getTotalAcPowerKw());
+        assertEquals(40.25, a.getDailyAcEnergyKwh());
+        assertEquals(30.0, a.getDailyAcExportKwh());
+        assertEquals(0.5, a.getDailyAcImportKwh());
+        assertEquals(42.0, a.getDailyDcEnergyKwh());
+        assertEquals("inv-01", a.getDeviceId());
+        assertEquals("fw 2.1 – ünïcode", a.getFirmware());
+
+        EnergySample b = e.samples().get(1);
+        assertEquals(sparse.getMeterKind(), b.getMeterKind());
+        assertNull(b.getTotalAcPowerKw());
+        assertNull(b.getDeviceId());
+        assertNull(b.getFirmware());
+    }
+
+    @Test
+    void readings_roundTrip_keepWallClockAndDecimals() throws IOException {
+        Site site = new Site(); site.setId(3L);
+        Device device = new Device(); device.setId(11L);
+        LocalDateTime ts = LocalDateTime.of(2025, 8, 15, 12, 0, 5);
+        Reading r = Reading.builder()
+                .site(site)
+                .device(device)
+                .meterKind(MeterKind.MAIN)
+                .ts(ts)
+                .totalAcActivePowerKw(new BigDecimal("12.340"))
+                .dailyAcActiveEnergyKwh(new BigDecimal("1E+2"))
+                .powerKw(12.34)
+                .status("OK")
+                .build();
+
+        WalCodec.Entry e = WalCodec.decode(WalCodec.encodeReadings(List.of(r), false));
+
+        assertFalse(e.backfill());
+        assertNull(e.samples());
+        Reading d = e.readings().get(0);
+        assertEquals(3L, d.getSite().getId());
+        assertEquals(11L, d.getDevice().getId());
+        assertEquals(MeterKind.MAIN, d.getMeterKind());
+        assertEquals(ts, d.getTs());
+        assertEquals(new BigDecimal("12.340"), d.getTotalAcActivePowerKw());   // scale kept
+        assertEquals(0, new BigDecimal("100").compareTo(d.getDailyAcActiveEnergyKwh()));
+        assertNull(d.getTotalDcEnergyKwh());
+        assertEquals(12.34, d.getPowerKw());
+        assertNull(d.getTemperature());
+        assertEquals("OK", d.getStatus());
+    }
+
+    @Test
+    void emptyChunk_roundTrips() throws IOException {
+        assertEquals(List.of(), WalCodec.decode(WalCodec.encodeSamples(List.of(), false)).samples());
+    }
+
+    @Test
+    void unknownVersion_isRejected() {
+        byte[] payload = WalCodec.encodeSamples(List.of(), false);
+        payload[0] = (byte) (WalCodec.VERSION + 1);
+        assertThrows(IOException.class, () -> WalCodec.decode(payload));
+    }
+
+    @Test
+    void unknownType_isRejected() {
+        byte[] payload = WalCodec.encodeSamples(List.of(), false);
+        payload[1] = 99;
+        assertThrows(IOException.class, () -> WalCodec.decode(payload));
+    }
+}
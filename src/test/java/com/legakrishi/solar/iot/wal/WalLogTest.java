@@ -0,0 +1,218 @@
+package com.legakrishi.solar.iot.wal;
+
+import com.legakrishi.solar.config.IngestProps;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalLogTest {
+
+    private static final int HEADER = 8;              // [int length][int crc32c]
+
+    @TempDir Path dir;
+
+    private final List<WalLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(WalLog::close);
+    }
+
+    @Test
+    void entries_rollOverIntoNewSegments_andReadBackInOrder() throws IOException {
+        WalLog wal = open();
+        List<byte[]> written = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            byte[] payload = payload(300_000, i);         // three fit in a 1 MB segment
+            wal.append(payload);
+            written.add(payload);
+        }
+
+        assertEquals(3, segmentFiles());
+        List<byte[]> read = readAll(wal, 0);
+        assertEquals(written.size(), read.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertArrayEquals(written.get(i), read.get(i), "entry " + i);
+        }
+        assertTrue(wal.nextSegment(0) > 0);
+    }
+
+    @Test
+    void oversizedEntry_isRefused() throws IOException {
+        WalLog wal = open();
+        assertThrows(IllegalArgumentException.class, () -> wal.append(new byte[1024 * 1024]));
+    }
+
+    @Test
+    void reopen_resumesFromCheckpoint_andKeepsTheLogId() throws IOException {
+        WalLog wal = open();
+        long first = wal.append(payload(100, 1));
+        wal.append(payload(100, 2));
+        long end = wal.append(payload(100, 3));
+        wal.writeCheckpoint(first);
+        String logId = wal.logId();
+        wal.close();
+
+        WalLog reopened = open();
+        assertEquals(logId, reopened.logId());
+        assertEquals(first, reopened.readCheckpoint());
+        assertEquals(end, reopened.syncedOffset());
+
+        List<byte[]> replay = readAll(reopened, reopened.readCheckpoint());
+        assertEquals(2, replay.size());
+        assertArrayEquals(payload(100, 2), replay.get(0));
+        assertArrayEquals(payload(100, 3), replay.get(1));
+
+        // appends continue behind the recovered entries
+        long next = reopened.append(payload(100, 4));
+        assertEquals(end + HEADER + 100, next);
+        assertEquals(3, readAll(reopened, first).size());
+    }
+
+    @Test
+    void missingCheckpoint_replaysFromTheStart() throws IOException {
+        WalLog wal = open();
+        wal.append(payload(10, 1));
+        assertEquals(0L, wal.readCheckpoint());
+    }
+
+    @Test
+    void truncateBefore_dropsOnlyFullyAppliedSegments() throws IOException {
+        WalLog wal = open();
+        long end = 0;
+        for (int i = 0; i < 7; i++) end = wal.append(payload(300_000, i));
+        long secondSegment = wal.nextSegment(0);
+
+        wal.truncateBefore(secondSegment + 1);
+        assertEquals(2, segmentFiles());
+        assertEquals(4, readAll(wal, secondSegment).size());
+
+        wal.truncateBefore(end);
+        assertEquals(1, segmentFiles());                 // the head segment always stays
+    }
+
+    @Test
+    void tornTail_isCutOffOnReopen() throws IOException {
+        WalLog wal = open();
+        long first = wal.append(payload(100, 1));
+        wal.append(payload(100, 2));
+        wal.close();
+
+        // flip a payload byte of the second entry: its checksum no longer matches, as after a torn write
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, first + HEADER);
+            b.put(0, (byte) ~b.get(0)).rewind();
+            ch.write(b, first + HEADER);
+            ch.force(true);
+        }
+
+        WalLog reopened = open();
+        assertEquals(first, reopened.syncedOffset());
+        assertNull(reopened.read(first));
+        assertEquals(1, readAll(reopened, 0).size());
+
+        // the next append overwrites the torn space and reads back cleanly
+        reopened.append(payload(50, 3));
+        List<byte[]> all = readAll(reopened, 0);
+        assertEquals(2, all.size());
+        assertArrayEquals(payload(50, 3), all.get(1));
+    }
+
+    @Test
+    void corruptEntryInHeadSegment_isSetAside_andAppendsGoOn() throws IOException {
+        WalLog wal = open();
+        long first = wal.append(payload(100, 1));
+        wal.append(payload(100, 2));
+        long end = wal.append(payload(100, 3));
+
+        // damage the second entry while the log is open, as a bad sector under the head segment would
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, first + HEADER);
+            b.put(0, (byte) ~b.get(0)).rewind();
+            ch.write(b, first + HEADER);
+        }
+        assertThrows(IllegalStateException.class, () -> wal.read(first));
+
+        long next = wal.skipCorrupt(first, "checksum mismatch");
+
+        assertEquals(end, next);
+        Path dead = dir.resolve("dead-letter");
+        assertEquals(end - first, Files.size(dead.resolve(String.format("%020d.corrupt", first))));
+        assertEquals("checksum mismatch", Files.readString(dead.resolve(String.format("%020d.txt", first))));
+        assertEquals(2, segmentFiles());
+
+        wal.append(payload(50, 4));
+        List<byte[]> after = readAll(wal, next);
+        assertEquals(1, after.size());
+        assertArrayEquals(payload(50, 4), after.get(0));
+    }
+
+    @Test
+    void deadLetter_keepsPayloadAndReason() throws IOException {
+        WalLog wal = open();
+        wal.append(payload(20, 9));
+        WalLog.Read entry = wal.read(0);
+
+        wal.deadLetter(entry, "rejected by the database");
+
+        Path dead = dir.resolve("dead-letter");
+        assertArrayEquals(entry.payload(), Files.readAllBytes(dead.resolve(String.format("%020d.wal", 0))));
+        assertEquals("rejected by the database", Files.readString(dead.resolve(String.format("%020d.txt", 0))));
+    }
+
+    // ---- helpers ----
+
+    private WalLog open() throws IOException {
+        IngestProps props = new IngestProps();
+        props.getWal().setEnabled(true);
+        props.getWal().setDir(dir.toString());
+        props.getWal().setSegmentMb(1);
+        props.getWal().setSyncIntervalMs(0);
+        WalLog wal = new WalLog(props);
+        wal.init();
+        opened.add(wal);
+        return wal;
+    }
+
+    private static List<byte[]> readAll(WalLog wal, long from) {
+        List<byte[]> out = new ArrayList<>();
+        for (WalLog.Read r = wal.read(from); r != null; r = wal.read(r.next())) out.add(r.payload());
+        return out;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".wal")).count();
+        }
+    }
+
+    private static byte[] payload(int size, int seed) {
+        byte[] b = new byte[size];
+        Arrays.fill(b, (byte) seed);
+        b[0] = (byte) (seed * 31 + size);
+        return b;
+    }
+}
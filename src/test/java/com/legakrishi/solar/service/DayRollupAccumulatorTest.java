@@ -0,0 +1,187 @@
+package com.legakrishi.solar.service;
+
+import com.legakrishi.solar.config.AggregationProps;
+import com.legakrishi.solar.iot.TelemetryPoint;
+import com.legakrishi.solar.model.Device;
+import com.legakrishi.solar.model.MeterKind;
+import com.legakrishi.solar.model.Reading;
+import com.legakrishi.solar.model.ReadingDay;
+import com.legakrishi.solar.model.ReadingDayMeter;
+import com.legakrishi.solar.model.Site;
+import com.legakrishi.solar.repository.DbDialect;
+import com.legakrishi.solar.repository.ReadingDayMeterRepository;
+import com.legakrishi.solar.repository.ReadingDayRepository;
+import com.legakrishi.solar.repository.ReadingPeriodRollups;
+import com.legakrishi.solar.repository.ReadingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The incremental day rollup must write the same reading_day_meter / reading_day rows as the full
+ * rescan of AggregationService, whatever the order the readings arrive in and across a restart.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({DbDialect.class, ReadingPeriodRollups.class})
+class DayRollupAccumulatorTest {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private static final LocalDate DAY = LocalDate.of(2025, 8, 15);
+
+    @Autowired TestEntityManager em;
+    @Autowired ReadingRepository readingRepo;
+    @Autowired ReadingDayMeterRepository rdmRepo;
+    @Autowired ReadingDayRepository dayRepo;
+
+    private AggregationProps props;
+    private AggregationService rescan;
+    private Site site;
+    private Device device;
+
+    @BeforeEach
+    void setUp() {
+        props = new AggregationProps();
+        props.setIncremental(true);
+        rescan = new AggregationService(readingRepo, dayRepo, rdmRepo);
+
+        site = em.persist(Site.builder().name("Test site").build());
+        device = em.persist(Device.builder().site(site).name("Gateway #1").apiToken("token-1").build());
+    }
+
+    @Test
+    void incrementalRows_matchTheRescan_acrossOutOfOrderBatchesAndARestart() {
+        DayRollupAccumulator acc = new DayRollupAccumulator(readingRepo, rdmRepo, dayRepo, props);
+
+        // morning: MAIN has daily counters, CHECK only cumulative totals and legacy powerKw
+        commit(acc,
+                main(6, 30, "0.000", "1000.000", "0.500", 0.5, 100.0),
+                main(8, 0, "3.250", "1003.250", "4.100", 4.1, 103.25),
+                check(7, 0, "500.000", 2.0, 500.0),
+                check(9, 15, "507.125", 6.5, 507.125));
+        acc.flush();
+
+        // afternoon, plus a late row from before sunrise (lowest totals of the day) and a new peak
+        commit(acc,
+                main(13, 0, "18.500", "1018.500", "9.875", 9.875, 118.5),
+                main(5, 45, "0.000", "999.750", "0.000", 0.0, 99.75),
+                check(12, 30, "515.000", 11.25, 515.0),
+                check(6, 0, "499.500", 0.0, 499.5));
+        acc.flush();
+
+        // restart: a new accumulator seeds the day from SQL, then sees the evening
+        DayRollupAccumulator restarted = new DayRollupAccumulator(readingRepo, rdmRepo, dayRepo, props);
+        commit(restarted,
+                main(18, 10, "24.000", "1024.000", "0.250", 0.25, 124.0),
+                check(17, 45, "520.250", 1.5, 520.25));
+        restarted.flush();
+
+        for (MeterKind meter : List.of(MeterKind.MAIN, MeterKind.CHECK)) {
+            ReadingDayMeter incremental = snapshot(rdmRepo.findBySiteIdAndMeterKindAndDay(site.getId(), meter, DAY)
+                    .orElseThrow(() -> new AssertionError("no incremental row for " + meter)));
+            ReadingDayMeter full = rescan.aggregateDayPerMeter(site.getId(), DAY, meter);
+            assertSameDayMeter(full, incremental, meter);
+        }
+
+        ReadingDay incrementalDay = dayRepo.findBySiteIdAndDay(site.getId(), DAY).orElseThrow();
+        double energy = incrementalDay.getEnergyTodayKwh();
+        double maxPower = incrementalDay.getMaxPowerKw();
+        LocalDateTime lastTs = incrementalDay.getLastTs();
+        em.clear();
+        ReadingDay fullDay = rescan.aggregateDayForSite(site.getId(), DAY);
+        assertEquals(fullDay.getEnergyTodayKwh(), energy, 1e-9);
+        assertEquals(fullDay.getMaxPowerKw(), maxPower, 1e-9);
+        assertEquals(fullDay.getLastTs(), lastTs);
+    }
+
+    @Test
+    void singleReading_matchesTheRescan() {
+        DayRollupAccumulator acc = new DayRollupAccumulator(readingRepo, rdmRepo, dayRepo, props);
+        commit(acc, main(12, 0, "7.000", "2000.000", "5.000", 5.0, 2000.0));
+        acc.flush();
+
+        ReadingDayMeter incremental = snapshot(
+                rdmRepo.findBySiteIdAndMeterKindAndDay(site.getId(), MeterKind.MAIN, DAY).orElseThrow());
+        assertSameDayMeter(rescan.aggregateDayPerMeter(site.getId(), DAY, MeterKind.MAIN), incremental, MeterKind.MAIN);
+    }
+
+    // ---- helpers ----
+
+    // rows are saved first, then handed to the listener, as TelemetryIngestCore does after commit
+    private void commit(DayRollupAccumulator acc, Reading... rows) {
+        List<TelemetryPoint> points = new ArrayList<>();
+        for (Reading r : rows) {
+            readingRepo.save(r);
+            points.add(new TelemetryPoint(TelemetryPoint.Source.READING, site.getId(), device.getId(),
+                    r.getMeterKind(), r.getTs().atZone(IST).toInstant(), r.getPowerKw(), false, r));
+        }
+        em.flush();
+        acc.onCommitted(points);
+    }
+
+    private Reading main(int hour, int minute, String dailyAc, String totalAc, String acPowerKw,
+                         double powerKw, double energyKwh) {
+        return Reading.builder()
+                .site(site).device(device).meterKind(MeterKind.MAIN)
+                .ts(DAY.atTime(hour, minute))
+                .dailyAcActiveEnergyKwh(new BigDecimal(dailyAc))
+                .totalAcActiveEnergyKwh(new BigDecimal(totalAc))
+                .dailyAcActiveExportEnergyKwh(new BigDecimal(dailyAc))
+                .totalAcActivePowerKw(new BigDecimal(acPowerKw))
+                .powerKw(powerKw)
+                .energyKwh(energyKwh)
+                .build();
+    }
+
+    private Reading check(int hour, int minute, String totalAc, double powerKw, double energyKwh) {
+        return Reading.builder()
+                .site(site).device(device).meterKind(MeterKind.CHECK)
+                .ts(DAY.atTime(hour, minute))
+                .totalAcActiveEnergyKwh(new BigDecimal(totalAc))
+                .totalDcEnergyKwh(new BigDecimal(totalAc))
+                .powerKw(powerKw)
+                .energyKwh(energyKwh)
+                .build();
+    }
+
+    // detached copy: the rescan upserts the same row through JDBC afterwards
+    private ReadingDayMeter snapshot(ReadingDayMeter r) {
+        ReadingDayMeter copy = ReadingDayMeter.builder()
+                .meterKind(r.getMeterKind()).day(r.getDay())
+                .acActiveEnergyKwh(r.getAcActiveEnergyKwh())
+                .acExportEnergyKwh(r.getAcExportEnergyKwh())
+                .acImportEnergyKwh(r.getAcImportEnergyKwh())
+                .dcEnergyKwh(r.getDcEnergyKwh())
+                .maxAcPowerKw(r.getMaxAcPowerKw())
+                .lastTs(r.getLastTs())
+                .build();
+        em.clear();
+        return copy;
+    }
+
+    private static void assertSameDayMeter(ReadingDayMeter expected, ReadingDayMeter actual, MeterKind meter) {
+        assertSameAmount(expected.getAcActiveEnergyKwh(), actual.getAcActiveEnergyKwh(), meter + " ac");
+        assertSameAmount(expected.getAcExportEnergyKwh(), actual.getAcExportEnergyKwh(), meter + " export");
+        assertSameAmount(expected.getAcImportEnergyKwh(), actual.getAcImportEnergyKwh(), meter + " import");
+        assertSameAmount(expected.getDcEnergyKwh(), actual.getDcEnergyKwh(), meter + " dc");
+        assertSameAmount(expected.getMaxAcPowerKw(), actual.getMaxAcPowerKw(), meter + " max power");
+        assertEquals(expected.getLastTs(), actual.getLastTs(), meter + " last ts");
+    }
+
+    // stored as decimal(16,3): compare by value, not scale
+    private static void assertSameAmount(BigDecimal expected, BigDecimal actual, String what) {
+        assertNotNull(actual, what);
+        assertEquals(0, expected.compareTo(actual), what + ": expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,100 @@
+package com.legakrishi.solar.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownsamplerTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    void fewerPointsThanAskedFor_areAllKept() {
+        long[] t = times(50);
+        double[] v = new double[50];
+        int[] all = IntStream.range(0, 50).toArray();
+
+        assertArrayEquals(all, Downsampler.lttb(t, v, 50, 50));
+        assertArrayEquals(all, Downsampler.lttb(t, v, 50, 1000));
+        assertArrayEquals(all, Downsampler.minMax(t, v, 50, 50));
+        assertArrayEquals(all, Downsampler.minMax(t, v, 50, 1000));
+        assertEquals(0, Downsampler.lttb(new long[0], new double[0], 0, 100).length);
+        assertEquals(0, Downsampler.minMax(new long[0], new double[0], 0, 100).length);
+    }
+
+    @Test
+    void flatSeries_isReducedToAtMostMaxPoints() {
+        int n = 10_000;
+        long[] t = times(n);
+        double[] v = new double[n];
+        Arrays.fill(v, 4.2);
+
+        int[] lttb = Downsampler.lttb(t, v, n, 500);
+        assertEquals(500, lttb.length);
+        assertShape(lttb, n, 500);
+
+        int[] minMax = Downsampler.minMax(t, v, n, 500);
+        assertShape(minMax, n, 500);
+        assertTrue(minMax.length > 200, "one point per slice at least, got " + minMax.length);
+    }
+
+    @Test
+    void peakAndDip_survive() {
+        int n = 10_000;
+        long[] t = times(n);
+        double[] v = new double[n];
+        for (int i = 0; i < n; i++) v[i] = 50 + 10 * Math.sin(i / 500.0);   // smooth curve
+        v[4_321] = 400;                                                      // one-minute spike
+        v[7_777] = -400;                                                     // and a dip
+
+        for (int maxPoints : new int[]{20, 100, 1000}) {
+            int[] lttb = Downsampler.lttb(t, v, n, maxPoints);
+            assertShape(lttb, n, maxPoints);
+            assertTrue(contains(lttb, 4_321), "lttb peak at maxPoints=" + maxPoints);
+            assertTrue(contains(lttb, 7_777), "lttb dip at maxPoints=" + maxPoints);
+
+            int[] minMax = Downsampler.minMax(t, v, n, maxPoints);
+            assertShape(minMax, n, maxPoints);
+            assertTrue(contains(minMax, 4_321), "minmax peak at maxPoints=" + maxPoints);
+            assertTrue(contains(minMax, 7_777), "minmax dip at maxPoints=" + maxPoints);
+        }
+    }
+
+    @Test
+    void irregularTimes_keepEndsAndOrder() {
+        int n = 3_000;
+        long[] t = new long[n];
+        double[] v = new double[n];
+        long at = 0;
+        for (int i = 0; i < n; i++) {
+            at += (i % 100 == 0) ? 60 * MINUTE : MINUTE;                     // hourly gaps, as after an outage
+            t[i] = at;
+            v[i] = i % 7;
+        }
+        assertShape(Downsampler.lttb(t, v, n, 300), n, 300);
+        assertShape(Downsampler.minMax(t, v, n, 300), n, 300);
+    }
+
+    // first and last point kept, indexes strictly ascending, no more than asked for
+    private static void assertShape(int[] keep, int n, int maxPoints) {
+        assertTrue(keep.length <= maxPoints, keep.length + " > " + maxPoints);
+        assertEquals(0, keep[0]);
+        assertEquals(n - 1, keep[keep.length - 1]);
+        for (int i = 1; i < keep.length; i++) {
+            assertTrue(keep[i] > keep[i - 1], "not ascending at " + i);
+        }
+    }
+
+    private static boolean contains(int[] keep, int index) {
+        return Arrays.binarySearch(keep, index) >= 0;
+    }
+
+    private static long[] times(int n) {
+        long[] t = new long[n];
+        for (int i = 0; i < n; i++) t[i] = 1_700_000_000_000L + i * MINUTE;
+        return t;
+    }
+}